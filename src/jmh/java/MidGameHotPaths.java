@@ -0,0 +1,129 @@
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import bench.HotPaths;
+
+/**
+ * A MapGenerator mid-game parsed by the static match as the bot would: the
+ * state the JMH benchmarks of package bench start from.
+ */
+public class MidGameHotPaths implements HotPaths {
+
+	private static final int TURNS = 10;
+
+	private int width;
+	private int height;
+	private byte[] turnInput;
+	private GameState gs;
+
+	private City start;
+	private final List<City> targets = new ArrayList<>();
+	private SimpleAI ai;
+	private List<NAMOAPath> paths;
+	// DisruptIndex keeps the index of the last board: alternating boards rebuilds it each time
+	private GameState[] boards;
+	private int nextBoard;
+	private List<Coord> coords;
+	private int regionId;
+
+	@Override
+	public void setUp(int width, int height, int cityCount) {
+		// Debug output is on in the bot and would dominate the measures
+		System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+		Time.noTimeLimit = true;
+		this.width = width;
+		this.height = height;
+		MapGenerator generator = new MapGenerator(width, height, 42);
+		generator.cityCount = cityCount;
+		MapGenerator.Scenario scenario = generator.midGame(TURNS);
+		Player.initMatch(RailReferee.reader(scenario.initLines()));
+		turnInput = (String.join("\n", scenario.turnLines()) + "\n").getBytes();
+		gs = Player.initRound(turnReader());
+
+		// From the first city with wishes towards all of them
+		City[] cities = gs.map().citiesById();
+		for (City city : cities) {
+			if (!city.desiredCityIds().isEmpty()) {
+				start = city;
+				break;
+			}
+		}
+		if (start == null) {
+			start = cities[0];
+			targets.add(cities[cities.length - 1]);
+		} else {
+			for (int desired : start.desiredCityIds()) {
+				targets.add(cities[desired]);
+			}
+		}
+
+		ai = new SimpleAI();
+		paths = ai.findSortedCheapestPaths(gs, ai.findNAMOAPathsForCities(gs, true));
+		boards = new GameState[] { gs.copy(), gs.copy() };
+
+		coords = List.of(new Coord(1, 1), new Coord(2, 1), new Coord(width - 2, height - 2));
+		// The region holding the most rails
+		int[] rails = new int[gs.map().regions().length];
+		for (int cell = 0; cell < width * height; cell++) {
+			if (gs.rails().hasRail(cell)) {
+				rails[gs.map().regionIdAt(cell % width, cell / width)]++;
+			}
+		}
+		for (int region = 0; region < rails.length; region++) {
+			if (rails[region] > rails[regionId]) {
+				regionId = region;
+			}
+		}
+	}
+
+	private InputReader turnReader() {
+		return new InputReader(new ByteArrayInputStream(turnInput));
+	}
+
+	@Override
+	public Object findPaths() {
+		return NAMOAStar.findPaths(gs, start, targets);
+	}
+
+	@Override
+	public Object getDisruptAction() {
+		nextBoard ^= 1;
+		return ai.getDisruptAction(boards[nextBoard]);
+	}
+
+	// Path cache emptied each time, as on a turn where everything changed
+	@Override
+	public Object computeBuildRailActions() {
+		ai.pathCache.clear();
+		return ai.computeBuildRailActions(gs, true);
+	}
+
+	@Override
+	public Object buildRailsAlongPath() {
+		return ai.buildRailsAlongPath(gs, paths);
+	}
+
+	// The same turn each time: its TurnChanges are empty after the first one
+	@Override
+	public Object initRound() {
+		return Player.initRound(turnReader());
+	}
+
+	@Override
+	public Object withRails() {
+		return gs.withRails(coords, RailOwner.ME);
+	}
+
+	@Override
+	public Object increaseInstability() {
+		return gs.increaseInstability(regionId);
+	}
+
+	@Override
+	public Object increaseInstabilityInking() {
+		return gs.increaseInstability(regionId, MatchConstants.INSTABILITY_THRESHOLD);
+	}
+}
@@ -0,0 +1,43 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing a turn with Player.initRound, and the copy-on-write moves of
+ * GameState: three rails, a DISRUPT and a DISRUPT inking the region.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameStateBenchmark {
+
+	@Benchmark
+	public Object initRound(MidGame game) {
+		return game.hotPaths.initRound();
+	}
+
+	@Benchmark
+	public Object withRails(MidGame game) {
+		return game.hotPaths.withRails();
+	}
+
+	@Benchmark
+	public Object increaseInstability(MidGame game) {
+		return game.hotPaths.increaseInstability();
+	}
+
+	@Benchmark
+	public Object increaseInstabilityInking(MidGame game) {
+		return game.hotPaths.increaseInstabilityInking();
+	}
+}
@@ -0,0 +1,38 @@
+package bench;
+
+/**
+ * The bot lives in the default package, which a named package can't import,
+ * and JMH wants its benchmarks in one: the benchmarks call the hot paths
+ * through this interface, implemented by MidGameHotPaths in the default
+ * package and loaded once per trial.
+ */
+public interface HotPaths {
+
+	static HotPaths create(int width, int height, int cityCount) {
+		try {
+			HotPaths hotPaths = (HotPaths) Class.forName("MidGameHotPaths").getDeclaredConstructor().newInstance();
+			hotPaths.setUp(width, height, cityCount);
+			return hotPaths;
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("MidGameHotPaths not found", e);
+		}
+	}
+
+	void setUp(int width, int height, int cityCount);
+
+	Object findPaths();
+
+	Object getDisruptAction();
+
+	Object computeBuildRailActions();
+
+	Object buildRailsAlongPath();
+
+	Object initRound();
+
+	Object withRails();
+
+	Object increaseInstability();
+
+	Object increaseInstabilityInking();
+}
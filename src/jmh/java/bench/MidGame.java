@@ -0,0 +1,26 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** The mid-game state of a seeded map the benchmarks start from, see MidGameHotPaths */
+@State(Scope.Benchmark)
+public class MidGame {
+
+	// The arena goes up to 30x20, larger maps are for scaling studies
+	@Param({ "20x10", "30x20", "60x30" })
+	public String mapSize;
+
+	@Param({ "4", "8", "12" })
+	public int cityCount;
+
+	HotPaths hotPaths;
+
+	@Setup
+	public void setUp() {
+		String[] size = mapSize.split("x");
+		hotPaths = HotPaths.create(Integer.parseInt(size[0]), Integer.parseInt(size[1]), cityCount);
+	}
+}
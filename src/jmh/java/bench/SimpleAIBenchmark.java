@@ -0,0 +1,39 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The steps of a SimpleAI turn: choosing the DISRUPT (its index built each
+ * time), computing the build actions (path cache emptied each time, as on a
+ * turn where everything changed) and placing rails along already found paths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimpleAIBenchmark {
+
+	@Benchmark
+	public Object getDisruptAction(MidGame game) {
+		return game.hotPaths.getDisruptAction();
+	}
+
+	@Benchmark
+	public Object computeBuildRailActions(MidGame game) {
+		return game.hotPaths.computeBuildRailActions();
+	}
+
+	@Benchmark
+	public Object buildRailsAlongPath(MidGame game) {
+		return game.hotPaths.buildRailsAlongPath();
+	}
+}
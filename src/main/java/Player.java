@@ -1,15 +1,36 @@
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Random;
-import java.util.Scanner;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 import javax.print.attribute.standard.MediaSize.NA;
 
@@ -17,12 +38,11 @@ class Player {
 
 	// Easy to find switches
 	public static final boolean isDebugOn = true;
-	public static int ME;
-	public static int OPP;
-	public static int nbWait = 0;
-	public static int nbDisrupt = 0;
-	public static int nbBuild = 0;
-	public static int nbNoBuild = 0;
+	public static final boolean isWarmUpOn = true;
+	public static final boolean isGcMonitorOn = true;
+	public static final boolean isWatchdogOn = true;
+	// Input recording for offline replays: a file, or "stderr" (see InputRecorder)
+	public static final String replayRecording = System.getProperty("replay.record");
 
 	// Magic numbers
 
@@ -32,30 +52,75 @@ class Player {
 	// Game constants, write them here once for all. The match constants however
 	// should go in MatchConstants
 
-	// Game variables
-	private static GameState previousGameState;
+	// Game variables, of the match played over stdin
+	private static final MatchContext context = MatchContext.STATIC;
 	private static boolean stopGame = false;
+	private static final GcMonitor gcMonitor = isGcMonitorOn ? new GcMonitor() : null;
+	private static final Watchdog watchdog = isWatchdogOn
+			? new Watchdog(context.time, context::output, System.out::println)
+			: null;
 
 	public static void main(String args[]) {
 
-		Scanner in = new Scanner(System.in);
+		InputRecorder recorder = replayRecording == null ? null : InputRecorder.open(System.in, replayRecording);
+		InputReader in = new InputReader(recorder != null ? recorder : System.in);
+		context.watchdog = watchdog;
 		initMatch(in);
 
 		// game loop
-		while (true) {
+		try {
+			while (true) {
+
+				if (gcMonitor != null) {
+					gcMonitor.startTurn();
+				}
+				GameState gs = initRound(in);
+				if (watchdog != null) {
+					watchdog.startTurn(gs.round());
+				}
+				ai.onTurnChanges(context.turnChanges());
 
-			GameState gs = initRound(in);
+				List<Action> actions = ai.compute(gs);
 
-			List<Action> actions = ai.compute(gs);
+				// What the referee gets: the best answer known at the deadline if it passed
+				List<Action> sent = watchdog == null ? actions : watchdog.claim(gs.round(), actions);
+				finalizeRound(sent, gs);
+				if (gcMonitor != null) {
+					gcMonitor.endTurn(gs.round());
+					Print.debug(Print.Category.TIME, gcMonitor::toString);
+				}
 
-			finalizeRound(actions, gs);
+				if (sent == actions) {
+					out(actions);
+				} else {
+					context.telemetry.record(Telemetry.Phase.OUTPUT, watchdog.sendNanos());
+					int lateTurns = watchdog.lateTurns;
+					Print.log(Print.Level.INFO, Print.Category.TIME,
+							() -> "Deadline passed, the watchdog answered (" + lateTurns + " late turns)");
+				}
 
-			out(actions);
+				// Debug output and recording of the turn, once the referee has the actions
+				if (recorder != null) {
+					recorder.endTurn();
+				}
+				Print.flush();
 
+				if (isWarmUpOn && gs.round() == 1) {
+					warmUp(gs, in);
+					Print.flush();
+				}
+			}
+		} finally {
+			// Post-mortem: what was logged before a crash (or the end of the input)
+			if (recorder != null) {
+				recorder.endTurn();
+			}
+			Print.log(Print.Level.INFO, Print.Category.TIME, context.telemetry::summary);
+			Print.flush();
 		}
 	}
 
-	static void initMatch(Scanner in) {
+	static void initMatch(InputReader in) {
 
 		if (isDebugOn) {
 			Print.debug("Starting the match !");
@@ -64,13 +129,195 @@ class Player {
 			}
 		}
 
-		ME = in.nextInt(); // 0 or 1
-		OPP = 1 - ME;
+		context.initMatch(in);
+	}
+
+	// The answer of the first turn is sent: the rest of its budget compiles the
+	// hot paths of the next turns, until the next turn is there (its timer runs
+	// from the referee's side). No collection after it: the input could arrive
+	// during a pause nothing interrupts.
+	private static void warmUp(GameState gs, InputReader in) {
+		WarmUp warmUp = new WarmUp(context);
+		warmUp.run(gs, in::hasBufferedInput);
+		Print.debug(warmUp.toString());
+	}
+
+	private static Connection parseConnectionToken(String token) {
+		if (token == null) {
+			return null;
+		}
+		String trimmed = token.trim();
+		if (trimmed.isEmpty() || "x".equalsIgnoreCase(trimmed)) {
+			return null;
+		}
+		String[] ids = trimmed.split("-");
+		if (ids.length != 2) {
+			return null;
+		}
+		try {
+			int from = Integer.parseInt(ids[0]);
+			int to = Integer.parseInt(ids[1]);
+			return MatchConstants.connection(from, to);
+		} catch (NumberFormatException ex) {
+			return null;
+		}
+	}
+
+	static GameState initRound(InputReader in) {
+		return context.initRound(in);
+	}
+
+	// Changes of the last initRound, null before the first turn
+	static TurnChanges turnChanges() {
+		return context.turnChanges();
+	}
+
+	private static void finalizeRound(List<Action> actions, GameState gs) {
+
+		if (!stopGame) {
+			context.finalizeRound(actions, gs);
+		}
+
+	}
+
+	private static void out(List<Action> actions) {
+		if (stopGame) {
+			System.out.println("Failure!");
+		} else {
+			long start = System.nanoTime();
+			System.out.println(context.output(actions));
+			context.telemetry.record(Telemetry.Phase.OUTPUT, System.nanoTime() - start);
+		}
+
+	}
+
+}
+
+/**
+ * Everything one player knows about its match: ids, map constants, round timer,
+ * search memory, the state parsed from the referee input and the counters of the
+ * MESSAGE output. Player plays the stdin game with STATIC, whose map constants
+ * are the static ones of MatchConstants so the static entry points keep working.
+ * Referees and tournaments create one context per player and per match, which
+ * lets several games run concurrently in one JVM.
+ */
+class MatchContext {
+
+	static final MatchContext STATIC = new MatchContext(Time.shared, true);
+
+	private final boolean isStatic;
+	final Time time;
+	final Telemetry telemetry = new Telemetry();
+	Watchdog watchdog; // only in the stdin game
+	private NAMOASearchContext searchContext;
+	private GameEngine engine;
+
+	// Absolute ids of the players in the referee input
+	int me;
+	int opp;
+
+	// Map constants, also published in MatchConstants by STATIC
+	private int width;
+	private int height;
+	private int cityCount;
+	private int regionsCount;
+	private CityDistanceFields distanceFields;
+
+	// Output counters
+	int nbWait = 0;
+	int nbDisrupt = 0;
+	int nbBuild = 0;
+	int nbNoBuild = 0;
+
+	// Game variables
+	private GameState previousGameState;
+	// Referee board, patched in place each turn: game states get a copy
+	private RailBoard board;
+	private final ConnectionSet inputConnections = new ConnectionSet();
+	private int[] connectionCellCounts; // rails part of each active connection, by id
+	private int[][] regionConnectionCellCounts; // same, per region
+	private TurnChanges turnChanges;
+	private GameState lastParsedState; // baseline of the next diff
+	private DisruptIndex disruptIndex; // of the last board scored
+
+	MatchContext() {
+		this(new Time(), false);
+	}
+
+	private MatchContext(Time time, boolean isStatic) {
+		this.time = time;
+		this.isStatic = isStatic;
+	}
+
+	// Tests may swap the fields of the static match
+	CityDistanceFields distanceFields() {
+		return isStatic ? MatchConstants.distanceFields : distanceFields;
+	}
+
+	private void setMap(int width, int height, int cityCount, int regionsCount) {
+		MatchConstants.ensureCoords(width, height);
+		MatchConstants.ensureConnections(cityCount);
+		if (isStatic) {
+			MatchConstants.width = width;
+			MatchConstants.height = height;
+			MatchConstants.cityCount = cityCount;
+			MatchConstants.regionsCount = regionsCount;
+			MatchConstants.initConnections(cityCount);
+		}
+		this.width = width;
+		this.height = height;
+		this.cityCount = cityCount;
+		this.regionsCount = regionsCount;
+	}
+
+	private void setDistanceFields(CityDistanceFields fields) {
+		if (isStatic) {
+			MatchConstants.distanceFields = fields;
+		}
+		this.distanceFields = fields;
+	}
+
+	// Null unless both ids are distinct cities of this match
+	Connection connection(int fromId, int toId) {
+		return MatchConstants.connection(fromId, toId, cityCount);
+	}
+
+	// Working memory of the NAMOA* searches of this match
+	NAMOASearchContext searchContext() {
+		if (searchContext == null) {
+			searchContext = new NAMOASearchContext(this);
+		}
+		return searchContext;
+	}
+
+	// Disrupt scoring of the state, reusing the index of the same unmodified board
+	DisruptIndex disruptIndex(GameState gs) {
+		if (disruptIndex == null || !disruptIndex.covers(gs)) {
+			return buildDisruptIndex(gs);
+		}
+		return disruptIndex;
+	}
+
+	DisruptIndex buildDisruptIndex(GameState gs) {
+		disruptIndex = new DisruptIndex(gs);
+		return disruptIndex;
+	}
+
+	// Forward model of this match, for simulations
+	GameEngine engine() {
+		if (engine == null) {
+			engine = new GameEngine();
+		}
+		return engine;
+	}
+
+	void initMatch(InputReader in) {
+
+		me = in.nextInt(); // 0 or 1
+		opp = 1 - me;
 		int width = in.nextInt(); // map size
 		int height = in.nextInt();
-		MatchConstants.height = height;
-		MatchConstants.width = width;
-		MatchConstants.initCoords(width, height);
+		MatchConstants.ensureCoords(width, height);
 
 		// Parse terrain grid
 		Tile[][] tiles = new Tile[width][height];
@@ -103,14 +350,11 @@ class Player {
 			int townId = in.nextInt();
 			int townX = in.nextInt();
 			int townY = in.nextInt();
-			String desiredConnections = in.next(); // comma-separated town ids e.g. 0,1,2,3
+			int desiredCount = in.nextIntList(); // comma-separated town ids e.g. 0,1,2,3 or x
 
-			List<Integer> desiredCityIds = new ArrayList<>();
-			if (!desiredConnections.equals("x")) {
-				String[] parts = desiredConnections.split(",");
-				for (String part : parts) {
-					desiredCityIds.add(Integer.parseInt(part));
-				}
+			List<Integer> desiredCityIds = new ArrayList<>(desiredCount);
+			for (int d = 0; d < desiredCount; d++) {
+				desiredCityIds.add(in.intListValue(d));
 			}
 
 			int regionId = tiles[townX][townY].regionId();
@@ -122,21 +366,20 @@ class Player {
 					tiles[townX][townY].regionId(), tiles[townX][townY].type(), city);
 		}
 
-		MatchConstants.cityCount = townCount;
-		MatchConstants.regionsCount = regionIds.size();
+		setMap(width, height, townCount, regionIds.size());
 
 		// Create initial MapDefinition
 		TerrainType[][] terrainType = new TerrainType[width][height];
 		int[][] regionIdArray = new int[width][height];
 		int[][] cityIdArray = new int[width][height];
-		Region[] regions = new Region[MatchConstants.regionsCount];
+		Region[] regions = new Region[regionsCount];
 
 		// Collect cells for each region
 		for (int y = 0; y < height; y++) {
 			for (int x = 0; x < width; x++) {
 				int regionId = tiles[x][y].regionId();
 				if (regions[regionId] == null) {
-					regions[regionId] = new Region(regionId, 0, new ArrayList<>(), new HashSet<>(),
+					regions[regionId] = new Region(regionId, 0, new ArrayList<>(), new ConnectionSet(),
 							tiles[x][y].hasCity());
 				}
 				regions[regionId].cells().add(tiles[x][y]);
@@ -158,618 +401,2998 @@ class Player {
 		MapDefinition mapDef = new MapDefinition(width, height, terrainType, regionIdArray, cityIdArray,
 				citiesById, regions);
 
-		MatchConstants.connectionLookup = new Connection[townCount][townCount];
-		for (City city1 : citiesById) {
-			if (city1 == null)
-				continue;
-			for (City city2 : citiesById) {
-				if (city2 == null)
-					continue;
-				Connection connection = new Connection(city1.id(), city2.id());
-				MatchConstants.connectionLookup[city1.id()][city2.id()] = connection;
-				MatchConstants.connectionLookup[city2.id()][city1.id()] = connection;
-			}
-		}
 		// Create initial game state
-		previousGameState = new GameState(0, mapDef, new HashMap<>(), 0, 0, Set.of());
-
-		Time.startRoundTimer();
-		MatchConstants.print();
-	}
-
-	private static Connection parseConnectionToken(String token) {
-		if (token == null) {
-			return null;
-		}
-		String trimmed = token.trim();
-		if (trimmed.isEmpty() || "x".equalsIgnoreCase(trimmed)) {
-			return null;
-		}
-		String[] ids = trimmed.split("-");
-		if (ids.length != 2) {
-			return null;
-		}
-		try {
-			int from = Integer.parseInt(ids[0]);
-			int to = Integer.parseInt(ids[1]);
-			return MatchConstants.connection(from, to);
-		} catch (NumberFormatException ex) {
-			return null;
-		}
+		previousGameState = new GameState(0, mapDef, new HashMap<>(), 0, 0, new ConnectionSet());
+		board = new RailBoard(width, height);
+		connectionCellCounts = new int[Connection.idCount(townCount)];
+		regionConnectionCellCounts = new int[regionsCount][Connection.idCount(townCount)];
+		turnChanges = null;
+		lastParsedState = previousGameState;
+		setDistanceFields(new CityDistanceFields(previousGameState));
+		time.debug("Computed city distance fields");
+
+		time.startRound();
+		Print.debugForInput("Match height: " + height + " width:" + width);
 	}
 
-	static GameState initRound(Scanner in) {
+	GameState initRound(InputReader in) {
 
 		// Read scores
 		int myScore = in.nextInt();
-		Time.startRoundTimer();
+		time.startRound();
 
 		GameState result = previousGameState.nextRound();
-		Time.debugDuration("Starting initRound");
+		time.debug("Starting initRound");
 
 		int foeScore = in.nextInt();
 
-		// Update game state from previous round
-		result = result.withScores(myScore, foeScore);
-
-		// Parse grid state
-		Map<Coord, Rail> rails = new HashMap<>(MatchConstants.width * MatchConstants.height);
-		Set<Connection> resetCachedConnectionsSet = new TreeSet<>();
+		// Patch the board with the cells which changed since last turn
+		MapDefinition map = lastParsedState.map();
+		TurnChanges changes = new TurnChanges(result.round(), board.cellCount(), regionsCount,
+				turnChanges == null);
+		int[] regionInstability = new int[regionsCount];
+		boolean[] regionConnectionsTouched = new boolean[regionsCount];
 
-		@SuppressWarnings("unchecked")
-		Set<Connection>[] regionConnections = new Set[MatchConstants.regionsCount];
-		int[] regionInstability = new int[MatchConstants.regionsCount];
+		time.debug("Starting reading input");
 
-		Time.debugDuration("Starting reading input");
-
-		for (int y = 0; y < MatchConstants.height; y++) {
-			for (int x = 0; x < MatchConstants.width; x++) {
+		int index = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++, index++) {
 				int tracksOwner = in.nextInt();
 				int instability = in.nextInt();
-				in.nextInt(); // Skip inked flag (not used)
-				String partOfActiveConnectionStr = in.next();
-				Coord coord = MatchConstants.coord(x, y);
-
-				// Recall instability
-				int regionId = result.map().regionIdAt(x, y);
-				regionInstability[regionId] = instability;
-
-				if (tracksOwner >= 0) {
-					RailOwner owner = RailOwner.NONE;
-					if (tracksOwner == ME) {
-						owner = RailOwner.ME;
-					} else if (tracksOwner == OPP) {
-						owner = RailOwner.OPPONENT;
-					} else {
-						owner = RailOwner.CONTESTED;
-					}
+				boolean inked = in.nextInt() != 0;
+				int activeConnectionCount = in.nextConnectionList(); // e.g. 1-2,1-3 or x
+
+				// Recall instability, an inked region stays instable whatever is reported
+				int regionId = map.regionIdAt(x, y);
+				regionInstability[regionId] = inked ? Math.max(instability, MatchConstants.INSTABILITY_THRESHOLD)
+						: instability;
+
+				RailOwner owner = RailOwner.NONE;
+				if (tracksOwner == me) {
+					owner = RailOwner.ME;
+				} else if (tracksOwner == opp) {
+					owner = RailOwner.OPPONENT;
+				} else if (tracksOwner >= 0) {
+					owner = RailOwner.CONTESTED;
+				}
+				if (owner == RailOwner.NONE) {
+					activeConnectionCount = 0;
+				}
 
-					Rail rail = new Rail(x, y, owner);
-					rail.partOfActiveConnections = new ArrayList<>();
-					rails.put(coord, rail);
-
-					if (partOfActiveConnectionStr.charAt(0) != 'x') {
-						String[] connections = partOfActiveConnectionStr.split(",");
-						for (String conn : connections) {
-							Connection connection = MatchConstants.connection(
-									Integer.parseInt(conn.split("-")[0]),
-									Integer.parseInt(conn.split("-")[1]));
-							rail.partOfActiveConnections.add(connection);
-							resetCachedConnectionsSet.add(connection);
-
-							if (regionConnections[regionId] == null) {
-								regionConnections[regionId] = new HashSet<>();
-							}
-							regionConnections[regionId].add(connection);
-						}
+				RailOwner previousOwner = board.ownerAt(index);
+				ConnectionSet cellConnections = readConnections(in, activeConnectionCount);
+				if (!cellConnections.equals(board.connectionsAt(index))) {
+					updateConnections(index, regionId, cellConnections);
+					regionConnectionsTouched[regionId] = true;
+					changes.recordCell(index, TurnChanges.CONNECTIONS_CHANGED, previousOwner);
+				}
+				if (owner != previousOwner) {
+					if (owner == RailOwner.NONE) {
+						board.remove(index);
+						changes.recordCell(index, TurnChanges.RAIL_REMOVED, previousOwner);
+					} else {
+						board.put(x, y, owner);
+						changes.recordCell(index, previousOwner == RailOwner.NONE ? TurnChanges.RAIL_ADDED
+								: TurnChanges.OWNER_CHANGED, previousOwner);
 					}
-					// Print.debug("InitRound: adding rail at (" + x + "," + y + ") owned by " +
-					// owner
-					// + " with " + rail.partOfActiveConnections.size() + " active connections");
 				}
 			}
 		}
 
-		Time.debugDuration("Update regions");
+		time.debug("Update connections");
+
+		// Connections gained or lost, compared with last turn's set
+		Set<Connection> cachedConnections = lastParsedState.cachedConnections();
+		for (int id = 0; id < connectionCellCounts.length; id++) {
+			Connection connection = MatchConstants.connectionById(id);
+			boolean active = connectionCellCounts[id] > 0;
+			if (active != cachedConnections.contains(connection)) {
+				changes.recordConnection(connection, active);
+			}
+		}
+		if (!changes.connectionsGained().isEmpty() || !changes.connectionsLost().isEmpty()) {
+			cachedConnections = new ConnectionSet(cachedConnections);
+			cachedConnections.addAll(changes.connectionsGained());
+			cachedConnections.removeAll(changes.connectionsLost());
+		}
+
+		time.debug("Update regions");
 
-		for (int i = 0; i < MatchConstants.regionsCount; i++) {
-			Region oldRegion = result.map().regions()[i];
+		// Only the regions whose instability or connections changed are rebuilt
+		Region[] regions = map.regions();
+		Region[] newRegions = null;
+		for (int i = 0; i < regionsCount; i++) {
+			Region oldRegion = regions[i];
 			if (oldRegion == null) {
-				oldRegion = new Region(i, 0, new ArrayList<>(), new HashSet<>(), false);
+				oldRegion = new Region(i, 0, new ArrayList<>(), new ConnectionSet(), false);
+			}
+			Set<Connection> connections = oldRegion.connections();
+			if (regionConnectionsTouched[i]) {
+				Set<Connection> regionConnections = regionConnections(i);
+				if (!regionConnections.equals(connections)) {
+					connections = regionConnections;
+					changes.recordRegionConnections(i);
+				}
+			}
+			if (regionInstability[i] != oldRegion.instability()) {
+				changes.recordInstability(i, oldRegion.instability());
+			}
+			if (changes.isRegionChanged(i) || regions[i] == null) {
+				if (newRegions == null) {
+					newRegions = regions.clone();
+				}
+				newRegions[i] = new Region(oldRegion.id(), regionInstability[i], oldRegion.cells(), connections,
+						oldRegion.hasCity());
 			}
-			Set<Connection> connections = regionConnections[i] != null ? regionConnections[i] : new HashSet<>();
-			int instability = regionInstability[i] != 0 ? regionInstability[i] : oldRegion.instability();
-			result.map().regions()[i] = new Region(oldRegion.id(), instability, oldRegion.cells(), connections,
-					oldRegion.hasCity());
+		}
+		if (newRegions != null) {
+			map = map.withRegions(newRegions);
 		}
 
-		Time.debugDuration("Finished reading input");
+		time.debug("Finished reading input");
 
 		// Create updated game state
-		result = new GameState(result.round(), result.map(), rails, myScore, foeScore,
-				resetCachedConnectionsSet);
-		Print.debug("Cached connections after initRound: " + resetCachedConnectionsSet.stream()
+		result = new GameState(result.round(), map, board.copy(), myScore, foeScore, cachedConnections);
+		turnChanges = changes;
+		lastParsedState = result;
+		buildDisruptIndex(result);
+		CityDistanceFields fields = distanceFields();
+		if (fields != null && fields.covers(result.map())) {
+			if (changes.isEmpty()) {
+				fields.follow(result);
+			} else if (fields.update(result)) {
+				Print.debug("City distance fields recomputed after a region collapsed");
+			}
+		}
+		Print.debug(Print.Category.INPUT, changes::toString);
+		Set<Connection> activeConnections = cachedConnections;
+		Print.debug(Print.Category.INPUT, () -> "Cached connections after initRound: " + activeConnections.stream()
 				.map(c -> c.fromId() + "-" + c.toId()).collect(java.util.stream.Collectors.joining(", ")));
-		Time.debugDuration("Finished initround");
+		time.debug("Finished initround");
+		telemetry.record(Telemetry.Phase.PARSE, time.roundDurationNano());
 
 		return result;
 
 	}
 
-	private static void finalizeRound(List<Action> actions, GameState gs) {
+	// Changes of the last initRound, null before the first turn
+	TurnChanges turnChanges() {
+		return turnChanges;
+	}
 
-		if (!stopGame) {
+	// Active connections listed for the current cell, in a buffer reused for every cell
+	private ConnectionSet readConnections(InputReader in, int count) {
+		inputConnections.clear();
+		for (int c = 0; c < count; c++) {
+			Connection connection = connection(in.connectionFrom(c), in.connectionTo(c));
+			if (connection != null) {
+				inputConnections.addId(connection.id());
+			}
+		}
+		return inputConnections;
+	}
+
+	private void updateConnections(int index, int regionId, ConnectionSet connections) {
+		ConnectionSet previous = board.connectionsAt(index);
+		for (int id = previous.nextId(0); id >= 0; id = previous.nextId(id + 1)) {
+			countConnection(id, regionId, -1);
+		}
+		if (connections.isEmpty()) {
+			board.clearConnections(index);
+			return;
+		}
+		for (int id = connections.nextId(0); id >= 0; id = connections.nextId(id + 1)) {
+			countConnection(id, regionId, 1);
+		}
+		board.setConnections(index, new ConnectionSet(connections));
+	}
+
+	private void countConnection(int connectionId, int regionId, int delta) {
+		connectionCellCounts[connectionId] += delta;
+		regionConnectionCellCounts[regionId][connectionId] += delta;
+	}
+
+	private ConnectionSet regionConnections(int regionId) {
+		ConnectionSet connections = new ConnectionSet();
+		int[] counts = regionConnectionCellCounts[regionId];
+		for (int id = 0; id < counts.length; id++) {
+			if (counts[id] > 0) {
+				connections.addId(id);
+			}
+		}
+		return connections;
+	}
 
-			previousGameState = gs;
+	void finalizeRound(List<Action> actions, GameState gs) {
 
-			if (isDebugOn) {
+		previousGameState = gs;
 
-				Time.debugDuration("Total round duration");
-				if (gs.round() > 1) {
-					Time.addRoundDuration();
-					Time.debugAverageRoundDuration(gs.round());
+		boolean built = false;
+		for (Action action : actions) {
+			switch (action.type()) {
+				case WAIT -> nbWait++;
+				case DISRUPT -> nbDisrupt++;
+				case PLACE_TRACKS -> {
+					nbBuild++;
+					built = true;
+				}
+				case AUTOPLACE -> built = true;
+				default -> {
 				}
 			}
+		}
+		if (!built) {
+			nbNoBuild++;
+		}
+
+		telemetry.record(Telemetry.Phase.TURN, time.roundDurationNano());
+		if (gs.round() == MatchConstants.MAX_TURNS) {
+			Print.log(Print.Level.INFO, Print.Category.TIME, telemetry::summary);
+		}
+
+		if (Player.isDebugOn) {
 
+			time.debug("Total round duration");
+			if (gs.round() > 1) {
+				time.addRound();
+				time.debugAverage(gs.round());
+			}
 		}
 
 	}
 
-	private static void out(List<Action> actions) {
-		if (stopGame) {
-			System.out.println("Failure!");
-		} else {
-			String output = "MESSAGE nbW: " + Player.nbWait + "   nbD: " + Player.nbDisrupt +
-					"   NbBuild: " + Player.nbBuild + "   NbNoBuild: " + Player.nbNoBuild + ";";
-			output += actions.stream().map(Action::toString).collect(Collectors.joining(";"));
-			System.out.println(output);
+	// Best answer of the turn so far, sent by the watchdog if the deadline passes
+	void publishAnswer(List<Action> actions) {
+		if (watchdog != null && !actions.isEmpty()) {
+			watchdog.publish(actions);
 		}
+	}
 
+	String output(List<Action> actions) {
+		String output = "MESSAGE nbW: " + nbWait + "   nbD: " + nbDisrupt +
+				"   NbBuild: " + nbBuild + "   NbNoBuild: " + nbNoBuild + ";";
+		output += actions.stream().map(Action::toString).collect(Collectors.joining(";"));
+		return output;
 	}
 
 }
 
-// Stores stuff which is not going to change for the whole match, but could
-// change from one match to another
-class MatchConstants {
+// Byte-level tokenizer over the referee input. Replaces java.util.Scanner which
+// was too slow to read width*height*4 tokens per turn. Lists ("1,2,4" or
+// "1-2,3-4", "x" when empty) are decoded straight into reusable int buffers.
+class InputReader {
 
-	public static Connection[][] connectionLookup;
-	public static int cityCount;
-	public static int regionsCount;
-	public static final int INSTABILITY_THRESHOLD = 4;
-	public static final int MAX_ACTIONS_PER_TURN = 3;
-	public static int height;
-	public static int width;
-	private static Coord[][] coords;
+	private static final int BUFFER_SIZE = 1 << 16;
 
-	public static Coord coord(int x, int y) {
-		return coords[x][y];
+	private final InputStream in;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int bufferLength = 0;
+	private int bufferPos = 0;
+
+	// Last list decoded by nextIntList / nextConnectionList
+	private int[] listValues = new int[32];
+
+	InputReader(InputStream in) {
+		this.in = in;
 	}
 
-	public static void initCoords(int width, int height) {
-		coords = new Coord[width][height];
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				coords[x][y] = new Coord(x, y);
+	private int read() {
+		if (bufferPos == bufferLength) {
+			try {
+				bufferLength = in.read(buffer, 0, BUFFER_SIZE);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			bufferPos = 0;
+			if (bufferLength <= 0) {
+				bufferLength = 0;
+				return -1;
 			}
 		}
+		return buffer[bufferPos++];
 	}
 
-	public static boolean isValid(int x, int y) {
-		return x >= 0 && x < MatchConstants.width && y >= 0 && y < MatchConstants.height;
+	private int skipWhitespaces() {
+		int c = read();
+		while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+			c = read();
+		}
+		if (c == -1) {
+			throw new NoSuchElementException("End of input reached");
+		}
+		return c;
 	}
 
-	public static void print() {
-		Print.debugForInput("MatchConstatns height: " + height + " width:" + width);
+	// Whether input can be read without blocking
+	boolean hasBufferedInput() {
+		if (bufferPos < bufferLength) {
+			return true;
+		}
+		try {
+			return in.available() > 0;
+		} catch (IOException e) {
+			return false;
+		}
 	}
 
-	public static Connection connection(int fromId, int toId) {
-		if (connectionLookup == null || fromId < 0 || fromId >= connectionLookup.length || toId < 0
-				|| toId >= connectionLookup[fromId].length) {
-			return null;
+	// Whether a token is left, without consuming it
+	boolean hasNext() {
+		int c = read();
+		while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+			c = read();
 		}
-		return connectionLookup[fromId][toId];
+		if (c == -1) {
+			return false;
+		}
+		bufferPos--; // c is still in the buffer
+		return true;
 	}
 
-}
-
-class Time {
-	// Time constants
-	private static final int msToNano = 1_000_000;
-	private static final int maxRoundTime = 50 * msToNano; // 50 ms max to answer
-	private static final int roundTimeMargin = 15 * msToNano;
-	private static final int maxFirstRoundTime = 1000 * msToNano; // 1 s max to answer for first turn only
-	private static final int firstRoundTimeMargin = 50 * msToNano;
-	private static final int maxRoundTimeWithMargin = maxRoundTime - roundTimeMargin;
-	private static final int maxFirstRoundTimeWithMargin = maxFirstRoundTime - firstRoundTimeMargin;
-	public static boolean noTimeLimit = false;
-
-	// Time variables
-	private static long roundStartTime;
-	private static long totalRoundDuration = 0;
+	int nextInt() {
+		int c = skipWhitespaces();
+		boolean negative = c == '-';
+		if (negative) {
+			c = read();
+		}
+		int result = 0;
+		while (c >= '0' && c <= '9') {
+			result = result * 10 + (c - '0');
+			c = read();
+		}
+		return negative ? -result : result;
+	}
 
-	public static void startRoundTimer() {
-		roundStartTime = System.nanoTime();
+	// Only used for non numeric tokens outside of the hot path
+	String next() {
+		StringBuilder sb = new StringBuilder();
+		int c = skipWhitespaces();
+		while (c > ' ') {
+			sb.append((char) c);
+			c = read();
+		}
+		return sb.toString();
 	}
 
-	public static boolean isTimeLeft(boolean isFirstTurn) {
-		return getRoundDurationNano() < maxRoundTimeWithMargin
-				|| (isFirstTurn && getRoundDurationNano() < maxFirstRoundTimeWithMargin) || noTimeLimit;
+	/**
+	 * Reads a token such as "0,1,2" (or "x" for an empty list). Returns the number
+	 * of values, which are then available through intListValue(i).
+	 */
+	int nextIntList() {
+		int c = skipWhitespaces();
+		int count = 0;
+		if (c == 'x') {
+			read();
+			return 0;
+		}
+		int value = 0;
+		while (c > ' ') {
+			if (c == ',') {
+				store(count++, value);
+				value = 0;
+			} else {
+				value = value * 10 + (c - '0');
+			}
+			c = read();
+		}
+		store(count++, value);
+		return count;
 	}
 
-	public static long getRoundDurationNano() {
-		return (System.nanoTime() - roundStartTime);
+	int intListValue(int i) {
+		return listValues[i];
 	}
 
-	public static long getRoundDuration() {
-		return (System.nanoTime() - roundStartTime) / msToNano;
+	/**
+	 * Reads a token such as "1-2,1-3" (or "x" for an empty list). Returns the
+	 * number of pairs, which are then available through connectionFrom(i) and
+	 * connectionTo(i).
+	 */
+	int nextConnectionList() {
+		int c = skipWhitespaces();
+		if (c == 'x') {
+			read();
+			return 0;
+		}
+		int count = 0;
+		int value = 0;
+		while (c > ' ') {
+			if (c == '-' || c == ',') {
+				store(count++, value);
+				value = 0;
+			} else {
+				value = value * 10 + (c - '0');
+			}
+			c = read();
+		}
+		store(count++, value);
+		return count / 2;
 	}
 
-	public static void addRoundDuration() {
-		totalRoundDuration += getRoundDurationNano();
+	int connectionFrom(int i) {
+		return listValues[2 * i];
 	}
 
-	public static void debugDuration(String message) {
-		Print.debug(message + ": " + getRoundDuration() + " ms");
+	int connectionTo(int i) {
+		return listValues[2 * i + 1];
 	}
 
-	public static void debugAverageRoundDuration(int round) {
-		if (round > 1) {
-			Print.debug("Average duration: " + Print.formatDoubleFixedLenghtAFterComma(-1, 2,
-					Time.totalRoundDuration / (((double) round - 1) * msToNano)));
+	private void store(int index, int value) {
+		if (index == listValues.length) {
+			listValues = java.util.Arrays.copyOf(listValues, listValues.length * 2);
 		}
+		listValues[index] = value;
 	}
-
 }
 
-class Print {
+/**
+ * Opt-in recording of the raw referee input, to replay a match offline through
+ * the same parsing and AI (Replay in the tests). Keeps the bytes read through
+ * it, and at the end of each turn writes them as one gzip member: to a file, or
+ * to stderr in the arena where files can't be retrieved, as REPLAY lines of
+ * base64 ending with a "REPLAY -" line. Gzip members concatenate into a valid
+ * gzip stream, so a match killed mid-way is still replayable.
+ */
+class InputRecorder extends FilterInputStream {
 
-	public static void debug(String message) {
-		if (Player.isDebugOn) {
-			System.err.println(message);
-		}
+	static final String STDERR_TARGET = "stderr";
+	static final String LINE_PREFIX = "REPLAY ";
+	static final String MEMBER_END = LINE_PREFIX + "-";
+	private static final int LINE_LENGTH = 2000; // base64 characters per stderr line
+
+	private final ByteArrayOutputStream turn = new ByteArrayOutputStream(1 << 16);
+	private final OutputStream file; // null for stderr
+
+	InputRecorder(InputStream in, OutputStream file) {
+		super(in);
+		this.file = file;
 	}
 
-	public static void debugForced(String message) {
-		System.err.println(message);
+	static InputRecorder open(InputStream in, String target) {
+		if (STDERR_TARGET.equals(target)) {
+			return new InputRecorder(in, null);
+		}
+		try {
+			return new InputRecorder(in, new FileOutputStream(target));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 
-	private static final String debugStartLine = "\"";
-	private static final String debugEndLine = "\",";
-	public static final String debugSep = " ";
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b >= 0) {
+			turn.write(b);
+		}
+		return b;
+	}
 
-	// Debug for later input in tests
-	public static void debugForInput(String message) {
-		debug(debugStartLine + message + debugEndLine);
-	}
-
-	public static String formatIntFixedLenght(int lenght, int i) {
-		return String.format("%0" + lenght + "d", i);
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = super.read(b, off, len);
+		if (n > 0) {
+			turn.write(b, off, n);
+		}
+		return n;
 	}
 
-	public static String formatDoubleFixedLenghtAFterComma(int lenghtBeforeComma, int lenghtAfterComma, double d) {
-		return String.format("%" + (lenghtBeforeComma == -1 ? "" : lenghtBeforeComma) + "." + lenghtAfterComma + "f",
-				d);
+	@Override
+	public void close() throws IOException {
+		endTurn();
+		if (file != null) {
+			file.close();
+		}
+		super.close();
 	}
 
-	// Use with caution if the string is split later... extra whitespaces could
-	// cause issues
-	public static String formatStringFixedLength(int length, String s) {
-		return String.format("%1$-" + length + "s", s);
+	/** Writes what was read since the last call, nothing if nothing was */
+	void endTurn() {
+		if (turn.size() == 0) {
+			return;
+		}
+		try {
+			ByteArrayOutputStream member = new ByteArrayOutputStream(turn.size() / 4 + 64);
+			try (GZIPOutputStream gzip = new GZIPOutputStream(member)) {
+				turn.writeTo(gzip);
+			}
+			turn.reset();
+			if (file != null) {
+				member.writeTo(file);
+				file.flush();
+				return;
+			}
+			String encoded = Base64.getEncoder().encodeToString(member.toByteArray());
+			StringBuilder lines = new StringBuilder(encoded.length() + 64);
+			for (int start = 0; start < encoded.length(); start += LINE_LENGTH) {
+				lines.append(LINE_PREFIX).append(encoded, start, Math.min(encoded.length(), start + LINE_LENGTH))
+						.append('\n');
+			}
+			lines.append(MEMBER_END);
+			Print.debugForced(lines.toString());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
-
 }
 
-// Consolidated model (single-file constraint): all domain records & enums
-// below.
+// Constants of the match for the static entry points (the stdin game and the
+// tests). The coord and connection tables are shared by every match of the JVM:
+// they only grow, and are replaced as a whole so readers never see them half
+// filled. Concurrent matches keep their own sizes in a MatchContext.
+class MatchConstants {
 
-enum ActionType {
-	PLACE_TRACKS, DISRUPT, AUTOPLACE, MESSAGE, WAIT
-}
+	private static volatile Connection[] connectionsById = new Connection[0]; // by Connection.id()
+	private static int connectionCityCount; // cities of the static match, bounds connection()
+	public static int cityCount;
+	public static int regionsCount;
+	public static final int INSTABILITY_THRESHOLD = 4;
+	public static final int MAX_ACTIONS_PER_TURN = 3;
+	public static final int MAX_TURNS = 100;
+	public static int height;
+	public static int width;
+	public static CityDistanceFields distanceFields; // set at match start
+	private static volatile Coord[][] coords = new Coord[0][0];
 
-record Coord(int x, int y) {
-	boolean isInside(int width, int height) {
-		return x >= 0 && x < width && y >= 0 && y < height;
+	public static Coord coord(int x, int y) {
+		return coords[x][y];
 	}
-}
 
-record Connection(int fromId, int toId) implements Comparable<Connection> {
-	@Override
-	public int compareTo(Connection other) {
-		if (this.fromId == other.fromId && this.toId() == other.toId()
-				|| this.fromId == other.toId && this.toId == other.fromId) {
-			return 0;
-		} else if (this.fromId != other.fromId) {
-			return Integer.compare(this.fromId, other.fromId);
+	public static void initCoords(int width, int height) {
+		ensureCoords(width, height);
+	}
+
+	static synchronized void ensureCoords(int width, int height) {
+		Coord[][] current = coords;
+		int currentHeight = current.length > 0 ? current[0].length : 0;
+		if (current.length >= width && currentHeight >= height) {
+			return;
+		}
+		int newWidth = Math.max(width, current.length);
+		int newHeight = Math.max(height, currentHeight);
+		Coord[][] grown = new Coord[newWidth][newHeight];
+		for (int x = 0; x < newWidth; x++) {
+			for (int y = 0; y < newHeight; y++) {
+				grown[x][y] = x < current.length && y < currentHeight ? current[x][y] : new Coord(x, y);
+			}
 		}
-		return Integer.compare(this.toId, other.toId);
+		coords = grown;
 	}
-}
 
-enum TerrainType {
-	PLAIN, RIVER, MOUNTAIN, POI;
+	public static boolean isValid(int x, int y) {
+		return x >= 0 && x < MatchConstants.width && y >= 0 && y < MatchConstants.height;
+	}
 
-	int buildCost() {
-		return switch (this) {
-			case PLAIN -> 1;
-			case RIVER -> 2;
-			case MOUNTAIN, POI -> 3;
-		};
+	public static void initConnections(int cityCount) {
+		ensureConnections(cityCount);
+		connectionCityCount = cityCount;
 	}
-}
 
-record Tile(int x, int y, int regionId, TerrainType type, City city) {
+	static synchronized void ensureConnections(int cityCount) {
+		Connection[] current = connectionsById;
+		if (current.length >= Connection.idCount(cityCount)) {
+			return;
+		}
+		Connection[] grown = java.util.Arrays.copyOf(current, Connection.idCount(cityCount));
+		for (int b = 1; b < cityCount; b++) {
+			for (int a = 0; a < b; a++) {
+				if (grown[Connection.id(a, b)] == null) {
+					grown[Connection.id(a, b)] = new Connection(a, b);
+				}
+			}
+		}
+		connectionsById = grown;
+	}
 
-	int buildCost() {
-		return switch (type) {
-			case PLAIN -> 1;
-			case RIVER -> 2;
-			case MOUNTAIN, POI -> 3;
-		};
+	public static Connection connection(int fromId, int toId) {
+		return connection(fromId, toId, connectionCityCount);
 	}
 
-	boolean hasCity() {
-		return city != null;
+	// Null unless both ids are distinct cities of a match of cityCount cities
+	static Connection connection(int fromId, int toId, int cityCount) {
+		if (fromId < 0 || toId < 0 || fromId == toId || fromId >= cityCount || toId >= cityCount) {
+			return null;
+		}
+		return connectionById(Connection.id(fromId, toId));
 	}
 
-	boolean hasPOI() {
-		return type == TerrainType.POI;
+	public static Connection connectionById(int id) {
+		Connection[] table = connectionsById;
+		if (id < table.length) {
+			return table[id];
+		}
+		// Unknown at this map size, decode the pair
+		int b = (int) ((1 + Math.sqrt(1 + 8.0 * id)) / 2);
+		while (b * (b - 1) / 2 > id) {
+			b--;
+		}
+		while ((b + 1) * b / 2 <= id) {
+			b++;
+		}
+		return new Connection(id - b * (b - 1) / 2, b);
 	}
+
 }
 
-record City(int id, int x, int y, int regionId, List<Integer> desiredCityIds) {
-	boolean desires(int otherCityId) {
-		return desiredCityIds != null && desiredCityIds.contains(otherCityId);
+// Round timer of a match. The static methods work on the timer of the static
+// match (the stdin game), each MatchContext has its own instance.
+class Time {
+	// Time constants
+	private static final int msToNano = 1_000_000;
+	private static final int maxRoundTime = 50 * msToNano; // 50 ms max to answer
+	private static final int roundTimeMargin = 15 * msToNano;
+	private static final int maxFirstRoundTime = 1000 * msToNano; // 1 s max to answer for first turn only
+	private static final int firstRoundTimeMargin = 50 * msToNano;
+	private static final int deadlineMargin = 5 * msToNano; // for the watchdog
+	private static final int firstRoundDeadlineMargin = 25 * msToNano;
+	private static final int maxRoundTimeWithMargin = maxRoundTime - roundTimeMargin;
+	private static final int maxFirstRoundTimeWithMargin = maxFirstRoundTime - firstRoundTimeMargin;
+	public static boolean noTimeLimit = false;
+
+	static final Time shared = new Time();
+
+	// Time a turn may take before the searches stop
+	static long roundBudgetNano() {
+		return maxRoundTimeWithMargin;
 	}
-}
 
-record Region(int id, int instability, List<Tile> cells, Set<Connection> connections, boolean hasCity) {
-	boolean isInstable() {
-		return instability >= MatchConstants.INSTABILITY_THRESHOLD;
+	// Same for the first turn
+	static long firstRoundBudgetNano() {
+		return maxFirstRoundTimeWithMargin;
 	}
 
-	Region increaseInstability(int quantity) {
-		return new Region(id, instability + quantity, cells, connections, hasCity);
+	// Time an answer must be sent by: the watchdog sends the best known then
+	static long deadlineNano(boolean isFirstTurn) {
+		return isFirstTurn ? maxFirstRoundTime - firstRoundDeadlineMargin : maxRoundTime - deadlineMargin;
 	}
 
-}
+	// Time variables
+	private long roundStartTime;
+	private long totalRoundDuration = 0;
+	private volatile boolean expired; // the round was answered at the deadline
+	private BooleanSupplier interruption; // expires the round while true, see interruptWhen
 
-enum RailOwner {
-	ME, OPPONENT, CONTESTED, NONE;
+	public static void startRoundTimer() {
+		shared.startRound();
+	}
 
-	boolean isOwned() {
-		return this == ME || this == OPPONENT;
+	public static boolean isTimeLeft(boolean isFirstTurn) {
+		return shared.hasTimeLeft(isFirstTurn);
 	}
-}
 
-class Rail {
-	int x;
-	int y;
-	RailOwner owner;
-	List<Connection> partOfActiveConnections;
+	public static long getRoundDurationNano() {
+		return shared.roundDurationNano();
+	}
 
-	Rail(int x, int y, RailOwner owner) {
-		this.x = x;
-		this.y = y;
-		this.owner = owner;
+	public static long getRoundDuration() {
+		return shared.roundDuration();
 	}
 
-	int x() {
-		return x;
+	public static void addRoundDuration() {
+		shared.addRound();
 	}
 
-	int y() {
-		return y;
+	public static void debugDuration(String message) {
+		shared.debug(message);
 	}
 
-	RailOwner owner() {
-		return owner;
+	public static void debugAverageRoundDuration(int round) {
+		shared.debugAverage(round);
 	}
 
-	boolean isContested() {
-		return owner == RailOwner.CONTESTED;
+	void startRound() {
+		roundStartTime = System.nanoTime();
+		expired = false;
 	}
-}
 
-record MapDefinition(
-		int width,
-		int height,
-		TerrainType[][] terrainType,
-		int[][] regionId,
-		int[][] cityId,
-		City[] citiesById,
-		Region[] regions) {
+	// Nothing computed this round is sent anymore, even without time limit
+	void expire() {
+		expired = true;
+	}
 
-	MapDefinition {
-		Objects.requireNonNull(terrainType);
-		Objects.requireNonNull(regionId);
-		Objects.requireNonNull(cityId);
-		Objects.requireNonNull(citiesById);
-		Objects.requireNonNull(regions);
+	boolean isExpired() {
+		return expired || interruption != null && interruption.getAsBoolean();
 	}
 
-	int regionIdAt(int x, int y) {
-		return regionId[x][y];
+	// Until cleared with null, the rounds are expired while the condition holds
+	// (checked on each time check of the searches)
+	void interruptWhen(BooleanSupplier interruption) {
+		this.interruption = interruption;
 	}
 
-	int regionIdAt(Coord coord) {
-		return regionIdAt(coord.x(), coord.y());
+	long roundStart() {
+		return roundStartTime;
 	}
 
-	City cityAt(int x, int y) {
-		int id = cityId[x][y];
-		return id >= 0 ? citiesById[id] : null;
+	// Back to a round started earlier, after the timer was used for other rounds
+	void resumeRound(long roundStart) {
+		roundStartTime = roundStart;
 	}
 
-	City cityAt(Coord coord) {
-		return cityAt(coord.x(), coord.y());
+	boolean hasTimeLeft(boolean isFirstTurn) {
+		return !isExpired() && (roundDurationNano() < maxRoundTimeWithMargin
+				|| (isFirstTurn && roundDurationNano() < maxFirstRoundTimeWithMargin) || noTimeLimit);
 	}
 
-	City cityById(int id) {
-		return citiesById[id];
+	long roundDurationNano() {
+		return (System.nanoTime() - roundStartTime);
 	}
 
-	int buildCostAt(int x, int y) {
-		return terrainType[x][y].buildCost();
+	// Until the searches stop, 0 once passed or expired
+	long timeLeftNano(boolean isFirstTurn) {
+		if (isExpired()) {
+			return 0;
+		}
+		long budget = isFirstTurn ? maxFirstRoundTimeWithMargin : maxRoundTimeWithMargin;
+		return Math.max(0, budget - roundDurationNano());
 	}
 
-	TerrainType terrainAt(Coord coord) {
-		return terrainType[coord.x()][coord.y()];
+	long roundDuration() {
+		return (System.nanoTime() - roundStartTime) / msToNano;
 	}
-}
 
-record Action(ActionType type, Coord coord1, Coord coord2, int id) implements Comparable<Action> {
-	static Action buildRail(int x, int y) {
-		return new Action(ActionType.PLACE_TRACKS, MatchConstants.coord(x, y), null, -1);
+	void addRound() {
+		totalRoundDuration += roundDurationNano();
 	}
 
-	static Action autoPlace(int x1, int y1, int x2, int y2) {
-		return new Action(ActionType.AUTOPLACE, MatchConstants.coord(x1, y1), MatchConstants.coord(x2, y2), -1);
+	void debug(String message) {
+		if (Print.isOn(Print.Level.DEBUG, Print.Category.TIME)) {
+			long duration = roundDuration();
+			Print.debug(Print.Category.TIME, () -> message + ": " + duration + " ms");
+		}
 	}
 
-	static Action disruptRegion(int id) {
-		Player.nbDisrupt++;
-		return new Action(ActionType.DISRUPT, null, null, id);
+	void debugAverage(int round) {
+		if (round > 1 && Print.isOn(Print.Level.DEBUG, Print.Category.TIME)) {
+			double average = totalRoundDuration / (((double) round - 1) * msToNano);
+			Print.debug(Print.Category.TIME,
+					() -> "Average duration: " + Print.formatDoubleFixedLenghtAFterComma(-1, 2, average));
+		}
 	}
 
-	static Action waitAction() {
-		Player.nbWait++;
-		return new Action(ActionType.WAIT, null, null, -1);
+}
+
+// Garbage collections of the JVM turn by turn, summed over its collectors. The
+// searches reuse their buffers so that no collection should happen after the
+// first turn on usual maps: this is the check.
+class GcMonitor {
+
+	private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+	private long turnStartCount;
+	private long turnStartMillis;
+	private long firstTurnEndCount = -1;
+	private long firstTurnEndMillis;
+
+	// Of the last turn, from startTurn to endTurn
+	long turnCollections;
+	long turnMillis;
+	// Since the end of the first turn, between the turns included
+	long collectionsAfterFirstTurn;
+	long millisAfterFirstTurn;
+
+	void startTurn() {
+		turnStartCount = collectionCount();
+		turnStartMillis = collectionMillis();
 	}
 
-	@Override
-	public int compareTo(Action other) {
-		return toString().compareTo(other.toString());
+	void endTurn(int round) {
+		long count = collectionCount();
+		long millis = collectionMillis();
+		turnCollections = count - turnStartCount;
+		turnMillis = millis - turnStartMillis;
+		if (firstTurnEndCount < 0) {
+			firstTurnEndCount = count;
+			firstTurnEndMillis = millis;
+		} else if (round > 1) {
+			collectionsAfterFirstTurn = count - firstTurnEndCount;
+			millisAfterFirstTurn = millis - firstTurnEndMillis;
+		}
+	}
+
+	// Undefined values (-1) are left out
+	private long collectionCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean collector : collectors) {
+			count += Math.max(0, collector.getCollectionCount());
+		}
+		return count;
+	}
+
+	private long collectionMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean collector : collectors) {
+			millis += Math.max(0, collector.getCollectionTime());
+		}
+		return millis;
 	}
 
 	@Override
 	public String toString() {
-		return switch (type) {
-			case PLACE_TRACKS -> ActionType.PLACE_TRACKS + " " + coord1.x() + " " + coord1.y();
-			case AUTOPLACE ->
-				ActionType.AUTOPLACE + " " + coord1.x() + " " + coord1.y() + " " + coord2.x() + " " + coord2.y();
-			case DISRUPT -> ActionType.DISRUPT + " " + id;
-			case MESSAGE -> ActionType.MESSAGE + " insert a message here";
-			case WAIT -> "WAIT";
-		};
+		return "GC: " + turnCollections + " collections (" + turnMillis + " ms) this turn, "
+				+ collectionsAfterFirstTurn + " (" + millisAfterFirstTurn + " ms) since the first turn";
 	}
 }
 
-record GameState(int round, MapDefinition map, Map<Coord, Rail> rails, int myScore, int opponentScore,
-		Set<Connection> cachedConnections) {
+/**
+ * Hard deadline of the answers. The AI publishes its best answer so far as it
+ * goes (MatchContext.publishAnswer), formatted on its own thread; if the turn
+ * is still computing at the deadline, this daemon thread prints that line (WAIT
+ * if none), then expires the round timer so the searches stop at their next
+ * time check and the turn ends early. The watchdog only touches the published
+ * line and the timer: the state of the match stays on the main thread. The
+ * sender claims the round first, the main thread or the watchdog, so an answer
+ * is never printed twice. The watchdog is stopped by stop-the-world collections
+ * too: it covers slow searches, not long pauses.
+ */
+class Watchdog {
 
-	GameState {
-		Objects.requireNonNull(map);
-		Objects.requireNonNull(rails);
-		Objects.requireNonNull(cachedConnections);
+	private static final List<Action> WAIT = List.of(Action.waitAction());
+
+	private record Turn(int round, long deadline) {
 	}
 
-	GameState nextRound() {
-		Print.debug("Advancing to round " + (round() + 1));
-		return new GameState(round() + 1, map(), rails(), myScore(), opponentScore(), cachedConnections());
+	private record Answer(List<Action> actions, String line) {
 	}
 
-	GameState withRails(List<Coord> coords, RailOwner owner) {
-		Map<Coord, Rail> newRails = new HashMap<>(rails);
-		for (Coord c : coords) {
-			Rail existing = newRails.get(c);
-			Rail newRail = existing == null ? new Rail(c.x(), c.y(), owner) : resolveConflict(existing, owner);
-			newRails.put(c, newRail);
-		}
-		return new GameState(round, map, newRails, myScore, opponentScore, cachedConnections);
+	private record Claim(int round, List<Action> actions) {
 	}
 
-	private Rail resolveConflict(Rail existing, RailOwner incoming) {
-		if (existing.owner() == incoming)
-			return existing;
-		return new Rail(existing.x, existing.y, RailOwner.CONTESTED);
+	private final Time time;
+	private final Function<List<Action>, String> formatter;
+	private final Consumer<String> sink;
+	private final long deadlineNano;
+	private final long firstRoundDeadlineNano;
+	private final AtomicReference<Claim> sent = new AtomicReference<>(new Claim(0, WAIT));
+	private final Thread thread;
+	private volatile Turn armed;
+	private volatile Answer best;
+	volatile int lateTurns; // answered by the watchdog
+	private long sendNanos; // printing of the last late answer, guarded by this
+
+	Watchdog(Time time, Function<List<Action>, String> formatter, Consumer<String> sink) {
+		this(time, formatter, sink, Time.deadlineNano(false), Time.deadlineNano(true));
 	}
 
-	Map<Coord, Rail> railsInRegionAsMap(int regionId) {
-		Map<Coord, Rail> filtered = new HashMap<>();
-		for (var e : rails.entrySet()) {
-			int rid = map.regionIdAt(e.getKey().x(), e.getKey().y());
-			// BugFix: was the opposite logic
-			if (rid == regionId)
-				filtered.put(e.getKey(), e.getValue());
-		}
-		return filtered;
+	Watchdog(Time time, Function<List<Action>, String> formatter, Consumer<String> sink, long deadlineNano,
+			long firstRoundDeadlineNano) {
+		this.time = time;
+		this.formatter = formatter;
+		this.sink = sink;
+		this.deadlineNano = deadlineNano;
+		this.firstRoundDeadlineNano = firstRoundDeadlineNano;
+		thread = new Thread(this::watch, "watchdog");
+		thread.setDaemon(true);
+		thread.start();
 	}
 
-	boolean canBuildAt(Coord c) {
-		int regionId = map.regionIdAt(c.x(), c.y());
-		if (map().regions()[regionId].isInstable())
-			return false;
+	// Arms the deadline of the round started by the timer
+	void startTurn(int round) {
+		best = new Answer(WAIT, formatter.apply(WAIT));
+		armed = new Turn(round, time.roundStart() + (round == 1 ? firstRoundDeadlineNano : deadlineNano));
+		LockSupport.unpark(thread);
+	}
 
-		// BugFix: adding check on rails presence here that was missing
-		return !(map().cityAt(c.x(), c.y()) != null);
+	// From the thread of the turn, which owns what the line is formatted from
+	void publish(List<Action> actions) {
+		List<Action> copy = List.copyOf(actions);
+		best = new Answer(copy, formatter.apply(copy));
 	}
 
-	GameState increaseInstability(int regionId, int quantity) {
-		Region[] newRegions = map().regions();
-		if (regionId >= 0 && regionId < newRegions.length) {
-			newRegions[regionId] = newRegions[regionId].increaseInstability(quantity);
-			if (newRegions[regionId].isInstable()) {
-				Map<Coord, Rail> railsToRemove = railsInRegionAsMap(regionId);
-				Map<Coord, Rail> newRails = new HashMap<>(rails);
-				for (Coord c : railsToRemove.keySet()) {
-					newRails.remove(c);
-					Rail railToRemove = railsToRemove.get(c);
-					// TODO: Fix Me Stupid way to update cached connections
-					if (railToRemove != null && railToRemove.partOfActiveConnections != null) {
-						for (Connection conn : railToRemove.partOfActiveConnections) {
-							cachedConnections.remove(conn);
-						}
-					}
-				}
-				return new GameState(round, map, newRails, myScore, opponentScore, cachedConnections);
+	/**
+	 * Claims the round to send these actions. Returns them if the round wasn't
+	 * answered yet, else the ones the watchdog sent at the deadline.
+	 */
+	List<Action> claim(int round, List<Action> actions) {
+		Claim claim = new Claim(round, actions);
+		while (true) {
+			Claim last = sent.get();
+			if (last.round() >= round) {
+				return last.actions();
+			}
+			if (sent.compareAndSet(last, claim)) {
+				return actions;
 			}
 		}
-		return new GameState(round, map, rails, myScore, opponentScore, cachedConnections);
 	}
 
-	GameState withScores(int my, int opp) {
-		return new GameState(round, map, rails, my, opp, cachedConnections);
+	// Printing time of the last late answer, once printed
+	synchronized long sendNanos() {
+		return sendNanos;
 	}
 
-	GameState withCachedConnections(Set<Connection> connections) {
-		return new GameState(round, map, rails, myScore, opponentScore, connections);
+	private void watch() {
+		while (true) {
+			Turn turn = armed;
+			if (turn == null || sent.get().round() >= turn.round()) {
+				LockSupport.park(this);
+				continue;
+			}
+			long wait = turn.deadline() - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(this, wait); // woken up early or rearmed: checks again
+				continue;
+			}
+			// Claimed and printed under the lock: a main thread which lost the claim
+			// waits for the line in sendNanos()
+			synchronized (this) {
+				Answer answer = best;
+				if (claim(turn.round(), answer.actions()) == answer.actions()) {
+					time.expire();
+					lateTurns++;
+					long start = System.nanoTime();
+					sink.accept(answer.line());
+					sendNanos = System.nanoTime() - start;
+				}
+			}
+		}
 	}
+}
 
-	int regionIdAt(Coord coord) {
-		return map.regionIdAt(coord);
+/**
+ * Turn telemetry of a match: the duration of each phase of the turns in
+ * fixed-bucket histograms, and counters of the NAMOA* searches. Percentiles
+ * show the slow turns which a mean hides. Summarized in the debug output of the
+ * last turn and at the end of the input, and dumped as JSON by the tournament.
+ */
+class Telemetry {
+
+	enum Phase {
+		PARSE, DISRUPT, NAMOA, RAIL_SELECTION, OUTPUT, TURN
+	}
+
+	private final Histogram[] phases = new Histogram[Phase.values().length];
+	final Histogram nodesPerCity = new Histogram(); // nodes expanded per start city of a search
+	long searches;
+	long nodesExpanded;
+	long pathsFound;
+	final long[] terminations = new long[NAMOASearchContext.Termination.values().length]; // of the start cities
+	boolean paused; // synthetic turns (warm-up) aren't recorded
+
+	Telemetry() {
+		for (int i = 0; i < phases.length; i++) {
+			phases[i] = new Histogram();
+		}
+	}
+
+	Histogram phase(Phase phase) {
+		return phases[phase.ordinal()];
+	}
+
+	void record(Phase phase, long nanos) {
+		if (!paused) {
+			phases[phase.ordinal()].record(nanos);
+		}
+	}
+
+	void recordSearch(int[] nodesPerStart, NAMOASearchContext.Termination[] endsPerStart, int starts, int paths) {
+		if (paused) {
+			return;
+		}
+		searches++;
+		pathsFound += paths;
+		for (int slot = 0; slot < starts; slot++) {
+			nodesExpanded += nodesPerStart[slot];
+			nodesPerCity.record(nodesPerStart[slot]);
+			terminations[endsPerStart[slot].ordinal()]++;
+		}
+	}
+
+	void merge(Telemetry other) {
+		for (int i = 0; i < phases.length; i++) {
+			phases[i].merge(other.phases[i]);
+		}
+		nodesPerCity.merge(other.nodesPerCity);
+		searches += other.searches;
+		nodesExpanded += other.nodesExpanded;
+		pathsFound += other.pathsFound;
+		for (int i = 0; i < terminations.length; i++) {
+			terminations[i] += other.terminations[i];
+		}
+	}
+
+	/** One line per phase, in ms */
+	String summary() {
+		StringBuilder sb = new StringBuilder("Telemetry over " + phase(Phase.TURN).count() + " turns:");
+		for (Phase phase : Phase.values()) {
+			Histogram histogram = phase(phase);
+			sb.append(String.format("%n  %-14s p50 %7.2f  p90 %7.2f  p99 %7.2f  max %7.2f ms", phase,
+					histogram.percentile(50) / 1e6, histogram.percentile(90) / 1e6, histogram.percentile(99) / 1e6,
+					histogram.max() / 1e6));
+		}
+		sb.append(String.format("%n  %d searches, %d nodes expanded (p50 %d  p99 %d per city), %d paths found",
+				searches, nodesExpanded, nodesPerCity.percentile(50), nodesPerCity.percentile(99), pathsFound));
+		sb.append("\n  city searches ended by");
+		for (NAMOASearchContext.Termination termination : NAMOASearchContext.Termination.values()) {
+			sb.append(' ').append(termination.name().toLowerCase()).append(' ')
+					.append(terminations[termination.ordinal()]);
+		}
+		return sb.toString();
+	}
+
+	/** Counters and percentiles, durations in ns */
+	String toJson() {
+		StringBuilder sb = new StringBuilder("{\"searches\":").append(searches)
+				.append(",\"nodesExpanded\":").append(nodesExpanded)
+				.append(",\"pathsFound\":").append(pathsFound)
+				.append(",\"terminations\":{");
+		for (NAMOASearchContext.Termination termination : NAMOASearchContext.Termination.values()) {
+			sb.append(termination.ordinal() == 0 ? "\"" : ",\"").append(termination.name().toLowerCase()).append("\":")
+					.append(terminations[termination.ordinal()]);
+		}
+		sb.append("},\"nodesPerCity\":");
+		nodesPerCity.appendJson(sb);
+		sb.append(",\"phases\":{");
+		for (Phase phase : Phase.values()) {
+			sb.append(phase.ordinal() == 0 ? "\"" : ",\"").append(phase.name().toLowerCase()).append("\":");
+			phase(phase).appendJson(sb);
+		}
+		return sb.append("}}").toString();
+	}
+
+	/**
+	 * Counts of non-negative values in log-linear buckets, HDR style: 16
+	 * sub-buckets per power of two, exact under 32. A percentile is the upper
+	 * bound of its bucket (capped by the max), within 1/16 of the recorded value.
+	 */
+	static class Histogram {
+
+		private static final int SUB_BUCKET_BITS = 4;
+		private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+		private final long[] counts = new long[(64 - SUB_BUCKET_BITS) * SUB_BUCKETS];
+		private long count;
+		private long max;
+		private long sum;
+
+		void record(long value) {
+			counts[bucket(Math.max(0, value))]++;
+			count++;
+			max = Math.max(max, value);
+			sum += value;
+		}
+
+		static int bucket(long value) {
+			int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+			return shift * SUB_BUCKETS + (int) (value >>> shift);
+		}
+
+		// Highest value of the bucket
+		static long upperBound(int bucket) {
+			int shift = Math.max(0, bucket / SUB_BUCKETS - 1);
+			long subBucket = bucket - shift * SUB_BUCKETS;
+			return ((subBucket + 1) << shift) - 1;
+		}
+
+		long count() {
+			return count;
+		}
+
+		long max() {
+			return max;
+		}
+
+		double mean() {
+			return count == 0 ? 0 : (double) sum / count;
+		}
+
+		long percentile(double p) {
+			if (count == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(p / 100 * count));
+			long seen = 0;
+			for (int bucket = 0; bucket < counts.length; bucket++) {
+				seen += counts[bucket];
+				if (seen >= rank) {
+					return Math.min(upperBound(bucket), max);
+				}
+			}
+			return max;
+		}
+
+		void merge(Histogram other) {
+			for (int bucket = 0; bucket < counts.length; bucket++) {
+				counts[bucket] += other.counts[bucket];
+			}
+			count += other.count;
+			max = Math.max(max, other.max);
+			sum += other.sum;
+		}
+
+		void appendJson(StringBuilder sb) {
+			sb.append("{\"count\":").append(count)
+					.append(",\"mean\":").append(Math.round(mean()))
+					.append(",\"p50\":").append(percentile(50))
+					.append(",\"p90\":").append(percentile(90))
+					.append(",\"p99\":").append(percentile(99))
+					.append(",\"max\":").append(max).append('}');
+		}
+	}
+}
+
+/**
+ * Debug output. A message has a level and a category, and is only kept when
+ * both are enabled. Kept messages go to a ring buffer, which flush() writes to
+ * stderr once the actions of the turn are out: on the critical path a message
+ * costs an append, or nothing when disabled. The supplier of a message is only
+ * called by flush(), so it must capture values rather than state which changes
+ * later in the turn. When more than BUFFER_SIZE messages are kept between two
+ * flushes, the oldest ones are dropped.
+ */
+class Print {
+
+	enum Level {
+		TRACE, DEBUG, INFO, OFF
+	}
+
+	enum Category {
+		GENERAL, INPUT, TIME, SEARCH, BUILD, DISRUPT
+	}
+
+	static final int BUFFER_SIZE = 1 << 12;
+
+	// Messages under this level are dropped
+	static volatile Level level = Level.DEBUG;
+	private static volatile int disabledCategories = 0; // bit per Category ordinal
+
+	private static final Object lock = new Object();
+	private static final Object[] messages = new Object[BUFFER_SIZE]; // String or Supplier<String>
+	private static int first;
+	private static int count;
+	private static int dropped;
+	private static final StringBuilder output = new StringBuilder(1 << 16);
+
+	static void setCategoryEnabled(Category category, boolean enabled) {
+		if (enabled) {
+			disabledCategories &= ~(1 << category.ordinal());
+		} else {
+			disabledCategories |= 1 << category.ordinal();
+		}
+	}
+
+	static boolean isOn(Level messageLevel, Category category) {
+		return Player.isDebugOn && messageLevel.compareTo(level) >= 0
+				&& (disabledCategories & 1 << category.ordinal()) == 0;
+	}
+
+	static void log(Level messageLevel, Category category, String message) {
+		if (isOn(messageLevel, category)) {
+			append(message);
+		}
+	}
+
+	static void log(Level messageLevel, Category category, Supplier<String> message) {
+		if (isOn(messageLevel, category)) {
+			append(message);
+		}
+	}
+
+	public static void debug(String message) {
+		log(Level.DEBUG, Category.GENERAL, message);
+	}
+
+	static void debug(Category category, Supplier<String> message) {
+		log(Level.DEBUG, category, message);
+	}
+
+	static void trace(Category category, Supplier<String> message) {
+		log(Level.TRACE, category, message);
+	}
+
+	private static void append(Object message) {
+		synchronized (lock) {
+			if (count == BUFFER_SIZE) {
+				first = (first + 1) % BUFFER_SIZE;
+				count--;
+				dropped++;
+			}
+			messages[(first + count++) % BUFFER_SIZE] = message;
+		}
+	}
+
+	/** Formats the buffered messages and writes them to stderr, oldest first */
+	static void flush() {
+		synchronized (lock) {
+			if (count == 0) {
+				return;
+			}
+			output.setLength(0);
+			if (dropped > 0) {
+				output.append("(").append(dropped).append(" older debug messages dropped)\n");
+			}
+			for (int i = 0; i < count; i++) {
+				int slot = (first + i) % BUFFER_SIZE;
+				Object message = messages[slot];
+				messages[slot] = null;
+				output.append(message instanceof Supplier<?> supplier ? supplier.get() : message).append('\n');
+			}
+			first = 0;
+			count = 0;
+			dropped = 0;
+			System.err.print(output);
+			System.err.flush();
+		}
+	}
+
+	// Immediately, whatever the level
+	public static void debugForced(String message) {
+		System.err.println(message);
+	}
+
+	private static final String debugStartLine = "\"";
+	private static final String debugEndLine = "\",";
+	public static final String debugSep = " ";
+
+	// Debug for later input in tests
+	public static void debugForInput(String message) {
+		debug(debugStartLine + message + debugEndLine);
+	}
+
+	public static String formatIntFixedLenght(int lenght, int i) {
+		return String.format("%0" + lenght + "d", i);
+	}
+
+	public static String formatDoubleFixedLenghtAFterComma(int lenghtBeforeComma, int lenghtAfterComma, double d) {
+		return String.format("%" + (lenghtBeforeComma == -1 ? "" : lenghtBeforeComma) + "." + lenghtAfterComma + "f",
+				d);
+	}
+
+	// Use with caution if the string is split later... extra whitespaces could
+	// cause issues
+	public static String formatStringFixedLength(int length, String s) {
+		return String.format("%1$-" + length + "s", s);
+	}
+
+}
+
+// Consolidated model (single-file constraint): all domain records & enums
+// below.
+
+enum ActionType {
+	PLACE_TRACKS, DISRUPT, AUTOPLACE, MESSAGE, WAIT
+}
+
+record Coord(int x, int y) {
+	boolean isInside(int width, int height) {
+		return x >= 0 && x < width && y >= 0 && y < height;
+	}
+}
+
+// An unordered pair of cities. Pairs have dense ids whatever the number of
+// cities: b * (b - 1) / 2 + a for a < b, so 0-1 is 0, 0-2 is 1, 1-2 is 2, 0-3 is 3...
+record Connection(int fromId, int toId) implements Comparable<Connection> {
+
+	static int id(int cityA, int cityB) {
+		int a = Math.min(cityA, cityB);
+		int b = Math.max(cityA, cityB);
+		return b * (b - 1) / 2 + a;
+	}
+
+	// Number of ids for cityCount cities
+	static int idCount(int cityCount) {
+		return cityCount * (cityCount - 1) / 2;
+	}
+
+	int id() {
+		return id(fromId, toId);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof Connection other && (fromId == other.fromId && toId == other.toId
+				|| fromId == other.toId && toId == other.fromId);
+	}
+
+	@Override
+	public int hashCode() {
+		return id();
+	}
+
+	@Override
+	public int compareTo(Connection other) {
+		return Integer.compare(id(), other.id());
+	}
+}
+
+// Set of connections as a bitset over the dense connection ids (see
+// Connection.id()): membership is a bit test, union and difference with
+// another ConnectionSet are word operations.
+class ConnectionSet extends AbstractSet<Connection> {
+
+	private long[] words;
+	private int size;
+
+	ConnectionSet() {
+		this.words = new long[1];
+	}
+
+	ConnectionSet(Collection<? extends Connection> connections) {
+		this();
+		addAll(connections);
+	}
+
+	boolean containsId(int id) {
+		int word = id >>> 6;
+		return word < words.length && (words[word] & (1L << id)) != 0;
+	}
+
+	boolean addId(int id) {
+		int word = id >>> 6;
+		if (word >= words.length) {
+			words = java.util.Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+		}
+		if ((words[word] & (1L << id)) != 0) {
+			return false;
+		}
+		words[word] |= 1L << id;
+		size++;
+		return true;
+	}
+
+	boolean removeId(int id) {
+		if (!containsId(id)) {
+			return false;
+		}
+		words[id >>> 6] &= ~(1L << id);
+		size--;
+		return true;
+	}
+
+	// Smallest id >= fromId in the set, -1 if none
+	int nextId(int fromId) {
+		int word = fromId >>> 6;
+		if (word >= words.length) {
+			return -1;
+		}
+		long bits = words[word] & (-1L << fromId);
+		while (true) {
+			if (bits != 0) {
+				return word * 64 + Long.numberOfTrailingZeros(bits);
+			}
+			if (++word == words.length) {
+				return -1;
+			}
+			bits = words[word];
+		}
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof Connection connection && containsId(connection.id());
+	}
+
+	@Override
+	public boolean add(Connection connection) {
+		return addId(connection.id());
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		return o instanceof Connection connection && removeId(connection.id());
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		java.util.Arrays.fill(words, 0L);
+		size = 0;
+	}
+
+	@Override
+	public boolean addAll(Collection<? extends Connection> connections) {
+		if (!(connections instanceof ConnectionSet other)) {
+			return super.addAll(connections);
+		}
+		if (other.words.length > words.length) {
+			words = java.util.Arrays.copyOf(words, other.words.length);
+		}
+		for (int i = 0; i < other.words.length; i++) {
+			words[i] |= other.words[i];
+		}
+		return recount();
+	}
+
+	@Override
+	public boolean removeAll(Collection<?> connections) {
+		if (!(connections instanceof ConnectionSet other)) {
+			boolean changed = false;
+			for (Object connection : connections) {
+				changed |= remove(connection);
+			}
+			return changed;
+		}
+		for (int i = 0; i < Math.min(words.length, other.words.length); i++) {
+			words[i] &= ~other.words[i];
+		}
+		return recount();
+	}
+
+	@Override
+	public boolean retainAll(Collection<?> connections) {
+		if (!(connections instanceof ConnectionSet other)) {
+			return super.retainAll(connections);
+		}
+		for (int i = 0; i < words.length; i++) {
+			words[i] &= i < other.words.length ? other.words[i] : 0L;
+		}
+		return recount();
+	}
+
+	@Override
+	public boolean containsAll(Collection<?> connections) {
+		if (!(connections instanceof ConnectionSet other)) {
+			return super.containsAll(connections);
+		}
+		for (int i = 0; i < other.words.length; i++) {
+			long mine = i < words.length ? words[i] : 0L;
+			if ((other.words[i] & ~mine) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof ConnectionSet other) {
+			return size == other.size && containsAll(other);
+		}
+		return super.equals(o);
+	}
+
+	// Sum of the element hash codes as for any Set, Connection.hashCode() being its id
+	@Override
+	public int hashCode() {
+		int hash = 0;
+		for (int id = nextId(0); id >= 0; id = nextId(id + 1)) {
+			hash += id;
+		}
+		return hash;
+	}
+
+	@Override
+	public Iterator<Connection> iterator() {
+		return new Iterator<>() {
+			private int next = nextId(0);
+			private int last = -1;
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public Connection next() {
+				if (next < 0) {
+					throw new NoSuchElementException();
+				}
+				last = next;
+				next = nextId(next + 1);
+				return MatchConstants.connectionById(last);
+			}
+
+			@Override
+			public void remove() {
+				if (last < 0) {
+					throw new IllegalStateException();
+				}
+				removeId(last);
+				last = -1;
+			}
+		};
+	}
+
+	// Updates size after a word operation, returns true if it changed
+	private boolean recount() {
+		int previous = size;
+		size = 0;
+		for (long word : words) {
+			size += Long.bitCount(word);
+		}
+		return size != previous;
+	}
+}
+
+enum TerrainType {
+	PLAIN, RIVER, MOUNTAIN, POI;
+
+	int buildCost() {
+		return switch (this) {
+			case PLAIN -> 1;
+			case RIVER -> 2;
+			case MOUNTAIN, POI -> 3;
+		};
+	}
+}
+
+record Tile(int x, int y, int regionId, TerrainType type, City city) {
+
+	int buildCost() {
+		return switch (type) {
+			case PLAIN -> 1;
+			case RIVER -> 2;
+			case MOUNTAIN, POI -> 3;
+		};
+	}
+
+	boolean hasCity() {
+		return city != null;
+	}
+
+	boolean hasPOI() {
+		return type == TerrainType.POI;
+	}
+}
+
+record City(int id, int x, int y, int regionId, List<Integer> desiredCityIds) {
+	boolean desires(int otherCityId) {
+		return desiredCityIds != null && desiredCityIds.contains(otherCityId);
+	}
+}
+
+record Region(int id, int instability, List<Tile> cells, Set<Connection> connections, boolean hasCity) {
+	boolean isInstable() {
+		return instability >= MatchConstants.INSTABILITY_THRESHOLD;
+	}
+
+	Region increaseInstability(int quantity) {
+		return new Region(id, instability + quantity, cells, connections, hasCity);
+	}
+
+}
+
+enum RailOwner {
+	ME, OPPONENT, CONTESTED, NONE;
+
+	boolean isOwned() {
+		return this == ME || this == OPPONENT;
+	}
+}
+
+class Rail {
+	int x;
+	int y;
+	RailOwner owner;
+	Set<Connection> partOfActiveConnections;
+
+	Rail(int x, int y, RailOwner owner) {
+		this.x = x;
+		this.y = y;
+		this.owner = owner;
+	}
+
+	int x() {
+		return x;
+	}
+
+	int y() {
+		return y;
+	}
+
+	RailOwner owner() {
+		return owner;
+	}
+
+	boolean isContested() {
+		return owner == RailOwner.CONTESTED;
+	}
+}
+
+// Rails of the whole map in flat arrays indexed by y * width + x, so lookups are
+// array reads and copies are System.arraycopy. Active connections of a cell are
+// stored as an index in a per-turn table of connection lists, 0 meaning none.
+class RailBoard {
+
+	private static final RailOwner[] OWNERS = RailOwner.values();
+	private static final byte NO_RAIL = (byte) RailOwner.NONE.ordinal();
+	static final int NO_CONNECTIONS = 0;
+
+	final int width;
+	final int height;
+	private final byte[] owners;
+	private final int[] connectionSetIds;
+	// Shared between copies: only appended to, entries never change
+	private final List<ConnectionSet> connectionSets;
+	// Shared too: entries added by setInternedConnections, by content
+	private final Map<ConnectionSet, Integer> internedIds;
+	private int railCount;
+	private int version; // bumped on every write, lets derived indexes detect in-place changes
+
+	RailBoard(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.owners = new byte[width * height];
+		this.connectionSetIds = new int[width * height];
+		this.connectionSets = new ArrayList<>();
+		this.connectionSets.add(new ConnectionSet()); // read-only
+		this.internedIds = new HashMap<>();
+		java.util.Arrays.fill(owners, NO_RAIL);
+	}
+
+	private RailBoard(RailBoard other) {
+		this.width = other.width;
+		this.height = other.height;
+		this.owners = new byte[other.owners.length];
+		this.connectionSetIds = new int[other.connectionSetIds.length];
+		System.arraycopy(other.owners, 0, owners, 0, owners.length);
+		System.arraycopy(other.connectionSetIds, 0, connectionSetIds, 0, connectionSetIds.length);
+		this.connectionSets = other.connectionSets;
+		this.internedIds = other.internedIds;
+		this.railCount = other.railCount;
+	}
+
+	static RailBoard fromMap(int width, int height, Map<Coord, Rail> rails) {
+		RailBoard board = new RailBoard(width, height);
+		for (Rail rail : rails.values()) {
+			board.put(rail.x(), rail.y(), rail.owner());
+			if (rail.partOfActiveConnections != null && !rail.partOfActiveConnections.isEmpty()) {
+				board.setConnections(rail.x(), rail.y(), rail.partOfActiveConnections);
+			}
+		}
+		return board;
+	}
+
+	RailBoard copy() {
+		return new RailBoard(this);
+	}
+
+	int index(int x, int y) {
+		return y * width + x;
+	}
+
+	int xOf(int index) {
+		return index % width;
+	}
+
+	int yOf(int index) {
+		return index / width;
+	}
+
+	int cellCount() {
+		return owners.length;
+	}
+
+	int size() {
+		return railCount;
+	}
+
+	boolean isEmpty() {
+		return railCount == 0;
+	}
+
+	int version() {
+		return version;
+	}
+
+	boolean hasRail(int index) {
+		return owners[index] != NO_RAIL;
+	}
+
+	boolean hasRail(int x, int y) {
+		return owners[index(x, y)] != NO_RAIL;
+	}
+
+	boolean containsKey(Coord coord) {
+		return coord.isInside(width, height) && hasRail(coord.x(), coord.y());
+	}
+
+	RailOwner ownerAt(int index) {
+		return OWNERS[owners[index]];
+	}
+
+	RailOwner ownerAt(int x, int y) {
+		return OWNERS[owners[index(x, y)]];
+	}
+
+	ConnectionSet connectionsAt(int index) {
+		return connectionSets.get(connectionSetIds[index]);
+	}
+
+	// Allocates a Rail view of the cell, null if there's no rail
+	Rail get(Coord coord) {
+		if (!containsKey(coord)) {
+			return null;
+		}
+		int index = index(coord.x(), coord.y());
+		Rail rail = new Rail(coord.x(), coord.y(), ownerAt(index));
+		rail.partOfActiveConnections = connectionsAt(index);
+		return rail;
+	}
+
+	void put(int x, int y, RailOwner owner) {
+		version++;
+		int index = index(x, y);
+		if (owners[index] == NO_RAIL) {
+			railCount++;
+		}
+		owners[index] = (byte) owner.ordinal();
+	}
+
+	void setConnections(int x, int y, Set<Connection> connections) {
+		setConnections(index(x, y), connections);
+	}
+
+	void setConnections(int index, Set<Connection> connections) {
+		version++;
+		connectionSetIds[index] = connectionSets.size();
+		connectionSets.add(connections instanceof ConnectionSet set ? set : new ConnectionSet(connections));
+	}
+
+	// Same as setConnections, reusing the entry of an equal set: simulations
+	// setting the same sets over and over don't grow the list
+	void setInternedConnections(int index, ConnectionSet connections) {
+		version++;
+		if (connections.isEmpty()) {
+			connectionSetIds[index] = NO_CONNECTIONS;
+			return;
+		}
+		Integer id = internedIds.get(connections);
+		if (id == null) {
+			id = connectionSets.size();
+			ConnectionSet copy = new ConnectionSet(connections);
+			connectionSets.add(copy);
+			internedIds.put(copy, id);
+		}
+		connectionSetIds[index] = id;
+	}
+
+	void clearConnections(int index) {
+		version++;
+		connectionSetIds[index] = NO_CONNECTIONS;
+	}
+
+	void remove(int index) {
+		version++;
+		if (owners[index] != NO_RAIL) {
+			railCount--;
+		}
+		owners[index] = NO_RAIL;
+		connectionSetIds[index] = NO_CONNECTIONS;
+	}
+
+	// Raw cell content, for MoveLog
+	byte rawOwnerAt(int index) {
+		return owners[index];
+	}
+
+	int connectionSetIdAt(int index) {
+		return connectionSetIds[index];
+	}
+
+	void restore(int index, byte owner, int connectionSetId) {
+		version++;
+		railCount += (owner != NO_RAIL ? 1 : 0) - (owners[index] != NO_RAIL ? 1 : 0);
+		owners[index] = owner;
+		connectionSetIds[index] = connectionSetId;
+	}
+}
+
+// Undo log of the in-place moves applied on a GameState (see
+// GameState.applyRail). Entries are 3 ints (kind, index, value); previous
+// regions and removed connections go on a parallel object stack.
+class MoveLog {
+
+	private static final int CELL = 0;
+	private static final int REGION = 1;
+	private static final int CONNECTION_REMOVED = 2;
+	private static final int CONNECTION_ADDED = 3;
+	private static final int ENTRY_SIZE = 3;
+
+	private int[] entries = new int[ENTRY_SIZE * 256];
+	private int size = 0;
+	private Object[] objects = new Object[64];
+	private int objectCount = 0;
+
+	int mark() {
+		return size;
+	}
+
+	void clear() {
+		size = 0;
+		java.util.Arrays.fill(objects, 0, objectCount, null);
+		objectCount = 0;
+	}
+
+	void recordCell(RailBoard rails, int index) {
+		push(CELL, index, (rails.connectionSetIdAt(index) << 8) | (rails.rawOwnerAt(index) & 0xFF));
+	}
+
+	void recordRegion(Region previous) {
+		push(REGION, previous.id(), 0);
+		pushObject(previous);
+	}
+
+	void recordConnectionRemoved(Connection connection) {
+		push(CONNECTION_REMOVED, 0, 0);
+		pushObject(connection);
+	}
+
+	void recordConnectionAdded(Connection connection) {
+		push(CONNECTION_ADDED, 0, 0);
+		pushObject(connection);
+	}
+
+	void undo(GameState gs, int mark) {
+		while (size > mark) {
+			size -= ENTRY_SIZE;
+			int kind = entries[size];
+			int index = entries[size + 1];
+			int value = entries[size + 2];
+			switch (kind) {
+				case CELL -> gs.rails().restore(index, (byte) (value & 0xFF), value >>> 8);
+				case REGION -> gs.map().regions()[index] = (Region) popObject();
+				case CONNECTION_REMOVED -> gs.cachedConnections().add((Connection) popObject());
+				case CONNECTION_ADDED -> gs.cachedConnections().remove(popObject());
+				default -> throw new IllegalStateException("Unknown move log entry " + kind);
+			}
+		}
+	}
+
+	private void push(int kind, int index, int value) {
+		if (size + ENTRY_SIZE > entries.length) {
+			entries = java.util.Arrays.copyOf(entries, entries.length * 2);
+		}
+		entries[size] = kind;
+		entries[size + 1] = index;
+		entries[size + 2] = value;
+		size += ENTRY_SIZE;
+	}
+
+	private void pushObject(Object o) {
+		if (objectCount == objects.length) {
+			objects = java.util.Arrays.copyOf(objects, objects.length * 2);
+		}
+		objects[objectCount++] = o;
+	}
+
+	private Object popObject() {
+		Object o = objects[--objectCount];
+		objects[objectCount] = null;
+		return o;
+	}
+}
+
+// What changed in the referee input since the previous turn, as recorded by
+// Player.initRound while patching its board. Lets the AI caches (paths, disrupt
+// scores...) invalidate only what was touched. The first turn is a full refresh.
+class TurnChanges {
+
+	static final int RAIL_ADDED = 1;
+	static final int RAIL_REMOVED = 2;
+	static final int OWNER_CHANGED = 4;
+	static final int CONNECTIONS_CHANGED = 8;
+
+	final int round;
+	private final boolean fullRefresh;
+
+	// Cells, in input order
+	private final int[] cellKinds; // per cell, union of the change kinds, 0 if untouched
+	private final byte[] previousOwners; // per cell, RailOwner ordinal before the change
+	private int[] changedCells = new int[16];
+	private int changedCellCount;
+
+	// Regions
+	private final int[] previousInstability;
+	private final boolean[] instabilityChanged;
+	private final boolean[] connectionsChanged;
+	private final boolean[] regionTouched;
+	private int[] changedRegions = new int[8];
+	private int changedRegionCount;
+
+	private final List<Connection> connectionsGained = new ArrayList<>();
+	private final List<Connection> connectionsLost = new ArrayList<>();
+
+	TurnChanges(int round, int cellCount, int regionsCount, boolean fullRefresh) {
+		this.round = round;
+		this.fullRefresh = fullRefresh;
+		this.cellKinds = new int[cellCount];
+		this.previousOwners = new byte[cellCount];
+		this.previousInstability = new int[regionsCount];
+		this.instabilityChanged = new boolean[regionsCount];
+		this.connectionsChanged = new boolean[regionsCount];
+		this.regionTouched = new boolean[regionsCount];
+	}
+
+	/**
+	 * Changes from one state to the next of the same map, for callers which build
+	 * their states instead of parsing the input (simulations). A full refresh when
+	 * there is no previous state.
+	 */
+	static TurnChanges between(GameState previous, GameState current) {
+		RailBoard rails = current.rails();
+		Region[] regions = current.map().regions();
+		TurnChanges changes = new TurnChanges(current.round(), rails.cellCount(), regions.length, previous == null);
+		for (int cell = 0; cell < rails.cellCount(); cell++) {
+			RailOwner before = previous == null ? RailOwner.NONE : previous.rails().ownerAt(cell);
+			RailOwner now = rails.ownerAt(cell);
+			Set<Connection> connectionsBefore = previous == null ? Set.of() : previous.rails().connectionsAt(cell);
+			if (!rails.connectionsAt(cell).equals(connectionsBefore)) {
+				changes.recordCell(cell, CONNECTIONS_CHANGED, before);
+			}
+			if (now != before) {
+				changes.recordCell(cell, before == RailOwner.NONE ? RAIL_ADDED
+						: now == RailOwner.NONE ? RAIL_REMOVED : OWNER_CHANGED, before);
+			}
+		}
+		for (Region region : regions) {
+			if (region == null) {
+				continue;
+			}
+			Region before = previous == null ? null : previous.map().regions()[region.id()];
+			if (region.instability() != (before == null ? 0 : before.instability())) {
+				changes.recordInstability(region.id(), before == null ? 0 : before.instability());
+			}
+			if (!region.connections().equals(before == null ? Set.of() : before.connections())) {
+				changes.recordRegionConnections(region.id());
+			}
+		}
+		Set<Connection> connectionsBefore = previous == null ? Set.of() : previous.cachedConnections();
+		for (Connection connection : current.cachedConnections()) {
+			if (!connectionsBefore.contains(connection)) {
+				changes.recordConnection(connection, true);
+			}
+		}
+		for (Connection connection : connectionsBefore) {
+			if (!current.cachedConnections().contains(connection)) {
+				changes.recordConnection(connection, false);
+			}
+		}
+		return changes;
+	}
+
+	void recordCell(int cell, int kind, RailOwner previousOwner) {
+		if (cellKinds[cell] == 0) {
+			if (changedCellCount == changedCells.length) {
+				changedCells = java.util.Arrays.copyOf(changedCells, changedCellCount * 2);
+			}
+			changedCells[changedCellCount++] = cell;
+			previousOwners[cell] = (byte) previousOwner.ordinal();
+		}
+		cellKinds[cell] |= kind;
+	}
+
+	void recordInstability(int regionId, int previous) {
+		previousInstability[regionId] = previous;
+		instabilityChanged[regionId] = true;
+		touchRegion(regionId);
+	}
+
+	void recordRegionConnections(int regionId) {
+		connectionsChanged[regionId] = true;
+		touchRegion(regionId);
+	}
+
+	void recordConnection(Connection connection, boolean gained) {
+		(gained ? connectionsGained : connectionsLost).add(connection);
+	}
+
+	private void touchRegion(int regionId) {
+		if (regionTouched[regionId]) {
+			return;
+		}
+		regionTouched[regionId] = true;
+		if (changedRegionCount == changedRegions.length) {
+			changedRegions = java.util.Arrays.copyOf(changedRegions, changedRegionCount * 2);
+		}
+		changedRegions[changedRegionCount++] = regionId;
+	}
+
+	boolean isFullRefresh() {
+		return fullRefresh;
+	}
+
+	boolean isEmpty() {
+		return changedCellCount == 0 && changedRegionCount == 0;
+	}
+
+	int changedCellCount() {
+		return changedCellCount;
+	}
+
+	int changedCell(int i) {
+		return changedCells[i];
+	}
+
+	boolean isCellChanged(int cell) {
+		return cellKinds[cell] != 0;
+	}
+
+	int kindsAt(int cell) {
+		return cellKinds[cell];
+	}
+
+	RailOwner previousOwnerAt(int cell) {
+		return RailOwner.values()[previousOwners[cell]];
+	}
+
+	int changedRegionCount() {
+		return changedRegionCount;
+	}
+
+	int changedRegion(int i) {
+		return changedRegions[i];
+	}
+
+	boolean isRegionChanged(int regionId) {
+		return regionTouched[regionId];
+	}
+
+	boolean isInstabilityChanged(int regionId) {
+		return instabilityChanged[regionId];
+	}
+
+	int previousInstability(int regionId) {
+		return previousInstability[regionId];
+	}
+
+	boolean areConnectionsChanged(int regionId) {
+		return connectionsChanged[regionId];
+	}
+
+	List<Connection> connectionsGained() {
+		return connectionsGained;
+	}
+
+	List<Connection> connectionsLost() {
+		return connectionsLost;
+	}
+
+	@Override
+	public String toString() {
+		return "TurnChanges round " + round + (fullRefresh ? " (full refresh)" : "") + ": " + changedCellCount
+				+ " cells, " + changedRegionCount + " regions, +" + connectionsGained.size() + "/-"
+				+ connectionsLost.size() + " connections";
+	}
+}
+
+record MapDefinition(
+		int width,
+		int height,
+		TerrainType[][] terrainType,
+		int[][] regionId,
+		int[][] cityId,
+		City[] citiesById,
+		Region[] regions) {
+
+	MapDefinition {
+		Objects.requireNonNull(terrainType);
+		Objects.requireNonNull(regionId);
+		Objects.requireNonNull(cityId);
+		Objects.requireNonNull(citiesById);
+		Objects.requireNonNull(regions);
+	}
+
+	int regionIdAt(int x, int y) {
+		return regionId[x][y];
+	}
+
+	int regionIdAt(Coord coord) {
+		return regionIdAt(coord.x(), coord.y());
+	}
+
+	City cityAt(int x, int y) {
+		int id = cityId[x][y];
+		return id >= 0 ? citiesById[id] : null;
+	}
+
+	City cityAt(Coord coord) {
+		return cityAt(coord.x(), coord.y());
+	}
+
+	City cityById(int id) {
+		return citiesById[id];
+	}
+
+	int buildCostAt(int x, int y) {
+		return terrainType[x][y].buildCost();
+	}
+
+	TerrainType terrainAt(Coord coord) {
+		return terrainType[coord.x()][coord.y()];
+	}
+
+	MapDefinition withRegions(Region[] newRegions) {
+		return new MapDefinition(width, height, terrainType, regionId, cityId, citiesById, newRegions);
+	}
+}
+
+record Action(ActionType type, Coord coord1, Coord coord2, int id) implements Comparable<Action> {
+	static Action buildRail(int x, int y) {
+		return new Action(ActionType.PLACE_TRACKS, MatchConstants.coord(x, y), null, -1);
+	}
+
+	static Action autoPlace(int x1, int y1, int x2, int y2) {
+		return new Action(ActionType.AUTOPLACE, MatchConstants.coord(x1, y1), MatchConstants.coord(x2, y2), -1);
+	}
+
+	static Action disruptRegion(int id) {
+		return new Action(ActionType.DISRUPT, null, null, id);
+	}
+
+	static Action waitAction() {
+		return new Action(ActionType.WAIT, null, null, -1);
+	}
+
+	@Override
+	public int compareTo(Action other) {
+		return toString().compareTo(other.toString());
+	}
+
+	@Override
+	public String toString() {
+		return switch (type) {
+			case PLACE_TRACKS -> ActionType.PLACE_TRACKS + " " + coord1.x() + " " + coord1.y();
+			case AUTOPLACE ->
+				ActionType.AUTOPLACE + " " + coord1.x() + " " + coord1.y() + " " + coord2.x() + " " + coord2.y();
+			case DISRUPT -> ActionType.DISRUPT + " " + id;
+			case MESSAGE -> ActionType.MESSAGE + " insert a message here";
+			case WAIT -> "WAIT";
+		};
+	}
+}
+
+record GameState(int round, MapDefinition map, RailBoard rails, int myScore, int opponentScore,
+		Set<Connection> cachedConnections) {
+
+	GameState {
+		Objects.requireNonNull(map);
+		Objects.requireNonNull(rails);
+		Objects.requireNonNull(cachedConnections);
+	}
+
+	GameState(int round, MapDefinition map, Map<Coord, Rail> rails, int myScore, int opponentScore,
+			Set<Connection> cachedConnections) {
+		this(round, map, RailBoard.fromMap(map.width(), map.height(), rails), myScore, opponentScore,
+				cachedConnections);
+	}
+
+	GameState nextRound() {
+		Print.debug(Print.Category.INPUT, () -> "Advancing to round " + (round() + 1));
+		return new GameState(round() + 1, map(), rails(), myScore(), opponentScore(), cachedConnections());
+	}
+
+	GameState withRails(List<Coord> coords, RailOwner owner) {
+		RailBoard newRails = rails.copy();
+		for (Coord c : coords) {
+			RailOwner existing = newRails.ownerAt(c.x(), c.y());
+			newRails.put(c.x(), c.y(), resolveConflict(existing, owner));
+		}
+		return new GameState(round, map, newRails, myScore, opponentScore, cachedConnections);
+	}
+
+	private RailOwner resolveConflict(RailOwner existing, RailOwner incoming) {
+		if (existing == RailOwner.NONE || existing == incoming)
+			return incoming;
+		return RailOwner.CONTESTED;
+	}
+
+	boolean canBuildAt(Coord c) {
+		int regionId = map.regionIdAt(c.x(), c.y());
+		if (map().regions()[regionId].isInstable())
+			return false;
+
+		// BugFix: adding check on rails presence here that was missing
+		return !(map().cityAt(c.x(), c.y()) != null) && !rails.hasRail(c.x(), c.y());
+	}
+
+	// Whether a path can go through c: any city, or any cell of a region not
+	// inked yet (existing rails included)
+	boolean canTraverse(int x, int y) {
+		return map.cityAt(x, y) != null || !map.regions()[map.regionIdAt(x, y)].isInstable();
+	}
+
+	// A single DISRUPT
+	GameState increaseInstability(int regionId) {
+		return increaseInstability(regionId, 1);
+	}
+
+	// Copy-on-write: the regions array is cloned, the rails and connections only
+	// when the region collapses. The map shared by the whole turn is left intact.
+	GameState increaseInstability(int regionId, int quantity) {
+		Region[] regions = map().regions();
+		if (regionId < 0 || regionId >= regions.length) {
+			return new GameState(round, map, rails, myScore, opponentScore, cachedConnections);
+		}
+		Region[] newRegions = regions.clone();
+		newRegions[regionId] = regions[regionId].increaseInstability(quantity);
+		MapDefinition newMap = map.withRegions(newRegions);
+		if (!newRegions[regionId].isInstable()) {
+			return new GameState(round, newMap, rails, myScore, opponentScore, cachedConnections);
+		}
+		GameState result = new GameState(round, newMap, rails.copy(), myScore, opponentScore,
+				new ConnectionSet(cachedConnections));
+		result.removeRailsInRegion(regionId, null);
+		return result;
+	}
+
+	private void removeRailsInRegion(int regionId, MoveLog log) {
+		for (Tile cell : map.regions()[regionId].cells()) {
+			int index = rails.index(cell.x(), cell.y());
+			if (!rails.hasRail(index)) {
+				continue;
+			}
+			// TODO: Fix Me Stupid way to update cached connections
+			for (Connection conn : rails.connectionsAt(index)) {
+				if (cachedConnections.remove(conn) && log != null) {
+					log.recordConnectionRemoved(conn);
+				}
+			}
+			if (log != null) {
+				log.recordCell(rails, index);
+			}
+			rails.remove(index);
+		}
+	}
+
+	// Own board, regions and connections: the in-place moves below can then be
+	// applied on the copy without touching the state of the turn
+	GameState copy() {
+		return new GameState(round, map.withRegions(map.regions().clone()), rails.copy(), myScore, opponentScore,
+				new ConnectionSet(cachedConnections));
+	}
+
+	// In-place moves for searches: they mutate this state (use them on a copy())
+	// and record what they overwrite in log, so undo(log, mark) costs only the
+	// changed cells instead of a full state per node
+
+	void applyRail(int x, int y, RailOwner owner, MoveLog log) {
+		int index = rails.index(x, y);
+		log.recordCell(rails, index);
+		rails.put(x, y, resolveConflict(rails.ownerAt(index), owner));
+	}
+
+	void applyRails(List<Coord> coords, RailOwner owner, MoveLog log) {
+		for (Coord c : coords) {
+			applyRail(c.x(), c.y(), owner, log);
+		}
+	}
+
+	void applyInstability(int regionId, int quantity, MoveLog log) {
+		Region[] regions = map.regions();
+		log.recordRegion(regions[regionId]);
+		regions[regionId] = regions[regionId].increaseInstability(quantity);
+		if (regions[regionId].isInstable()) {
+			removeRailsInRegion(regionId, log);
+		}
+	}
+
+	void undo(MoveLog log, int mark) {
+		log.undo(this, mark);
+	}
+
+	GameState withScores(int my, int opp) {
+		return new GameState(round, map, rails, my, opp, cachedConnections);
+	}
+
+	GameState withCachedConnections(Set<Connection> connections) {
+		return new GameState(round, map, rails, myScore, opponentScore, connections);
+	}
+
+	int regionIdAt(Coord coord) {
+		return map.regionIdAt(coord);
 	}
 
 	City cityAt(Coord coord) {
 		return map.cityAt(coord);
 	}
 
-	RailOwner ownerAt(Coord coord) {
-		Rail rail = rails.get(coord);
-		return rail != null ? rail.owner() : RailOwner.NONE;
+	RailOwner ownerAt(Coord coord) {
+		return rails.ownerAt(coord.x(), coord.y());
+	}
+
+	// For testing purposes
+	static GameState createInitial(int width, int height) {
+		Tile[][] tiles = new Tile[width][height];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				tiles[x][y] = new Tile(x, y, -1, TerrainType.PLAIN, null);
+			}
+		}
+		TerrainType[][] terrainTypeArray = new TerrainType[width][height];
+		int[][] regionIdArray = new int[width][height];
+		int[][] cityIdArray = new int[width][height];
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				terrainTypeArray[x][y] = tiles[x][y].type();
+				regionIdArray[x][y] = tiles[x][y].regionId();
+				cityIdArray[x][y] = tiles[x][y].city() != null ? tiles[x][y].city().id() : -1;
+			}
+		}
+		MapDefinition mapDef = new MapDefinition(width, height, terrainTypeArray, regionIdArray, cityIdArray,
+				new City[0], new Region[0]);
+		return new GameState(1, mapDef, new RailBoard(width, height), 0, 0, Set.of());
+	}
+}
+
+/**
+ * Forward model of a turn for search AIs, resolving the actions of both
+ * players as the referee does: placements first, each player spending its
+ * paint in order (PLACE_TRACKS on a free cell of a region not inked, the first
+ * AUTOPLACE along the cheapest path until the paint runs out), a cell placed by
+ * both becoming contested. Then the first DISRUPT of each player, by region id
+ * or by a cell of the region, inking the regions reaching
+ * INSTABILITY_THRESHOLD and wiping their rails. Last, the active connections
+ * are recomputed (shortest path over rails and cities from the requesting
+ * city) and each player scores its rails on them.
+ *
+ * apply() works in place: the board, regions and active connections of the
+ * state are mutated (use it on a copy()) and what they held is recorded in the
+ * log, so undo(log, mark) brings the state back. Round and scores are in the
+ * returned state. Scratch buffers are reused between applications: an engine
+ * is not shared between threads, MatchContext.engine() gives the one of a match.
+ */
+class GameEngine {
+
+	private static final int MY_PLACEMENT = 1;
+	private static final int OPPONENT_PLACEMENT = 2;
+
+	long applications = 0;
+
+	// Newly completed and broken connections of the last application
+	final ConnectionSet completed = new ConnectionSet();
+	final ConnectionSet lost = new ConnectionSet();
+
+	// Map in flat arrays, rebuilt for a new map
+	private TerrainType[][] terrain;
+	private int width;
+	private int height;
+	private int cellCount;
+	private int[] cityAt; // city id by cell, -1 if none
+	private int[] regionAt;
+	private int[] buildCost;
+	private int[] neighbors; // 4 per cell in N, E, S, W order, -1 outside
+
+	// Scratch
+	private byte[] plannedBy;
+	private int[] plannedCells;
+	private int plannedCount;
+	private int[] parent;
+	private int[] distance;
+	private int[] visited; // == generation when reached by the current search
+	private int generation;
+	private int[] queue;
+	private long[] heap;
+	private ConnectionSet[] cellConnections;
+	private int[] touchedCells;
+	private int touchedCount;
+	private final ConnectionSet active = new ConnectionSet();
+	private final ConnectionSet noConnections = new ConnectionSet();
+
+	// Resolves a turn on a copy of gs
+	static GameState applyActionWithCopy(GameState gs, List<Action> mine, List<Action> opponent) {
+		return MatchContext.STATIC.engine().apply(gs.copy(), mine, opponent, null);
+	}
+
+	// Resolves a turn on gs itself, without undo
+	static GameState applyActionWithoutCopy(GameState gs, List<Action> mine, List<Action> opponent) {
+		return MatchContext.STATIC.engine().apply(gs, mine, opponent, null);
+	}
+
+	/**
+	 * Resolves a turn in place, recording the overwritten cells, regions and
+	 * connections in log (may be null). The active connections of gs must be
+	 * mutable, as in a copy().
+	 */
+	GameState apply(GameState gs, List<Action> mine, List<Action> opponent, MoveLog log) {
+		applications++;
+		bind(gs.map());
+		RailBoard rails = gs.rails();
+		Region[] regions = gs.map().regions();
+
+		int myDisrupt = plan(rails, regions, mine, MY_PLACEMENT);
+		int opponentDisrupt = plan(rails, regions, opponent, OPPONENT_PLACEMENT);
+		for (int i = 0; i < plannedCount; i++) {
+			int cell = plannedCells[i];
+			RailOwner owner = switch (plannedBy[cell]) {
+				case MY_PLACEMENT -> RailOwner.ME;
+				case OPPONENT_PLACEMENT -> RailOwner.OPPONENT;
+				default -> RailOwner.CONTESTED;
+			};
+			plannedBy[cell] = 0;
+			if (log != null) {
+				log.recordCell(rails, cell);
+			}
+			rails.put(cell % width, cell / width, owner);
+		}
+		plannedCount = 0;
+
+		// Both DISRUPTs count before a region is inked
+		disrupt(regions, myDisrupt, log);
+		disrupt(regions, opponentDisrupt, log);
+		ink(rails, regions, myDisrupt, log);
+		if (opponentDisrupt != myDisrupt) {
+			ink(rails, regions, opponentDisrupt, log);
+		}
+
+		long points = updateConnections(gs, log);
+		return new GameState(gs.round() + 1, gs.map(), rails, gs.myScore() + (int) (points >>> 32),
+				gs.opponentScore() + (int) points, gs.cachedConnections());
+	}
+
+	private void bind(MapDefinition map) {
+		if (map.terrainType() == terrain) {
+			return;
+		}
+		terrain = map.terrainType();
+		width = map.width();
+		height = map.height();
+		cellCount = width * height;
+		cityAt = new int[cellCount];
+		regionAt = new int[cellCount];
+		buildCost = new int[cellCount];
+		neighbors = new int[cellCount * 4];
+		for (int cell = 0; cell < cellCount; cell++) {
+			int x = cell % width;
+			int y = cell / width;
+			cityAt[cell] = map.cityId()[x][y];
+			regionAt[cell] = map.regionIdAt(x, y);
+			buildCost[cell] = map.buildCostAt(x, y);
+			neighbors[cell * 4] = y > 0 ? cell - width : -1;
+			neighbors[cell * 4 + 1] = x < width - 1 ? cell + 1 : -1;
+			neighbors[cell * 4 + 2] = y < height - 1 ? cell + width : -1;
+			neighbors[cell * 4 + 3] = x > 0 ? cell - 1 : -1;
+		}
+		plannedBy = new byte[cellCount];
+		plannedCells = new int[cellCount];
+		parent = new int[cellCount];
+		distance = new int[cellCount];
+		visited = new int[cellCount];
+		queue = new int[cellCount];
+		heap = new long[cellCount * 4];
+		cellConnections = new ConnectionSet[cellCount];
+		touchedCells = new int[cellCount];
+	}
+
+	// Marks the placements of a player in plannedBy, returns its DISRUPT region (-1 if none)
+	private int plan(RailBoard rails, Region[] regions, List<Action> actions, int player) {
+		int paint = MatchConstants.MAX_ACTIONS_PER_TURN;
+		int disrupt = -1;
+		boolean autoPlaced = false;
+		for (Action action : actions) {
+			switch (action.type()) {
+				case PLACE_TRACKS -> {
+					int cell = cellOf(action.coord1());
+					if (cell >= 0 && canPlace(rails, regions, cell, player) && buildCost[cell] <= paint) {
+						mark(cell, player);
+						paint -= buildCost[cell];
+					}
+				}
+				case AUTOPLACE -> {
+					// Only the first one is played
+					if (!autoPlaced) {
+						autoPlaced = true;
+						paint = autoPlace(rails, regions, action, player, paint);
+					}
+				}
+				case DISRUPT -> {
+					int cell = cellOf(action.coord1());
+					int region = action.coord1() == null ? action.id() : cell < 0 ? -1 : regionAt[cell];
+					if (disrupt < 0 && region >= 0 && region < regions.length && !regions[region].isInstable()) {
+						disrupt = region;
+					}
+				}
+				default -> {
+				}
+			}
+		}
+		return disrupt;
+	}
+
+	private int cellOf(Coord coord) {
+		if (coord == null || coord.x() < 0 || coord.x() >= width || coord.y() < 0 || coord.y() >= height) {
+			return -1;
+		}
+		return coord.y() * width + coord.x();
+	}
+
+	private boolean canPlace(RailBoard rails, Region[] regions, int cell, int player) {
+		return cityAt[cell] < 0 && !rails.hasRail(cell) && !regions[regionAt[cell]].isInstable()
+				&& (plannedBy[cell] & player) == 0;
 	}
 
-	// For testing purposes
-	static GameState createInitial(int width, int height) {
-		Tile[][] tiles = new Tile[width][height];
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				tiles[x][y] = new Tile(x, y, -1, TerrainType.PLAIN, null);
+	private boolean isPassable(Region[] regions, int cell) {
+		return cityAt[cell] >= 0 || !regions[regionAt[cell]].isInstable();
+	}
+
+	private void mark(int cell, int player) {
+		if (plannedBy[cell] == 0) {
+			plannedCells[plannedCount++] = cell;
+		}
+		plannedBy[cell] = (byte) (plannedBy[cell] | player);
+	}
+
+	// Cheapest path (Dijkstra, ties in N, E, S, W discovery order), the cells
+	// without rail, city nor placement of the player this turn at their build
+	// cost. Places along it until the paint runs out, returns the paint left.
+	private int autoPlace(RailBoard rails, Region[] regions, Action action, int player, int paint) {
+		int start = cellOf(action.coord1());
+		int end = cellOf(action.coord2());
+		if (start < 0 || end < 0 || !isPassable(regions, start) || !isPassable(regions, end)) {
+			return paint;
+		}
+		generation++;
+		visited[start] = generation;
+		distance[start] = 0;
+		parent[start] = -1;
+		int heapSize = 0;
+		long discovered = 0;
+		heap[heapSize++] = start;
+		while (heapSize > 0) {
+			long node = heap[0];
+			heap[0] = heap[--heapSize];
+			siftDown(heapSize);
+			int cell = (int) (node & 0xFFFFF);
+			int cost = (int) (node >>> 40);
+			if (cost > distance[cell]) {
+				continue;
+			}
+			if (cell == end) {
+				break;
+			}
+			for (int dir = 0; dir < 4; dir++) {
+				int next = neighbors[cell * 4 + dir];
+				if (next < 0 || !isPassable(regions, next)) {
+					continue;
+				}
+				int step = rails.hasRail(next) || cityAt[next] >= 0 || (plannedBy[next] & player) != 0 ? 0
+						: buildCost[next];
+				if (visited[next] != generation || cost + step < distance[next]) {
+					visited[next] = generation;
+					distance[next] = cost + step;
+					parent[next] = cell;
+					if (heapSize == heap.length) {
+						heap = java.util.Arrays.copyOf(heap, heapSize * 2);
+					}
+					heap[heapSize] = ((long) distance[next] << 40) | (++discovered << 20) | next;
+					siftUp(heapSize++);
+				}
 			}
 		}
-		TerrainType[][] terrainTypeArray = new TerrainType[width][height];
-		int[][] regionIdArray = new int[width][height];
-		int[][] cityIdArray = new int[width][height];
-		for (int x = 0; x < width; x++) {
-			for (int y = 0; y < height; y++) {
-				terrainTypeArray[x][y] = tiles[x][y].type();
-				regionIdArray[x][y] = tiles[x][y].regionId();
-				cityIdArray[x][y] = tiles[x][y].city() != null ? tiles[x][y].city().id() : -1;
+		if (visited[end] != generation) {
+			return paint;
+		}
+		// Built from the start: reverse the parent chain in queue
+		int length = 0;
+		for (int cell = end; cell >= 0; cell = parent[cell]) {
+			queue[length++] = cell;
+		}
+		for (int i = length - 1; i >= 0; i--) {
+			int cell = queue[i];
+			if (rails.hasRail(cell) || cityAt[cell] >= 0 || (plannedBy[cell] & player) != 0) {
+				continue;
+			}
+			if (buildCost[cell] > paint) {
+				break;
 			}
+			mark(cell, player);
+			paint -= buildCost[cell];
 		}
-		MapDefinition mapDef = new MapDefinition(width, height, terrainTypeArray, regionIdArray, cityIdArray,
-				new City[0], new Region[0]);
-		return new GameState(1, mapDef, Map.of(), 0, 0, Set.of());
+		return paint;
+	}
+
+	private void siftUp(int i) {
+		long node = heap[i];
+		while (i > 0 && heap[(i - 1) / 2] > node) {
+			heap[i] = heap[(i - 1) / 2];
+			i = (i - 1) / 2;
+		}
+		heap[i] = node;
+	}
+
+	private void siftDown(int size) {
+		if (size == 0) {
+			return;
+		}
+		long node = heap[0];
+		int i = 0;
+		while (2 * i + 1 < size) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && heap[child + 1] < heap[child]) {
+				child++;
+			}
+			if (heap[child] >= node) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = node;
+	}
+
+	private void disrupt(Region[] regions, int region, MoveLog log) {
+		if (region < 0) {
+			return;
+		}
+		if (log != null) {
+			log.recordRegion(regions[region]);
+		}
+		regions[region] = regions[region].increaseInstability(1);
+	}
+
+	private void ink(RailBoard rails, Region[] regions, int region, MoveLog log) {
+		if (region < 0 || !regions[region].isInstable()) {
+			return;
+		}
+		for (Tile tile : regions[region].cells()) {
+			int cell = tile.y() * width + tile.x();
+			if (rails.hasRail(cell)) {
+				if (log != null) {
+					log.recordCell(rails, cell);
+				}
+				rails.remove(cell);
+			}
+		}
+	}
+
+	// Recomputes the connections of every rail, the active connections and their
+	// diff (completed, lost). Returns the points of the turn, mine in the high
+	// half, the opponent's in the low one.
+	private long updateConnections(GameState gs, MoveLog log) {
+		RailBoard rails = gs.rails();
+		MapDefinition map = gs.map();
+		active.clear();
+		for (City city : map.citiesById()) {
+			if (city.desiredCityIds().isEmpty()) {
+				continue;
+			}
+			int start = city.y() * width + city.x();
+			breadthFirstSearch(rails, start);
+			for (int desired : city.desiredCityIds()) {
+				City target = map.cityById(desired);
+				int end = target.y() * width + target.x();
+				if (visited[end] != generation || end == start) {
+					continue;
+				}
+				int id = Connection.id(city.id(), desired);
+				active.addId(id);
+				for (int cell = parent[end]; cell >= 0 && cell != start; cell = parent[cell]) {
+					if (!rails.hasRail(cell)) {
+						continue;
+					}
+					if (cellConnections[cell] == null) {
+						cellConnections[cell] = new ConnectionSet();
+					}
+					if (cellConnections[cell].isEmpty()) {
+						touchedCells[touchedCount++] = cell;
+					}
+					cellConnections[cell].addId(id);
+				}
+			}
+		}
+
+		int myPoints = 0;
+		int opponentPoints = 0;
+		for (int cell = 0; cell < cellCount; cell++) {
+			if (!rails.hasRail(cell)) {
+				continue;
+			}
+			ConnectionSet connections = cellConnections[cell] != null ? cellConnections[cell] : noConnections;
+			if (!connections.equals(rails.connectionsAt(cell))) {
+				if (log != null) {
+					log.recordCell(rails, cell);
+				}
+				rails.setInternedConnections(cell, connections);
+			}
+			RailOwner owner = rails.ownerAt(cell);
+			if (owner == RailOwner.ME) {
+				myPoints += connections.size();
+			} else if (owner == RailOwner.OPPONENT) {
+				opponentPoints += connections.size();
+			}
+		}
+		for (int i = 0; i < touchedCount; i++) {
+			cellConnections[touchedCells[i]].clear();
+		}
+		touchedCount = 0;
+
+		Set<Connection> cached = gs.cachedConnections();
+		completed.clear();
+		completed.addAll(active);
+		completed.removeAll(cached);
+		lost.clear();
+		lost.addAll(cached);
+		lost.removeAll(active);
+		for (int id = completed.nextId(0); id >= 0; id = completed.nextId(id + 1)) {
+			Connection connection = MatchConstants.connectionById(id);
+			cached.add(connection);
+			if (log != null) {
+				log.recordConnectionAdded(connection);
+			}
+		}
+		for (int id = lost.nextId(0); id >= 0; id = lost.nextId(id + 1)) {
+			Connection connection = MatchConstants.connectionById(id);
+			cached.remove(connection);
+			if (log != null) {
+				log.recordConnectionRemoved(connection);
+			}
+		}
+		return ((long) myPoints << 32) | (opponentPoints & 0xFFFFFFFFL);
+	}
+
+	// Over rails and cities from start, parent tree in the N, E, S, W order
+	private void breadthFirstSearch(RailBoard rails, int start) {
+		generation++;
+		visited[start] = generation;
+		parent[start] = -1;
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = start;
+		while (head < tail) {
+			int cell = queue[head++];
+			for (int dir = 0; dir < 4; dir++) {
+				int next = neighbors[cell * 4 + dir];
+				if (next < 0 || visited[next] == generation || !rails.hasRail(next) && cityAt[next] < 0) {
+					continue;
+				}
+				visited[next] = generation;
+				parent[next] = cell;
+				queue[tail++] = next;
+			}
+		}
+	}
+}
+
+/**
+ * Which cities the track network links: union-find over the cells holding a
+ * rail of any owner (connections count shared rails) or a city. Adding a rail
+ * is a few near-constant unions, removed rails (inked region) only rebuild the
+ * components they were part of. Hypothetical placements (wouldConnect,
+ * countCompletedBy) are unions recorded in a trail and rolled back.
+ */
+class RailNetwork {
+
+	private static final int NOT_A_NODE = -1;
+
+	private TerrainType[][] terrain; // identifies the map
+	private int width;
+	private int[][] cityId;
+	private City[] cities;
+	private int[] parent; // NOT_A_NODE without rail nor city
+	private int[] size;
+	private int[] affected; // == stamp for the roots and cells rebuilt by a removal
+	private int stamp;
+	private int[] cells; // scratch list of cells
+	private int[] removed; // scratch list of the removed cells of a turn
+	private int[] pendingConnections = new int[0]; // scratch list of connection ids
+
+	// Writes to parent and size while trying, restored by rollback: cell, field, old value
+	private boolean trying;
+	private int[] trail = new int[3 * 64];
+	private int trailSize;
+
+	boolean covers(MapDefinition map) {
+		return map.terrainType() == terrain;
+	}
+
+	void rebuild(GameState gs) {
+		MapDefinition map = gs.map();
+		terrain = map.terrainType();
+		width = map.width();
+		cityId = map.cityId();
+		cities = map.citiesById();
+		int cellCount = width * map.height();
+		// Same buffers from one rebuild to the next (stale stamps never match a new one)
+		if (parent == null || parent.length != cellCount) {
+			parent = new int[cellCount];
+			size = new int[cellCount];
+			affected = new int[cellCount];
+			cells = new int[cellCount];
+			removed = new int[cellCount];
+		}
+		if (pendingConnections.length != Connection.idCount(cities.length)) {
+			pendingConnections = new int[Connection.idCount(cities.length)];
+		}
+		java.util.Arrays.fill(parent, NOT_A_NODE);
+		for (City city : cities) {
+			addNode(city.y() * width + city.x());
+		}
+		for (int cell = 0; cell < cellCount; cell++) {
+			if (gs.rails().hasRail(cell)) {
+				addNode(cell);
+			}
+		}
+	}
+
+	/** Applies the rails added and removed this turn, rebuilds on a full refresh (or without changes) */
+	void update(GameState gs, TurnChanges changes) {
+		if (changes == null || changes.isFullRefresh() || !covers(gs.map())) {
+			rebuild(gs);
+			return;
+		}
+		int removedCount = 0;
+		for (int i = 0; i < changes.changedCellCount(); i++) {
+			int cell = changes.changedCell(i);
+			if ((changes.kindsAt(cell) & TurnChanges.RAIL_REMOVED) != 0) {
+				removed[removedCount++] = cell;
+			}
+		}
+		removeRails(removed, removedCount);
+		for (int i = 0; i < changes.changedCellCount(); i++) {
+			int cell = changes.changedCell(i);
+			if ((changes.kindsAt(cell) & TurnChanges.RAIL_ADDED) != 0) {
+				addNode(cell);
+			}
+		}
+	}
+
+	void addRail(int x, int y) {
+		addNode(y * width + x);
+	}
+
+	// Rebuilds the components which held the removed cells, the others are untouched
+	void removeRails(int[] removedCells, int count) {
+		if (count == 0) {
+			return;
+		}
+		stamp++;
+		for (int i = 0; i < count; i++) {
+			if (parent[removedCells[i]] != NOT_A_NODE) {
+				affected[find(removedCells[i])] = stamp;
+			}
+		}
+		int affectedCount = 0;
+		for (int cell = 0; cell < parent.length; cell++) {
+			if (parent[cell] != NOT_A_NODE && affected[find(cell)] == stamp) {
+				cells[affectedCount++] = cell;
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			int cell = removedCells[i];
+			if (cityId[cell % width][cell / width] < 0) {
+				parent[cell] = NOT_A_NODE;
+			}
+		}
+		for (int i = 0; i < affectedCount; i++) {
+			int cell = cells[i];
+			if (parent[cell] != NOT_A_NODE) {
+				parent[cell] = cell;
+				size[cell] = 1;
+			}
+		}
+		// All the neighbors of an affected node are affected: east and south are enough
+		for (int i = 0; i < affectedCount; i++) {
+			int cell = cells[i];
+			if (parent[cell] == NOT_A_NODE) {
+				continue;
+			}
+			if (cell % width < width - 1 && parent[cell + 1] != NOT_A_NODE) {
+				union(cell, cell + 1);
+			}
+			if (cell + width < parent.length && parent[cell + width] != NOT_A_NODE) {
+				union(cell, cell + width);
+			}
+		}
+	}
+
+	boolean isConnected(City a, City b) {
+		return find(a.y() * width + a.x()) == find(b.y() * width + b.x());
+	}
+
+	/** Whether rails on these cells, added to the network, would link a and b */
+	boolean wouldConnect(City a, City b, List<Coord> coords) {
+		trying = true;
+		for (Coord coord : coords) {
+			addNode(coord.y() * width + coord.x());
+		}
+		boolean connected = isConnected(a, b);
+		rollback();
+		return connected;
+	}
+
+	/** Desired connections not active yet which rails on these cells would complete */
+	int countCompletedBy(List<Coord> coords) {
+		int pending = 0;
+		for (City city : cities) {
+			for (int desired : city.desiredCityIds()) {
+				// A connection desired both ways is listed once
+				boolean listed = desired < city.id() && cities[desired].desiredCityIds().contains(city.id());
+				if (!listed && !isConnected(city, cities[desired])) {
+					pendingConnections[pending++] = Connection.id(city.id(), desired);
+				}
+			}
+		}
+		if (pending == 0) {
+			return 0;
+		}
+		trying = true;
+		for (Coord coord : coords) {
+			addNode(coord.y() * width + coord.x());
+		}
+		int completed = 0;
+		for (int i = 0; i < pending; i++) {
+			Connection connection = MatchConstants.connectionById(pendingConnections[i]);
+			if (isConnected(cities[connection.fromId()], cities[connection.toId()])) {
+				completed++;
+			}
+		}
+		rollback();
+		return completed;
+	}
+
+	private void addNode(int cell) {
+		if (parent[cell] != NOT_A_NODE) {
+			return;
+		}
+		setParent(cell, cell);
+		setSize(cell, 1);
+		int x = cell % width;
+		if (cell >= width && parent[cell - width] != NOT_A_NODE) {
+			union(cell, cell - width);
+		}
+		if (x < width - 1 && parent[cell + 1] != NOT_A_NODE) {
+			union(cell, cell + 1);
+		}
+		if (cell + width < parent.length && parent[cell + width] != NOT_A_NODE) {
+			union(cell, cell + width);
+		}
+		if (x > 0 && parent[cell - 1] != NOT_A_NODE) {
+			union(cell, cell - 1);
+		}
+	}
+
+	private int find(int cell) {
+		int root = cell;
+		while (parent[root] != root) {
+			root = parent[root];
+		}
+		while (parent[cell] != root) {
+			int next = parent[cell];
+			setParent(cell, root);
+			cell = next;
+		}
+		return root;
+	}
+
+	private void union(int a, int b) {
+		a = find(a);
+		b = find(b);
+		if (a == b) {
+			return;
+		}
+		if (size[a] < size[b]) {
+			int swap = a;
+			a = b;
+			b = swap;
+		}
+		setParent(b, a);
+		setSize(a, size[a] + size[b]);
+	}
+
+	private void setParent(int cell, int value) {
+		if (trying) {
+			record(cell, 0, parent[cell]);
+		}
+		parent[cell] = value;
+	}
+
+	private void setSize(int cell, int value) {
+		if (trying) {
+			record(cell, 1, size[cell]);
+		}
+		size[cell] = value;
+	}
+
+	private void record(int cell, int field, int previous) {
+		if (trailSize + 3 > trail.length) {
+			trail = java.util.Arrays.copyOf(trail, trail.length * 2);
+		}
+		trail[trailSize++] = cell;
+		trail[trailSize++] = field;
+		trail[trailSize++] = previous;
+	}
+
+	private void rollback() {
+		while (trailSize > 0) {
+			int previous = trail[--trailSize];
+			int field = trail[--trailSize];
+			int cell = trail[--trailSize];
+			(field == 0 ? parent : size)[cell] = previous;
+		}
+		trying = false;
 	}
 }
 
@@ -801,170 +3424,742 @@ record PathCost(int distance, int buildCost, int instability) implements Compara
 	}
 }
 
-record NAMOANode(Coord coord, PathCost cost, PathCost heuristic, NAMOANode parent, long insertionOrder)
-		implements Comparable<NAMOANode> {
-	PathCost totalCost() {
-		return new PathCost(cost.distance() + heuristic.distance(), cost.buildCost() + heuristic.buildCost(),
-				cost.instability() + heuristic.instability());
+// Per city fields over the whole map, computed at match start: hop distance and
+// build cost from every cell to the city, going only through cells a path can
+// use (cities and existing rails being free). They are exact lower bounds for
+// the NAMOA* heuristic. New rails lower the costs incrementally; when a region
+// collapses the fields are still lower bounds, and get recomputed to stay tight.
+// They only hold for the board they were last updated from: with more rails, a
+// state of a simulation would have them overestimate.
+class CityDistanceFields {
+
+	static final short UNREACHABLE = Short.MAX_VALUE;
+
+	private final TerrainType[][] terrain; // identifies the map the fields were computed for
+	private final int width;
+	private final int height;
+	private final int[] cityCells;
+	private final short[][] hops; // [cityId][y * width + x]
+	private final short[][] buildCosts;
+
+	// Current map state the fields reflect
+	private RailBoard board;
+	private int boardVersion;
+	private final int[] cellCost; // cost to enter the cell, 0 for rails and cities
+	private final boolean[] blocked; // cells of collapsed regions, except cities
+
+	// Work queue for the propagations
+	private final int[] queue;
+	private final boolean[] inQueue;
+
+	CityDistanceFields(GameState gs) {
+		MapDefinition map = gs.map();
+		this.terrain = map.terrainType();
+		this.width = map.width();
+		this.height = map.height();
+		int cellCount = width * height;
+		City[] cities = map.citiesById();
+		this.cityCells = new int[cities.length];
+		this.hops = new short[cities.length][cellCount];
+		this.buildCosts = new short[cities.length][cellCount];
+		this.cellCost = new int[cellCount];
+		this.blocked = new boolean[cellCount];
+		this.queue = new int[cellCount];
+		this.inQueue = new boolean[cellCount];
+		for (City city : cities) {
+			if (city != null) {
+				cityCells[city.id()] = city.y() * width + city.x();
+			}
+		}
+		readMapState(gs);
+		computeAll();
 	}
 
-	@Override
-	public int compareTo(NAMOANode other) {
-		int comparison = this.totalCost().compareTo(other.totalCost());
-		if (comparison != 0) {
-			return comparison;
+	boolean covers(MapDefinition map) {
+		return map.terrainType() == terrain;
+	}
+
+	// Whether the fields are lower bounds for the searches on gs: same map and
+	// same unmodified board
+	boolean covers(GameState gs) {
+		return covers(gs.map()) && gs.rails() == board && gs.rails().version() == boardVersion;
+	}
+
+	// gs has the rails and regions of the last update, on another board
+	void follow(GameState gs) {
+		board = gs.rails();
+		boardVersion = board.version();
+	}
+
+	int hopsTo(int cityId, int cell) {
+		return hops[cityId][cell];
+	}
+
+	int buildCostTo(int cityId, int cell) {
+		return buildCosts[cityId][cell];
+	}
+
+	/**
+	 * Brings the fields up to date with the rails and collapsed regions of gs:
+	 * costs are only propagated from the cells that got a rail, unless a region
+	 * collapsed in which case everything is recomputed. Returns true if the
+	 * fields were fully recomputed.
+	 */
+	boolean update(GameState gs) {
+		follow(gs);
+		int cellCount = width * height;
+		boolean collapsed = false;
+		int newRails = 0;
+		for (int cell = 0; cell < cellCount; cell++) {
+			int x = cell % width;
+			int y = cell / width;
+			boolean blockedNow = !gs.canTraverse(x, y);
+			int costNow = currentCost(gs, x, y);
+			if (blockedNow != blocked[cell]) {
+				collapsed = true;
+			} else if (costNow < cellCost[cell]) {
+				// Reuse the queue to remember the cells that got cheaper
+				queue[newRails++] = cell;
+			}
+			// A removed rail makes the cell more expensive: the fields stay lower bounds
+			blocked[cell] = blockedNow;
+			cellCost[cell] = costNow;
+		}
+
+		if (collapsed) {
+			computeAll();
+			return true;
+		}
+		if (newRails > 0) {
+			int[] cheaperCells = java.util.Arrays.copyOf(queue, newRails);
+			for (int cityId = 0; cityId < cityCells.length; cityId++) {
+				for (int cell : cheaperCells) {
+					relaxFrom(cityId, cell);
+				}
+			}
+		}
+		return false;
+	}
+
+	private void readMapState(GameState gs) {
+		follow(gs);
+		for (int cell = 0; cell < width * height; cell++) {
+			int x = cell % width;
+			int y = cell / width;
+			blocked[cell] = !gs.canTraverse(x, y);
+			cellCost[cell] = currentCost(gs, x, y);
+		}
+	}
+
+	private static int currentCost(GameState gs, int x, int y) {
+		if (gs.rails().hasRail(x, y) || gs.map().cityAt(x, y) != null) {
+			return 0;
+		}
+		return gs.map().buildCostAt(x, y);
+	}
+
+	private void computeAll() {
+		for (int cityId = 0; cityId < cityCells.length; cityId++) {
+			computeHops(cityId);
+			java.util.Arrays.fill(buildCosts[cityId], UNREACHABLE);
+			buildCosts[cityId][cityCells[cityId]] = 0;
+			propagateBuildCosts(cityId, cityCells[cityId]);
+		}
+	}
+
+	// Breadth first search from the city
+	private void computeHops(int cityId) {
+		short[] field = hops[cityId];
+		java.util.Arrays.fill(field, UNREACHABLE);
+		int head = 0;
+		int tail = 0;
+		field[cityCells[cityId]] = 0;
+		queue[tail++] = cityCells[cityId];
+		while (head < tail) {
+			int cell = queue[head++];
+			int x = cell % width;
+			int y = cell / width;
+			for (int dir = 0; dir < 4; dir++) {
+				int neighbor = neighbor(x, y, dir);
+				if (neighbor >= 0 && !blocked[neighbor] && field[neighbor] == UNREACHABLE) {
+					field[neighbor] = (short) (field[cell] + 1);
+					queue[tail++] = neighbor;
+				}
+			}
+		}
+	}
+
+	// A neighbor of a cell which got cheaper may now reach the city for less
+	private void relaxFrom(int cityId, int cell) {
+		if (buildCosts[cityId][cell] != UNREACHABLE) {
+			propagateBuildCosts(cityId, cell);
 		}
-		return Long.compare(this.insertionOrder, other.insertionOrder);
+	}
+
+	// Label correcting propagation: the cost from v to the city through u is the
+	// cost from u plus the cost to enter u
+	private void propagateBuildCosts(int cityId, int startCell) {
+		short[] field = buildCosts[cityId];
+		int head = 0;
+		int size = 1;
+		queue[0] = startCell;
+		inQueue[startCell] = true;
+		while (size > 0) {
+			int cell = queue[head];
+			head = (head + 1) % queue.length;
+			size--;
+			inQueue[cell] = false;
+			int costThroughCell = field[cell] + cellCost[cell];
+			int x = cell % width;
+			int y = cell / width;
+			for (int dir = 0; dir < 4; dir++) {
+				int neighbor = neighbor(x, y, dir);
+				if (neighbor < 0 || blocked[neighbor] || field[neighbor] <= costThroughCell) {
+					continue;
+				}
+				field[neighbor] = (short) costThroughCell;
+				if (!inQueue[neighbor]) {
+					inQueue[neighbor] = true;
+					queue[(head + size) % queue.length] = neighbor;
+					size++;
+				}
+			}
+		}
+	}
+
+	private int neighbor(int x, int y, int dir) {
+		int nx = x + (dir == 1 ? 1 : dir == 3 ? -1 : 0);
+		int ny = y + (dir == 0 ? -1 : dir == 2 ? 1 : 0);
+		return nx >= 0 && nx < width && ny >= 0 && ny < height ? ny * width + nx : -1;
 	}
 }
 
 class NAMOAStar {
 
+	static final int MAX_NODES = 5000; // Limit search space for performance, per start city
+	// Bounds of the node budget per start city of the timed searches, scheduled
+	// from the time left of the turn (NAMOASearchContext.nodeBudget)
+	static final int MIN_SCHEDULED_NODES = 500;
+	static final int MAX_SCHEDULED_NODES = 4 * MAX_NODES;
+	static final int MAX_ARCHIVE_SIZE = 3; // Max 3 non-dominated paths per cell
+
 	/**
 	 * Finds non-dominated paths from a start city to multiple target cities using *
 	 * NAMOA*. Returns a map from target city ID to a list of non-dominated paths.
 	 * Optimized version with early termination and visited tracking.
 	 */
 	static Map<Integer, List<NAMOAPath>> findPaths(GameState gs, City start, List<City> targets) {
-		Map<Integer, List<NAMOAPath>> results = new HashMap<>();
-		for (City target : targets) {
-			results.put(target.id(), new ArrayList<>());
-		}
+		return findPaths(MatchContext.STATIC, gs, start, targets);
+	}
+
+	static Map<Integer, List<NAMOAPath>> findPaths(MatchContext match, GameState gs, City start, List<City> targets) {
+		return match.searchContext().findPaths(gs, List.of(start), List.of(targets), false, false).get(0);
+	}
+
+	/**
+	 * Same search for several start cities in a single pass: labels of every start
+	 * share one open list, so the cheapest pairs of all cities are completed first
+	 * and time runs out evenly instead of starving the last cities. Each start
+	 * city gets exactly the paths findPaths would have returned for it without
+	 * time limit. Otherwise each start gets a node budget scheduled from the time
+	 * left, and if the round timer of the match runs out anyway
+	 * (Time.hasTimeLeft(isFirstTurn)) the search stops and every start keeps what
+	 * it found so far. Returns one map per start city, in the same order.
+	 */
+	static List<Map<Integer, List<NAMOAPath>>> findPathsForAll(GameState gs, List<City> starts,
+			List<List<City>> targetsPerStart, boolean isFirstTurn) {
+		return findPathsForAll(MatchContext.STATIC, gs, starts, targetsPerStart, isFirstTurn);
+	}
+
+	static List<Map<Integer, List<NAMOAPath>>> findPathsForAll(MatchContext match, GameState gs, List<City> starts,
+			List<List<City>> targetsPerStart, boolean isFirstTurn) {
+		return match.searchContext().findPaths(gs, starts, targetsPerStart, true, isFirstTurn);
+	}
+}
+
+/**
+ * NAMOA* working memory in flat int arrays, allocated once and reused by every
+ * search: nodes live in parallel arrays (their index is also their insertion
+ * order for tie breaking), the open list is a binary heap of node indices, and
+ * the closed set and the per-cell archive are generation stamped so nothing is
+ * cleared between two searches. Only the returned paths are allocated.
+ *
+ * Several start cities can be searched at once: a label is then keyed by its
+ * start slot and cell (slot * cellCount + cell), with its own closed flag,
+ * archive, targets, heuristic and node budget.
+ *
+ * One per match (MatchContext.searchContext()), whose timer and distance fields
+ * it uses. Timed searches get a node budget per start city from the time left
+ * and the measured cost of an expansion: more nodes when few cities are left to
+ * search, fewer on crowded maps or a slow machine so that every city gets its
+ * share before the time check stops them all. Untimed searches, and all of
+ * them without time limit, keep NAMOAStar.MAX_NODES to stay reproducible.
+ */
+class NAMOASearchContext {
+
+	/** Why the search of a start city ended */
+	enum Termination {
+		GOAL, // every target found
+		EXHAUSTED, // no label left to expand
+		BUDGET, // node budget spent
+		TIME // round timer ran out
+	}
+
+	private static final double SEARCH_TIME_SHARE = 0.8; // of the time left, rail selection comes after
+	private static final double INITIAL_NANOS_PER_EXPANSION = 300;
+	private static final int RATE_MIN_NODES = 1000; // smaller searches are too noisy to measure
+	private static final double RATE_SMOOTHING = 0.3;
+
+	private static final int ARCHIVE_SLOTS = NAMOAStar.MAX_ARCHIVE_SIZE + 1; // +1 before trimming
+	private static final int TIME_CHECK_PERIOD = 64; // expansions between two Time checks
+	private static final int[] DX = { 0, 1, 0, -1 }; // NORTH, EAST, SOUTH, WEST
+	private static final int[] DY = { -1, 0, 1, 0 };
+
+	private int generation = 0;
+
+	// Nodes
+	private int nodeCount;
+	private int[] nodeLabel = new int[1 << 14]; // slot * cellCount + cell
+	private int[] nodeDistance = new int[1 << 14];
+	private int[] nodeBuildCost = new int[1 << 14];
+	private int[] nodeInstability = new int[1 << 14];
+	private int[] nodeParent = new int[1 << 14];
+	private int[] nodePriority = new int[1 << 14]; // total (cost + heuristic) distance + build cost
+
+	// Open list: binary heap of node indices ordered by (priority, index)
+	private int[] heap = new int[1 << 14];
+	private int heapSize;
+
+	// Per label
+	private int[] closedGeneration = new int[0];
+	private int[] archiveGeneration = new int[0];
+	private int[] archiveCount = new int[0];
+	private int[] archiveDistance = new int[0];
+	private int[] archiveBuildCost = new int[0];
+	private int[] archiveInstability = new int[0];
+
+	// Per slot * cityCount + city
+	private int[] targetGeneration = new int[0];
+	private int[] foundGeneration = new int[0];
+
+	// Per slot
+	private int[] targetOffset = new int[0];
+	private int[] targetCount = new int[0];
+	private int[] distinctTargets = new int[0];
+	private int[] foundTargets = new int[0];
+	private int[] nodesExpanded = new int[0];
+	private boolean[] finished = new boolean[0];
+	private Termination[] terminations = new Termination[0];
+
+	// Running estimate of the cost of an expansion, on this machine and this map
+	private double nanosPerExpansion = INITIAL_NANOS_PER_EXPANSION;
+
+	// Targets of all slots, consecutive
+	private int[] targetX = new int[16];
+	private int[] targetY = new int[16];
+	private int[] targetId = new int[16];
+
+	// Exact heuristic, when available for the searched map
+	private CityDistanceFields fields;
+
+	private final MatchContext match;
+	private int width;
+	private int height;
+	private int cellCount;
+	private int cityCount;
+
+	NAMOASearchContext(MatchContext match) {
+		this.match = match;
+	}
 
-		Set<Integer> targetIds = targets.stream().map(City::id).collect(java.util.stream.Collectors.toSet());
-		Set<Integer> foundTargets = new HashSet<>();
-		Coord startCoord = MatchConstants.coord(start.x(), start.y());
+	List<Map<Integer, List<NAMOAPath>>> findPaths(GameState gs, List<City> starts, List<List<City>> targetsPerStart,
+			boolean checkTime, boolean isFirstTurn) {
+		int budget = checkTime ? nodeBudget(starts.size(), isFirstTurn) : NAMOAStar.MAX_NODES;
+		return findPaths(gs, starts, targetsPerStart, budget, checkTime, isFirstTurn);
+	}
 
-		// Open list (priority queue)
-		java.util.PriorityQueue<NAMOANode> open = new java.util.PriorityQueue<>();
+	// With the given node budget per start city
+	List<Map<Integer, List<NAMOAPath>>> findPaths(GameState gs, List<City> starts, List<List<City>> targetsPerStart,
+			int budget, boolean checkTime, boolean isFirstTurn) {
+		long start = System.nanoTime();
+		List<Map<Integer, List<NAMOAPath>>> results = search(gs, starts, targetsPerStart, budget, checkTime,
+				isFirstTurn);
+		long duration = System.nanoTime() - start;
+		int paths = 0;
+		for (Map<Integer, List<NAMOAPath>> slotResults : results) {
+			for (List<NAMOAPath> targetPaths : slotResults.values()) {
+				paths += targetPaths.size();
+			}
+		}
+		int nodes = 0;
+		for (int slot = 0; slot < starts.size(); slot++) {
+			nodes += nodesExpanded[slot];
+		}
+		if (checkTime && nodes >= RATE_MIN_NODES) {
+			nanosPerExpansion += RATE_SMOOTHING * ((double) duration / nodes - nanosPerExpansion);
+		}
+		match.telemetry.record(Telemetry.Phase.NAMOA, duration);
+		match.telemetry.recordSearch(nodesExpanded, terminations, starts.size(), paths);
+		if (Print.isOn(Print.Level.DEBUG, Print.Category.SEARCH)) {
+			int expanded = nodes;
+			double rate = nanosPerExpansion;
+			String ends = java.util.Arrays.toString(java.util.Arrays.copyOf(terminations, starts.size()));
+			Print.debug(Print.Category.SEARCH, () -> "NAMOA* budget " + budget + " nodes per city, " + expanded
+					+ " expanded (" + Print.formatDoubleFixedLenghtAFterComma(-1, 0, rate) + " ns each), ends " + ends);
+		}
+		return results;
+	}
 
-		// Non-dominated archive per coordinate - limit size for performance
-		Map<Coord, List<PathCost>> archive = new HashMap<>();
+	/**
+	 * Expansions allowed to each start city of a timed search: what the time left
+	 * of the turn allows at the measured expansion rate, shared evenly between
+	 * the starts. MAX_NODES without time limit.
+	 */
+	int nodeBudget(int starts, boolean isFirstTurn) {
+		if (Time.noTimeLimit) {
+			return NAMOAStar.MAX_NODES;
+		}
+		double nodes = match.time.timeLeftNano(isFirstTurn) * SEARCH_TIME_SHARE / nanosPerExpansion
+				/ Math.max(1, starts);
+		return (int) Math.max(NAMOAStar.MIN_SCHEDULED_NODES, Math.min(NAMOAStar.MAX_SCHEDULED_NODES, nodes));
+	}
 
-		// Closed set to avoid reprocessing
-		Set<Coord> closed = new HashSet<>();
+	// Termination of a start city of the last search
+	Termination termination(int slot) {
+		return terminations[slot];
+	}
 
-		// Initial node
-		PathCost initialCost = new PathCost(0, 0, 0);
-		PathCost initialHeuristic = computeHeuristic(gs, startCoord, targets);
-		long insertionCounter = 0;
-		NAMOANode startNode = new NAMOANode(startCoord, initialCost, initialHeuristic, null, insertionCounter++);
-		open.add(startNode);
+	private List<Map<Integer, List<NAMOAPath>>> search(GameState gs, List<City> starts,
+			List<List<City>> targetsPerStart, int nodeBudget, boolean checkTime, boolean isFirstTurn) {
+		int slots = starts.size();
+		List<Map<Integer, List<NAMOAPath>>> results = new ArrayList<>(slots);
+		for (List<City> targets : targetsPerStart) {
+			Map<Integer, List<NAMOAPath>> slotResults = new HashMap<>();
+			for (City target : targets) {
+				slotResults.put(target.id(), new ArrayList<>());
+			}
+			results.add(slotResults);
+		}
 
-		int nodesExpanded = 0;
-		final int MAX_NODES = 5000; // Limit search space for performance
+		prepare(gs, targetsPerStart);
+		MapDefinition map = gs.map();
+		int remainingSlots = 0;
+		for (int slot = 0; slot < slots; slot++) {
+			City start = starts.get(slot);
+			if (targetCount[slot] == 0) {
+				finished[slot] = true;
+				terminations[slot] = Termination.GOAL;
+				continue;
+			}
+			remainingSlots++;
+			// Initial node
+			pushNode(slot, slot * cellCount + start.y() * width + start.x(), 0, 0, 0, -1);
+		}
 
-		while (!open.isEmpty() && nodesExpanded < MAX_NODES) {
-			NAMOANode current = open.poll();
-			nodesExpanded++;
+		int polls = 0;
+		boolean timeOut = false;
+		while (heapSize > 0 && remainingSlots > 0) {
+			// Searches without time limit still stop once the watchdog answered
+			if (++polls % TIME_CHECK_PERIOD == 0
+					&& (checkTime ? !match.time.hasTimeLeft(isFirstTurn) : match.time.isExpired())) {
+				long duration = match.time.roundDuration();
+				int searching = remainingSlots;
+				Print.debug(Print.Category.SEARCH, () -> duration + "ms: NAMOA* stopped by time limit with "
+						+ searching + " start cities still searching");
+				timeOut = true;
+				break;
+			}
+			int current = pollNode();
+			int label = nodeLabel[current];
+			int slot = label / cellCount;
+			if (finished[slot]) {
+				continue;
+			}
+			if (++nodesExpanded[slot] >= nodeBudget) {
+				finished[slot] = true;
+				terminations[slot] = Termination.BUDGET;
+				remainingSlots--;
+			}
 
 			// Skip if already processed
-			if (closed.contains(current.coord())) {
+			if (closedGeneration[label] == generation) {
 				continue;
 			}
-			closed.add(current.coord());
+			closedGeneration[label] = generation;
+
+			int distance = nodeDistance[current];
+			int buildCost = nodeBuildCost[current];
+			int instability = nodeInstability[current];
 
 			// Check if dominated by archive
-			if (isDominated(current.cost(), archive.get(current.coord()))) {
+			if (isDominated(label, distance, buildCost, instability)) {
 				continue;
 			}
 
+			int cell = label - slot * cellCount;
+			int x = cell % width;
+			int y = cell / width;
+
 			// Check if we reached a target
-			City reachedCity = gs.map().cityAt(current.coord().x(), current.coord().y());
-			if (reachedCity != null && targetIds.contains(reachedCity.id())) {
-				List<Coord> path = reconstructPath(current);
-				NAMOAPath solution = new NAMOAPath(start, reachedCity, path, current.cost());
-				addNonDominatedSolution(results.get(reachedCity.id()), solution);
-				foundTargets.add(reachedCity.id());
+			City reachedCity = map.cityAt(x, y);
+			int reachedTarget = reachedCity != null ? slot * cityCount + reachedCity.id() : -1;
+			if (reachedCity != null && targetGeneration[reachedTarget] == generation) {
+				// The path is only built for a solution which is kept
+				List<NAMOAPath> solutions = results.get(slot).get(reachedCity.id());
+				if (!isDominatedSolution(solutions, distance, buildCost, instability)) {
+					addNonDominatedSolution(solutions, new NAMOAPath(starts.get(slot), reachedCity,
+							reconstructPath(current), new PathCost(distance, buildCost, instability)));
+				}
+				if (foundGeneration[reachedTarget] != generation) {
+					foundGeneration[reachedTarget] = generation;
+					foundTargets[slot]++;
+				}
 
 				// Early termination if we found all targets with at least one path
-				if (foundTargets.size() == targetIds.size()) {
-					break;
+				if (foundTargets[slot] == distinctTargets[slot]) {
+					if (!finished[slot]) {
+						finished[slot] = true;
+						remainingSlots--;
+					}
+					// Even on the last expansion of the budget, which only stops the search
+					terminations[slot] = Termination.GOAL;
+					continue;
 				}
 			}
+			if (finished[slot]) {
+				continue;
+			}
 
 			// Expand neighbors
-			for (Coord neighbor : getNeighbors(gs, current.coord())) {
-				if (closed.contains(neighbor)) {
+			for (int dir = 0; dir < 4; dir++) {
+				int nx = x + DX[dir];
+				int ny = y + DY[dir];
+				if (nx < 0 || nx >= width || ny < 0 || ny >= height || !gs.canTraverse(nx, ny)) {
+					continue;
+				}
+				int neighbor = slot * cellCount + ny * width + nx;
+				if (closedGeneration[neighbor] == generation) {
 					continue;
 				}
 
-				int edgeDistance = 1;
-				int edgeCost = getMovementCost(gs, neighbor);
-				int edgeInstability = getInstabilityCost(gs, neighbor);
-
-				PathCost newCost = current.cost().add(edgeDistance, edgeCost, edgeInstability);
+				int newDistance = distance + 1;
+				int newBuildCost = buildCost + movementCost(gs, nx, ny);
+				int newInstability = instability + map.regions()[map.regionIdAt(nx, ny)].instability();
 
 				// Check if dominated by archive at neighbor
-				List<PathCost> neighborArchive = archive.get(neighbor);
-				if (!isDominated(newCost, neighborArchive)) {
-					PathCost newHeuristic = computeHeuristic(gs, neighbor, targets);
-					NAMOANode newNode = new NAMOANode(neighbor, newCost, newHeuristic, current, insertionCounter++);
-					open.add(newNode);
-
-					// Update archive with size limit
-					addToArchiveLimited(archive, neighbor, newCost, 3); // Max 3 non-dominated paths per cell
+				if (!isDominated(neighbor, newDistance, newBuildCost, newInstability)) {
+					pushNode(slot, neighbor, newDistance, newBuildCost, newInstability, current);
+					addToArchiveLimited(neighbor, newDistance, newBuildCost, newInstability);
 				}
 			}
 		}
+		for (int slot = 0; slot < slots; slot++) {
+			if (!finished[slot]) {
+				terminations[slot] = timeOut ? Termination.TIME : Termination.EXHAUSTED;
+			}
+		}
 
 		return results;
 	}
 
-	private static int getInstabilityCost(GameState gs, Coord neighbor) {
-		int regionId = gs.regionIdAt(neighbor);
-		Region region = gs.map().regions()[regionId];
-		return region.instability();
+	private void prepare(GameState gs, List<List<City>> targetsPerStart) {
+		generation++;
+		nodeCount = 0;
+		heapSize = 0;
+		width = gs.map().width();
+		height = gs.map().height();
+		cellCount = width * height;
+		cityCount = gs.map().citiesById().length;
+		fields = match.distanceFields();
+		// Manhattan distances for the states the fields weren't updated from
+		if (fields != null && !fields.covers(gs)) {
+			fields = null;
+		}
+
+		int slots = targetsPerStart.size();
+		int labelCount = slots * cellCount;
+		if (closedGeneration.length < labelCount) {
+			// Sized for every city as a start at once, the number of starts varies from turn to turn
+			labelCount = Math.max(labelCount, cityCount * cellCount);
+			closedGeneration = new int[labelCount];
+			archiveGeneration = new int[labelCount];
+			archiveCount = new int[labelCount];
+			archiveDistance = new int[labelCount * ARCHIVE_SLOTS];
+			archiveBuildCost = new int[labelCount * ARCHIVE_SLOTS];
+			archiveInstability = new int[labelCount * ARCHIVE_SLOTS];
+		}
+		if (targetGeneration.length < slots * cityCount) {
+			targetGeneration = new int[Math.max(slots, cityCount) * cityCount];
+			foundGeneration = new int[targetGeneration.length];
+		}
+		if (targetOffset.length < slots) {
+			int length = Math.max(slots, cityCount);
+			targetOffset = new int[length];
+			targetCount = new int[length];
+			distinctTargets = new int[length];
+			foundTargets = new int[length];
+			nodesExpanded = new int[length];
+			finished = new boolean[length];
+			terminations = new Termination[length];
+		}
+
+		int totalTargets = 0;
+		for (List<City> targets : targetsPerStart) {
+			totalTargets += targets.size();
+		}
+		if (targetX.length < totalTargets) {
+			targetX = new int[totalTargets];
+			targetY = new int[totalTargets];
+			targetId = new int[totalTargets];
+		}
+		int offset = 0;
+		for (int slot = 0; slot < slots; slot++) {
+			List<City> targets = targetsPerStart.get(slot);
+			targetOffset[slot] = offset;
+			targetCount[slot] = targets.size();
+			distinctTargets[slot] = 0;
+			foundTargets[slot] = 0;
+			nodesExpanded[slot] = 0;
+			finished[slot] = false;
+			for (City target : targets) {
+				targetX[offset] = target.x();
+				targetY[offset] = target.y();
+				targetId[offset] = target.id();
+				offset++;
+				if (targetGeneration[slot * cityCount + target.id()] != generation) {
+					targetGeneration[slot * cityCount + target.id()] = generation;
+					distinctTargets[slot]++;
+				}
+			}
+		}
 	}
 
-	private static PathCost computeHeuristic(GameState gs, Coord from, List<City> targets) {
+	// Distance + build cost estimate to the closest targets of the slot: exact
+	// lower bounds from the city distance fields when they cover this map,
+	// otherwise the Manhattan distance for both (assuming average terrain)
+	private int heuristic(int slot, int x, int y) {
+		int end = targetOffset[slot] + targetCount[slot];
+		if (fields != null) {
+			int cell = y * width + x;
+			int minHops = CityDistanceFields.UNREACHABLE;
+			int minBuildCost = CityDistanceFields.UNREACHABLE;
+			for (int i = targetOffset[slot]; i < end; i++) {
+				minHops = Math.min(minHops, fields.hopsTo(targetId[i], cell));
+				minBuildCost = Math.min(minBuildCost, fields.buildCostTo(targetId[i], cell));
+			}
+			return minHops + minBuildCost;
+		}
 		int minDistance = Integer.MAX_VALUE;
-		int minCost = 0;
-		int minInstability = 0;
-
-		for (City target : targets) {
-			int dist = Math.abs(from.x() - target.x()) + Math.abs(from.y() - target.y());
+		for (int i = targetOffset[slot]; i < end; i++) {
+			int dist = Math.abs(x - targetX[i]) + Math.abs(y - targetY[i]);
 			if (dist < minDistance) {
 				minDistance = dist;
-				// Estimate cost (assuming average terrain)
-				minCost = dist;
 			}
 		}
+		return minDistance + minDistance;
+	}
+
+	static int movementCost(GameState gs, int x, int y) {
+		// If there's already a rail, or it's a city, no cost to use it
+		if (gs.rails().hasRail(x, y) || gs.map().cityAt(x, y) != null) {
+			return 0;
+		}
+		// Otherwise, terrain build cost
+		return gs.map().buildCostAt(x, y);
+	}
 
-		return new PathCost(minDistance, minCost, minInstability);
+	private static boolean dominates(int distance, int buildCost, int instability, int otherDistance,
+			int otherBuildCost, int otherInstability) {
+		return distance <= otherDistance && buildCost <= otherBuildCost
+				&& (distance < otherDistance || buildCost < otherBuildCost) && instability <= otherInstability;
 	}
 
-	private static boolean isDominated(PathCost cost, List<PathCost> archive) {
-		if (archive == null || archive.isEmpty()) {
+	private boolean isDominated(int label, int distance, int buildCost, int instability) {
+		if (archiveGeneration[label] != generation) {
 			return false;
 		}
-
-		for (PathCost archiveCost : archive) {
-			if (archiveCost.dominates(cost)) {
+		int base = label * ARCHIVE_SLOTS;
+		for (int i = base; i < base + archiveCount[label]; i++) {
+			if (dominates(archiveDistance[i], archiveBuildCost[i], archiveInstability[i], distance, buildCost,
+					instability)) {
 				return true;
 			}
 		}
 		return false;
 	}
 
-	private static void addToArchiveLimited(Map<Coord, List<PathCost>> archive, Coord coord, PathCost newCost,
-			int maxSize) {
-		List<PathCost> costs = archive.computeIfAbsent(coord, k -> new ArrayList<>());
+	private void addToArchiveLimited(int label, int distance, int buildCost, int instability) {
+		if (archiveGeneration[label] != generation) {
+			archiveGeneration[label] = generation;
+			archiveCount[label] = 0;
+		}
+		archiveCount[label] = addToArchive(archiveDistance, archiveBuildCost, archiveInstability, label * ARCHIVE_SLOTS,
+				archiveCount[label], distance, buildCost, instability);
+	}
 
-		// Remove dominated costs
-		costs.removeIf(existingCost -> newCost.dominates(existingCost));
+	/**
+	 * Adds a cost to the archive held in the slots from base (count costs), as
+	 * the legacy list did: removes the costs it dominates, adds it unless
+	 * dominated, and past MAX_ARCHIVE_SIZE sorts the whole archive by distance +
+	 * build cost (stable, it may be unsorted since the last trim) and drops the
+	 * last one. Returns the new count.
+	 */
+	static int addToArchive(int[] distances, int[] buildCosts, int[] instabilities, int base, int count,
+			int distance, int buildCost, int instability) {
+		// Remove dominated costs, keeping the order of the remaining ones
+		int kept = 0;
+		for (int i = base; i < base + count; i++) {
+			if (!dominates(distance, buildCost, instability, distances[i], buildCosts[i], instabilities[i])) {
+				distances[base + kept] = distances[i];
+				buildCosts[base + kept] = buildCosts[i];
+				instabilities[base + kept] = instabilities[i];
+				kept++;
+			}
+		}
+		count = kept;
 
 		// Add if not dominated and under size limit
-		if (!isDominated(newCost, costs)) {
-			costs.add(newCost);
-			// Keep only best paths if exceeding limit
-			if (costs.size() > maxSize) {
-				costs.sort(PathCost::compareTo);
-				while (costs.size() > maxSize) {
-					costs.remove(costs.size() - 1);
+		for (int i = base; i < base + count; i++) {
+			if (dominates(distances[i], buildCosts[i], instabilities[i], distance, buildCost, instability)) {
+				return count;
+			}
+		}
+		distances[base + count] = distance;
+		buildCosts[base + count] = buildCost;
+		instabilities[base + count] = instability;
+		count++;
+
+		// Keep only best paths if exceeding limit
+		if (count > NAMOAStar.MAX_ARCHIVE_SIZE) {
+			for (int i = base + 1; i < base + count; i++) {
+				int d = distances[i];
+				int b = buildCosts[i];
+				int in = instabilities[i];
+				int j = i;
+				while (j > base && distances[j - 1] + buildCosts[j - 1] > d + b) {
+					distances[j] = distances[j - 1];
+					buildCosts[j] = buildCosts[j - 1];
+					instabilities[j] = instabilities[j - 1];
+					j--;
 				}
+				distances[j] = d;
+				buildCosts[j] = b;
+				instabilities[j] = in;
+			}
+			count = NAMOAStar.MAX_ARCHIVE_SIZE;
+		}
+		return count;
+	}
+
+	private static boolean isDominatedSolution(List<NAMOAPath> solutions, int distance, int buildCost,
+			int instability) {
+		for (int i = 0; i < solutions.size(); i++) {
+			PathCost cost = solutions.get(i).cost();
+			if (dominates(cost.distance(), cost.buildCost(), cost.instability(), distance, buildCost, instability)) {
+				return true;
 			}
 		}
+		return false;
 	}
 
 	private static void addNonDominatedSolution(List<NAMOAPath> solutions, NAMOAPath newSolution) {
@@ -972,60 +4167,205 @@ class NAMOAStar {
 		solutions.removeIf(existing -> newSolution.cost().dominates(existing.cost()));
 
 		// Add if not dominated
-		boolean dominated = false;
 		for (NAMOAPath existing : solutions) {
 			if (existing.cost().dominates(newSolution.cost())) {
-				dominated = true;
+				return;
+			}
+		}
+		solutions.add(newSolution);
+	}
+
+	private List<Coord> reconstructPath(int node) {
+		int length = 0;
+		for (int n = node; n >= 0; n = nodeParent[n]) {
+			length++;
+		}
+		Coord[] path = new Coord[length];
+		for (int n = node; n >= 0; n = nodeParent[n]) {
+			int cell = nodeLabel[n] % cellCount;
+			path[--length] = MatchConstants.coord(cell % width, cell / width);
+		}
+		return java.util.Arrays.asList(path);
+	}
+
+	private void pushNode(int slot, int label, int distance, int buildCost, int instability, int parent) {
+		if (nodeCount == nodeLabel.length) {
+			growNodes();
+		}
+		int node = nodeCount++;
+		int cell = label - slot * cellCount;
+		int h = heuristic(slot, cell % width, cell / width);
+		nodeLabel[node] = label;
+		nodeDistance[node] = distance;
+		nodeBuildCost[node] = buildCost;
+		nodeInstability[node] = instability;
+		nodeParent[node] = parent;
+		nodePriority[node] = distance + buildCost + h;
+
+		// Sift up
+		int i = heapSize++;
+		while (i > 0) {
+			int parentSlot = (i - 1) >>> 1;
+			if (!isBefore(node, heap[parentSlot])) {
 				break;
 			}
+			heap[i] = heap[parentSlot];
+			i = parentSlot;
 		}
+		heap[i] = node;
+	}
 
-		if (!dominated) {
-			solutions.add(newSolution);
+	private int pollNode() {
+		int result = heap[0];
+		int last = heap[--heapSize];
+		// Sift down
+		int i = 0;
+		int half = heapSize >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int right = child + 1;
+			if (right < heapSize && isBefore(heap[right], heap[child])) {
+				child = right;
+			}
+			if (!isBefore(heap[child], last)) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
 		}
+		heap[i] = last;
+		return result;
+	}
+
+	private boolean isBefore(int node, int other) {
+		return nodePriority[node] < nodePriority[other]
+				|| nodePriority[node] == nodePriority[other] && node < other;
+	}
+
+	private void growNodes() {
+		int newLength = nodeLabel.length * 2;
+		nodeLabel = java.util.Arrays.copyOf(nodeLabel, newLength);
+		nodeDistance = java.util.Arrays.copyOf(nodeDistance, newLength);
+		nodeBuildCost = java.util.Arrays.copyOf(nodeBuildCost, newLength);
+		nodeInstability = java.util.Arrays.copyOf(nodeInstability, newLength);
+		nodeParent = java.util.Arrays.copyOf(nodeParent, newLength);
+		nodePriority = java.util.Arrays.copyOf(nodePriority, newLength);
+		heap = java.util.Arrays.copyOf(heap, newLength);
+	}
+}
+
+// NAMOA* results kept across turns, keyed by (start city, target city). An entry
+// is dropped when a cell it crosses gets an opponent or contested rail, or when
+// the instability of a region it crosses changes. Otherwise its paths are
+// reused, with their costs re-evaluated on the current state (our own rails
+// make them cheaper).
+class PathCache {
+
+	private final Map<Integer, List<NAMOAPath>> entries = new HashMap<>(); // from * cityCount + to
+	private TerrainType[][] terrain; // identifies the map the entries were computed on
+	private int cityCount;
+	int hits;
+	int misses;
+
+	void clear() {
+		entries.clear();
 	}
 
-	private static List<Coord> getNeighbors(GameState gs, Coord coord) {
-		List<Coord> neighbors = new ArrayList<>();
-		// NORTH, EAST, SOUTH, WEST
-		int[][] directions = { { 0, -1 }, { 1, 0 }, { 0, 1 }, { -1, 0 } };
+	int size() {
+		return entries.size();
+	}
 
-		for (int[] dir : directions) {
-			int nx = coord.x() + dir[0];
-			int ny = coord.y() + dir[1];
+	/** Drops the entries touched by the changes, or all of them on a full refresh */
+	void invalidate(TurnChanges changes, GameState gs) {
+		if (changes.isFullRefresh() || !covers(gs.map())) {
+			clear();
+			return;
+		}
+		if (changes.isEmpty()) {
+			return;
+		}
+		int before = entries.size();
+		entries.values().removeIf(paths -> isTouched(paths, changes, gs));
+		int invalidated = before - entries.size();
+		Print.debug(Print.Category.SEARCH,
+				() -> "Path cache: " + invalidated + " of " + before + " entries invalidated");
+	}
 
-			if (MatchConstants.isValid(nx, ny)) {
-				Coord neighbor = MatchConstants.coord(nx, ny);
-				if (gs.canBuildAt(neighbor) || gs.map().cityAt(nx, ny) != null) {
-					neighbors.add(neighbor);
+	private static boolean isTouched(List<NAMOAPath> paths, TurnChanges changes, GameState gs) {
+		int width = gs.map().width();
+		for (NAMOAPath path : paths) {
+			for (Coord coord : path.path()) {
+				int cell = coord.y() * width + coord.x();
+				if ((changes.kindsAt(cell) & (TurnChanges.RAIL_ADDED | TurnChanges.OWNER_CHANGED)) != 0
+						&& gs.rails().ownerAt(cell) != RailOwner.ME) {
+					return true;
+				}
+				if (changes.isInstabilityChanged(gs.map().regionIdAt(coord))) {
+					return true;
 				}
 			}
 		}
+		return false;
+	}
 
-		return neighbors;
+	/**
+	 * Cached paths from one city to another with their costs on gs, null if there
+	 * are none or if one of them can't be used as is anymore (the entry is then
+	 * dropped).
+	 */
+	List<NAMOAPath> get(GameState gs, City from, City to) {
+		if (!covers(gs.map())) {
+			misses++;
+			return null;
+		}
+		int key = from.id() * cityCount + to.id();
+		List<NAMOAPath> paths = entries.get(key);
+		if (paths == null) {
+			misses++;
+			return null;
+		}
+		List<NAMOAPath> revalidated = new ArrayList<>(paths.size());
+		for (NAMOAPath path : paths) {
+			PathCost cost = evaluate(gs, path.path());
+			if (cost == null || cost.instability() != path.cost().instability()) {
+				entries.remove(key);
+				misses++;
+				return null;
+			}
+			revalidated.add(new NAMOAPath(from, to, path.path(), cost));
+		}
+		hits++;
+		return revalidated;
 	}
 
-	private static int getMovementCost(GameState gs, Coord coord) {
-		// If there's already a rail, no cost to use it
-		if (gs.rails().containsKey(coord)) {
-			return 0;
+	void put(GameState gs, City from, City to, List<NAMOAPath> paths) {
+		if (!covers(gs.map())) {
+			entries.clear();
+			terrain = gs.map().terrainType();
+			cityCount = gs.map().citiesById().length;
 		}
-		// If it's a city, no cost
-		if (gs.map().cityAt(coord.x(), coord.y()) != null) {
-			return 0;
+		if (!paths.isEmpty()) {
+			entries.put(from.id() * cityCount + to.id(), new ArrayList<>(paths));
 		}
-		// Otherwise, terrain build cost
-		return gs.map().terrainType()[coord.x()][coord.y()].buildCost();
 	}
 
-	private static List<Coord> reconstructPath(NAMOANode node) {
-		List<Coord> path = new ArrayList<>();
-		NAMOANode current = node;
-		while (current != null) {
-			path.add(0, current.coord());
-			current = current.parent();
+	private boolean covers(MapDefinition map) {
+		return map.terrainType() == terrain;
+	}
+
+	// Cost of a path on gs as NAMOA* computes it, null if a cell can't be crossed anymore
+	static PathCost evaluate(GameState gs, List<Coord> path) {
+		int buildCost = 0;
+		int instability = 0;
+		for (int i = 1; i < path.size(); i++) {
+			Coord coord = path.get(i);
+			if (!gs.canTraverse(coord.x(), coord.y())) {
+				return null;
+			}
+			buildCost += NAMOASearchContext.movementCost(gs, coord.x(), coord.y());
+			instability += gs.map().regions()[gs.map().regionIdAt(coord)].instability();
 		}
-		return path;
+		return new PathCost(path.size() - 1, buildCost, instability);
 	}
 }
 
@@ -1062,29 +4402,26 @@ interface AI {
 	public default void printAIParameters() {
 	}
 
+	// Called with what changed in the input since last turn, before compute, so
+	// that an AI keeping caches across turns can invalidate only what's touched
+	public default void onTurnChanges(TurnChanges changes) {
+	}
+
 	public default void printAI() {
 		Print.debug("Using base AI: " + this.getClass().getName());
 	}
 
+	// Match the AI plays, the static one by default
+	public default MatchContext context() {
+		return MatchContext.STATIC;
+	}
+
 	public default Action getDisruptAction(GameState gs) {
 		Action result = null;
-		Map<Connection, Integer> connectionWorthMap = new HashMap<>();
-
-		Time.debugDuration("Disrupt action computation start");
-		for (Connection conn : gs.cachedConnections()) {
-			for (Rail rail : gs.rails().values()) {
-				if (rail.partOfActiveConnections != null && rail.partOfActiveConnections.contains(conn)) {
-					if (rail.owner() == RailOwner.ME) {
-						connectionWorthMap.put(conn, connectionWorthMap.getOrDefault(conn, 0) + 1);
-					} else if (rail.owner() == RailOwner.OPPONENT) {
-						connectionWorthMap.put(conn, connectionWorthMap.getOrDefault(conn, 0) - 1);
-					}
-				}
-			}
-			// Print.debug("Connection from " + conn.fromId() + " to " + conn.toId() + " has
-			// worth: "
-			// + connectionWorthMap.getOrDefault(conn, 0));
-		}
+
+		MatchContext context = context();
+		context.time.debug("Disrupt action computation start");
+		DisruptIndex index = context.disruptIndex(gs);
 
 		double worstRegionValue = 0;
 		List<Region> regionCandidateToDisrupt = new ArrayList<Region>();
@@ -1094,9 +4431,7 @@ interface AI {
 			}
 			double regionValue = 0;
 			int rawRegionValue = 0;
-			for (Connection conn : region.connections()) {
-				regionValue += connectionWorthMap.getOrDefault(conn, 0);
-			}
+			regionValue += index.connectionsWorth(region.connections());
 			rawRegionValue = (int) regionValue;
 			regionValue /= MatchConstants.INSTABILITY_THRESHOLD - region.instability();
 
@@ -1108,8 +4443,10 @@ interface AI {
 				regionCandidateToDisrupt.add(region);
 			}
 			if (regionValue != 0) {
-				Print.debug(
-						"Region " + region.id() + " has raw value: " + rawRegionValue + " and value: " + regionValue);
+				int raw = rawRegionValue;
+				double value = regionValue;
+				Print.debug(Print.Category.DISRUPT,
+						() -> "Region " + region.id() + " has raw value: " + raw + " and value: " + value);
 			}
 		}
 		if (regionCandidateToDisrupt.isEmpty()) {
@@ -1118,8 +4455,9 @@ interface AI {
 			Print.debug("Single region to disrupt, just do it");
 			result = Action.disruptRegion(regionCandidateToDisrupt.get(0).id());
 		} else {
-			Print.debug(regionCandidateToDisrupt.size()
-					+ " regions candidate to disrupt, going to kill based on max balance of rails");
+			int candidates = regionCandidateToDisrupt.size();
+			Print.debug(Print.Category.DISRUPT,
+					() -> candidates + " regions candidate to disrupt, going to kill based on max balance of rails");
 
 			Region regionToKill = null;
 			double bestBalance = 100;
@@ -1128,16 +4466,7 @@ interface AI {
 			}
 			for (Region region : regionCandidateToDisrupt) {
 
-				double balance = 0;
-				for (Rail rail : gs.rails().values()) {
-					if (region.id() == gs.map().regionIdAt(rail.x(), rail.y())) {
-						if (rail.owner == RailOwner.OPPONENT) {
-							balance--;
-						} else if (rail.owner == RailOwner.ME) {
-							balance++;
-						}
-					}
-				}
+				double balance = index.regionBalance(region.id());
 
 				// Print.debug("Region " + region.id() + " has a raw rail balance of: " +
 				// balance);
@@ -1154,18 +4483,100 @@ interface AI {
 			}
 
 			if (regionToKill != null) {
-				Print.debug("Going to kill " + bestBalance + " balanced rails from region " + regionToKill.id());
+				double balance = bestBalance;
+				int regionId = regionToKill.id();
+				Print.debug(Print.Category.DISRUPT,
+						() -> "Going to kill " + balance + " balanced rails from region " + regionId);
 				result = Action.disruptRegion(regionToKill.id());
 			} else {
 				Print.debug("I guess there's a bug");
 			}
 
 		}
-		Time.debugDuration("Disrupt action computation end");
+		context.time.debug("Disrupt action computation end");
 		return result;
 	}
 }
 
+// Rail counts behind the disrupt scoring, computed in a single pass over the
+// board: my rails minus the opponent's per active connection and per region.
+// Built by the match context right after parsing, and reused by
+// getDisruptAction as long as the state has the same (unmodified) board and
+// active connections.
+class DisruptIndex {
+
+	private final RailBoard rails;
+	private final int railsVersion;
+	private final Set<Connection> activeConnections;
+	private final int[] connectionWorth; // by connection id
+	private final int[] regionBalance;
+
+	DisruptIndex(GameState gs) {
+		this.rails = gs.rails();
+		this.railsVersion = rails.version();
+		this.activeConnections = gs.cachedConnections();
+		ConnectionSet active = activeConnections instanceof ConnectionSet set ? set
+				: new ConnectionSet(activeConnections);
+		int idCount = Connection.idCount(gs.map().citiesById().length);
+		for (Connection connection : activeConnections) {
+			idCount = Math.max(idCount, connection.id() + 1);
+		}
+		this.connectionWorth = new int[idCount];
+		this.regionBalance = new int[gs.map().regions().length];
+
+		MapDefinition map = gs.map();
+		for (int index = 0; index < rails.cellCount(); index++) {
+			if (!rails.hasRail(index)) {
+				continue;
+			}
+			RailOwner owner = rails.ownerAt(index);
+			int worth = owner == RailOwner.ME ? 1 : owner == RailOwner.OPPONENT ? -1 : 0;
+			if (worth == 0) {
+				continue;
+			}
+			regionBalance[map.regionIdAt(rails.xOf(index), rails.yOf(index))] += worth;
+			ConnectionSet connections = rails.connectionsAt(index);
+			for (int id = connections.nextId(0); id >= 0; id = connections.nextId(id + 1)) {
+				if (active.containsId(id)) {
+					connectionWorth[id] += worth;
+				}
+			}
+		}
+	}
+
+	// Whether the index still scores this state
+	boolean covers(GameState gs) {
+		return rails == gs.rails() && railsVersion == gs.rails().version()
+				&& activeConnections == gs.cachedConnections() && regionBalance.length == gs.map().regions().length;
+	}
+
+	// My rails minus the opponent's on an active connection, 0 if not active
+	int connectionWorth(Connection connection) {
+		int id = connection.id();
+		return id < connectionWorth.length ? connectionWorth[id] : 0;
+	}
+
+	// Sum of the worth of the connections
+	int connectionsWorth(Set<Connection> connections) {
+		int worth = 0;
+		if (connections instanceof ConnectionSet set) {
+			for (int id = set.nextId(0); id >= 0 && id < connectionWorth.length; id = set.nextId(id + 1)) {
+				worth += connectionWorth[id];
+			}
+			return worth;
+		}
+		for (Connection connection : connections) {
+			worth += connectionWorth(connection);
+		}
+		return worth;
+	}
+
+	// My rails minus the opponent's in the region
+	int regionBalance(int regionId) {
+		return regionBalance[regionId];
+	}
+}
+
 record NAMOAPathsForCity(City city, Map<Integer, List<NAMOAPath>> pathsToTargets) {
 }
 
@@ -1181,6 +4592,55 @@ class SimpleAI implements AI {
 
 	Random r = new Random();
 
+	final MatchContext context;
+	// Settings of this instance, the static ones when not set
+	private boolean hasOwnSettings = false;
+	private int topPathsCount;
+	private boolean buildOnlyInOneRegionPerTurn;
+
+	// Paths reused across turns, invalidated with the changes of each turn
+	final PathCache pathCache = new PathCache();
+	// Track network, updated with the changes of each turn
+	final RailNetwork network = new RailNetwork();
+	private TurnChanges pendingChanges;
+	// Working memory of the rail placement, reset by each placement
+	private final PlacementScratch scratch = new PlacementScratch();
+	private List<Action> turnActions = List.of(); // of compute, before the rails
+
+	SimpleAI() {
+		this(MatchContext.STATIC);
+	}
+
+	SimpleAI(MatchContext context) {
+		this.context = context;
+	}
+
+	// Settings which don't follow the static ones, for AIs playing concurrently
+	SimpleAI withSettings(int topPathsCount, boolean buildOnlyInOneRegionPerTurn) {
+		this.hasOwnSettings = true;
+		this.topPathsCount = topPathsCount;
+		this.buildOnlyInOneRegionPerTurn = buildOnlyInOneRegionPerTurn;
+		return this;
+	}
+
+	int topPathsCount() {
+		return hasOwnSettings ? topPathsCount : GET_TOP_PATHS_COUNT;
+	}
+
+	boolean buildOnlyInOneRegionPerTurn() {
+		return hasOwnSettings ? buildOnlyInOneRegionPerTurn : BUILD_ONLY_IN_ONE_REGION_PER_TURN;
+	}
+
+	@Override
+	public MatchContext context() {
+		return context;
+	}
+
+	@Override
+	public void onTurnChanges(TurnChanges changes) {
+		pendingChanges = changes;
+	}
+
 	public List<NAMOAPath> findSortedCheapestPaths(GameState gs,
 			Map<Integer, NAMOAPathsForCity> possiblePathsMapFromCityMap) {
 		List<NAMOAPath> allPaths = new ArrayList<>();
@@ -1227,20 +4687,20 @@ class SimpleAI implements AI {
 			for (Map.Entry<Coord, Integer> buildCoordEntry : possibleBuildCoords) {
 				Coord buildCoord = buildCoordEntry.getKey();
 				int regionId = gs.regionIdAt(buildCoord);
-				if (BUILD_ONLY_IN_ONE_REGION_PER_TURN && builtInRegion.contains(regionId)) {
-					Print.debug("Skipping rail at (" + buildCoord.x() + "," + buildCoord.y()
-							+ ") as we already built in region " + regionId + " this turn");
+				if (buildOnlyInOneRegionPerTurn() && builtInRegion.contains(regionId)) {
+					Print.trace(Print.Category.BUILD, () -> "Skipping rail at (" + buildCoord.x() + ","
+							+ buildCoord.y() + ") as we already built in region " + regionId + " this turn");
 					continue;
 				}
 				coordsToRemove.add(buildCoord);
 				if (builtCoords.contains(buildCoord)) {
-					Print.debug("Skipping rail at (" + buildCoord.x() + "," + buildCoord.y()
-							+ ") as we already built there this turn");
+					Print.trace(Print.Category.BUILD, () -> "Skipping rail at (" + buildCoord.x() + ","
+							+ buildCoord.y() + ") as we already built there this turn");
 					continue;
 				}
 				if (gs.map().buildCostAt(buildCoord.x(), buildCoord.y()) > remainingBuildCapacity) {
-					Print.debug("Skipping rail at (" + buildCoord.x() + "," + buildCoord.y()
-							+ ") as not enough remaining build capacity");
+					Print.trace(Print.Category.BUILD, () -> "Skipping rail at (" + buildCoord.x() + ","
+							+ buildCoord.y() + ") as not enough remaining build capacity");
 					continue;
 				}
 				railActions.add(Action.buildRail(buildCoord.x(), buildCoord.y()));
@@ -1248,8 +4708,9 @@ class SimpleAI implements AI {
 				builtInRegion.add(regionId); // remember we've built in this region
 				builtCoords.add(buildCoord); // remember we've built here
 
-				Print.debug("Placing rail at (" + buildCoord.x() + "," + buildCoord.y() + ") in region " + regionId
-						+ ", remaining build capacity: " + remainingBuildCapacity);
+				int remaining = remainingBuildCapacity;
+				Print.debug(Print.Category.BUILD, () -> "Placing rail at (" + buildCoord.x() + "," + buildCoord.y()
+						+ ") in region " + regionId + ", remaining build capacity: " + remaining);
 
 				if (remainingBuildCapacity <= 0) {
 					Print.debug("No remaining build capacity, stopping rail placement");
@@ -1269,13 +4730,17 @@ class SimpleAI implements AI {
 	 * Returns a list of PLACE_TRACKS actions for cells that need rails.
 	 */
 	public List<Action> buildRailsAlongPath(GameState gs, List<NAMOAPath> paths) {
+		if (!network.covers(gs.map())) {
+			network.rebuild(gs);
+		}
+		scratch.reset(gs);
+		paths = rankByCompletedConnections(gs, paths);
 		Set<Action> railActions = new TreeSet<>();
 		int remainingBuildCapacity = MatchConstants.MAX_ACTIONS_PER_TURN;
-		Set<Coord> builtCoords = new HashSet<>();
-		Set<Integer> builtInRegion = new HashSet<>();
+		List<Coord> possibleBuildCoords = scratch.buildCoords;
 
 		for (NAMOAPath path : paths) {
-			List<Coord> possibleBuildCoords = new ArrayList<>();
+			possibleBuildCoords.clear();
 
 			for (Coord coord : path.path()) {
 				// Skip cities (start and end points)
@@ -1286,14 +4751,14 @@ class SimpleAI implements AI {
 
 				// Only place rail if there isn't one already
 				if (gs.map().buildCostAt(coord.x(), coord.y()) <= remainingBuildCapacity
-						&& !builtCoords.contains(coord)) {
+						&& !scratch.isBuilt(coord)) {
 					possibleBuildCoords.add(coord);
 				}
 			}
 
 			if (possibleBuildCoords.isEmpty()) {
-				Print.debug("No possible build coords along path from city " + path.from().id() + " to city "
-						+ path.to().id() + " path was: " + path.path().stream()
+				Print.trace(Print.Category.BUILD, () -> "No possible build coords along path from city "
+						+ path.from().id() + " to city " + path.to().id() + " path was: " + path.path().stream()
 								.map(c -> "(" + c.x() + "," + c.y() + ")")
 								.collect(java.util.stream.Collectors.joining(" -> ")));
 				continue;
@@ -1305,54 +4770,114 @@ class SimpleAI implements AI {
 
 			// Try to build as many rails as possible along the path
 			for (int i = 0; i < MatchConstants.MAX_ACTIONS_PER_TURN; i++) {
-				builtInRegion.clear();
+				scratch.clearRegions();
 
 				// Build rails in regions we haven't built in this turn yet
-				Set<Coord> coordsToRemove = new HashSet<>();
-				for (Coord buildCoord : possibleBuildCoords) {
+				int kept = 0;
+				for (int c = 0; c < possibleBuildCoords.size(); c++) {
+					Coord buildCoord = possibleBuildCoords.get(c);
 					int regionId = gs.regionIdAt(buildCoord);
-					if (BUILD_ONLY_IN_ONE_REGION_PER_TURN && builtInRegion.contains(regionId)) {
-						Print.debug("Skipping rail at (" + buildCoord.x() + "," + buildCoord.y()
-								+ ") as we already built in region " + regionId + " this turn" + ", connecting city "
-								+ path.to().id());
+					if (buildOnlyInOneRegionPerTurn() && scratch.isBuiltInRegion(regionId)) {
+						Print.trace(Print.Category.BUILD, () -> "Skipping rail at (" + buildCoord.x() + ","
+								+ buildCoord.y() + ") as we already built in region " + regionId + " this turn"
+								+ ", connecting city " + path.to().id());
+						possibleBuildCoords.set(kept++, buildCoord);
 						continue;
 					}
-					coordsToRemove.add(buildCoord);
-					if (builtCoords.contains(buildCoord)) {
-						Print.debug("Skipping rail at (" + buildCoord.x() + "," + buildCoord.y()
-								+ ") as we already built there this turn" + ", connecting city "
+					if (scratch.isBuilt(buildCoord)) {
+						Print.trace(Print.Category.BUILD, () -> "Skipping rail at (" + buildCoord.x() + ","
+								+ buildCoord.y() + ") as we already built there this turn" + ", connecting city "
 								+ path.to().id());
 						continue;
 					}
 					if (gs.map().buildCostAt(buildCoord.x(), buildCoord.y()) > remainingBuildCapacity) {
-						Print.debug("Skipping rail at (" + buildCoord.x() + "," + buildCoord.y()
-								+ ") as not enough remaining build capacity" + ", connecting city "
+						Print.trace(Print.Category.BUILD, () -> "Skipping rail at (" + buildCoord.x() + ","
+								+ buildCoord.y() + ") as not enough remaining build capacity" + ", connecting city "
 								+ path.to().id());
 						continue;
 					}
 					railActions.add(Action.buildRail(buildCoord.x(), buildCoord.y()));
 					remainingBuildCapacity -= gs.map().buildCostAt(buildCoord.x(), buildCoord.y());
-					builtInRegion.add(regionId); // remember we've built in this region
-					builtCoords.add(buildCoord); // remember we've built here
+					scratch.markBuilt(buildCoord, regionId); // remember we've built here and in this region
 
-					Print.debug("Placing rail at (" + buildCoord.x() + "," + buildCoord.y() + ") in region " + regionId
-							+ ", remaining build capacity: " + remainingBuildCapacity + ", connecting city "
-							+ path.to().id());
+					int remaining = remainingBuildCapacity;
+					Print.debug(Print.Category.BUILD, () -> "Placing rail at (" + buildCoord.x() + ","
+							+ buildCoord.y() + ") in region " + regionId + ", remaining build capacity: " + remaining
+							+ ", connecting city " + path.to().id());
 
 					if (remainingBuildCapacity <= 0) {
 						Print.debug("No remaining build capacity, stopping rail placement");
+						publishRails(railActions);
 						return railActions.stream().toList();
 					}
 				}
-				possibleBuildCoords.removeAll(coordsToRemove);
+				// Only the coords skipped for their region are tried again
+				possibleBuildCoords.subList(kept, possibleBuildCoords.size()).clear();
 				if (possibleBuildCoords.isEmpty()) {
 					break;
 				}
 			}
+			publishRails(railActions);
 		}
 		return railActions.stream().toList();
 	}
 
+	// Best answer so far for the watchdog: the actions of the turn and the rails chosen yet
+	private void publishRails(Collection<Action> rails) {
+		if (context.watchdog == null || rails.isEmpty()) {
+			return;
+		}
+		List<Action> answer = new ArrayList<>(turnActions);
+		answer.addAll(rails);
+		context.publishAnswer(answer);
+	}
+
+	// Paths finishing desired connections with the paint of this turn first, the
+	// most connections first, in the given order otherwise
+	List<NAMOAPath> rankByCompletedConnections(GameState gs, List<NAMOAPath> paths) {
+		int[] completed = scratch.completedCounts(paths.size());
+		boolean anyCompleted = false;
+		for (int i = 0; i < paths.size(); i++) {
+			List<Coord> missing = scratch.missingCells;
+			completed[i] = missingCellsIfAffordable(gs, paths.get(i), missing) ? network.countCompletedBy(missing) : 0;
+			anyCompleted |= completed[i] > 0;
+		}
+		if (!anyCompleted) {
+			return paths;
+		}
+		List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < paths.size(); i++) {
+			order.add(i);
+		}
+		order.sort((i1, i2) -> Integer.compare(completed[i2], completed[i1]));
+		List<NAMOAPath> ranked = new ArrayList<>(paths.size());
+		for (int i : order) {
+			ranked.add(paths.get(i));
+		}
+		return ranked;
+	}
+
+	// Fills missing with the cells of the path still without rail, false if they
+	// can't all be built this turn
+	private boolean missingCellsIfAffordable(GameState gs, NAMOAPath path, List<Coord> missing) {
+		missing.clear();
+		int cost = 0;
+		for (Coord coord : path.path()) {
+			if (gs.cityAt(coord) != null || gs.rails().containsKey(coord)) {
+				continue;
+			}
+			if (!gs.canBuildAt(coord) || gs.map().regions()[gs.regionIdAt(coord)].instability() >= 2) {
+				return false;
+			}
+			cost += gs.map().buildCostAt(coord.x(), coord.y());
+			if (cost > MatchConstants.MAX_ACTIONS_PER_TURN) {
+				return false;
+			}
+			missing.add(coord);
+		}
+		return true;
+	}
+
 	public List<NAMOAPath> filterPathsByBuildCost(List<NAMOAPath> paths, int maxBuildCost) {
 		List<NAMOAPath> filtered = new ArrayList<>();
 		for (NAMOAPath path : paths) {
@@ -1367,68 +4892,102 @@ class SimpleAI implements AI {
 		return paths.subList(0, Math.min(nbPaths, paths.size()));
 	}
 
-	public NAMOAPathsForCity findNAMOAPathsForCity(City city, GameState gs, boolean filterConnectedCities) {
-		if (city.desiredCityIds().isEmpty()) {
-			return null;
-		}
-
-		final GameState fgs = gs;
-
-		// I target only cities I don't have a connection to yet
+	// I target only cities I don't have a connection to yet (or only the connected
+	// ones when filterConnectedCities is false)
+	public List<City> findTargetCities(City city, GameState gs, boolean filterConnectedCities) {
 		List<City> targetCities = new ArrayList<>();
-
-		Print.debug(fgs.cachedConnections().stream().map(c -> c.fromId() + "-" + c.toId()).collect(
-				java.util.stream.Collectors.joining(", ")) + " cached connections before NAMOA* for city " + city.id()
-				+ " desires " + city.desiredCityIds().stream().map(String::valueOf)
-						.collect(java.util.stream.Collectors.joining(", ")));
-
 		for (int desiredCityId : city.desiredCityIds()) {
-			boolean alreadyConnected = fgs.cachedConnections()
-					.contains(MatchConstants.connectionLookup[city.id()][desiredCityId]);
+			boolean alreadyConnected = gs.cachedConnections()
+					.contains(MatchConstants.connectionById(Connection.id(city.id(), desiredCityId)));
 			if (filterConnectedCities && !alreadyConnected || !filterConnectedCities && alreadyConnected) {
-				targetCities.add(fgs.map().citiesById()[desiredCityId]);
+				targetCities.add(gs.map().citiesById()[desiredCityId]);
 			}
 		}
+		return targetCities;
+	}
 
-		Long duration = Time.getRoundDuration();
-		if (targetCities.isEmpty() || !Time.isTimeLeft(gs.round() == 1)) {
-			if (targetCities.isEmpty()) {
-				Print.debug(duration + "ms: Not computing NAMOA* paths from city " + city.id()
-						+ " - all desired cities already connected (desired: "
-						+ city.desiredCityIds().stream().map(String::valueOf)
-								.collect(java.util.stream.Collectors.joining(","))
-						+ ", cached connections: " + fgs.cachedConnections().size() + ")");
-			} else {
-				Print.debug(duration + "ms: Not computing NAMOA* paths from city " + city.id()
-						+ " - time limit reached");
+	/**
+	 * Computes the possible paths of every city towards its target cities in a
+	 * single NAMOAStar.findPathsForAll pass. When two cities desire each other the
+	 * pair is only searched from the lowest city id, as the reverse path would
+	 * bring the same rails.
+	 */
+	public Map<Integer, NAMOAPathsForCity> findNAMOAPathsForCities(GameState gs, boolean filterConnectedCities) {
+		City[] cities = gs.map().citiesById();
+
+		Print.debug(Print.Category.SEARCH, () -> gs.cachedConnections().stream().map(c -> c.fromId() + "-" + c.toId())
+				.collect(java.util.stream.Collectors.joining(", ")) + " cached connections before NAMOA*");
+
+		List<List<City>> targetsByCity = new ArrayList<>(cities.length);
+		for (City city : cities) {
+			targetsByCity.add(city != null ? findTargetCities(city, gs, filterConnectedCities) : null);
+		}
+
+		// Pairs still in the cache are not searched again
+		Map<Integer, NAMOAPathsForCity> namoaPathsForCityMap = new HashMap<>();
+		List<City> starts = new ArrayList<>();
+		List<List<City>> targetsPerStart = new ArrayList<>();
+		for (City city : cities) {
+			if (city == null || targetsByCity.get(city.id()).isEmpty()) {
+				continue;
+			}
+			List<City> targetCities = new ArrayList<>();
+			for (City target : targetsByCity.get(city.id())) {
+				boolean searchedFromTarget = target.id() < city.id() && targetsByCity.get(target.id()).contains(city);
+				if (searchedFromTarget) {
+					continue;
+				}
+				List<NAMOAPath> cachedPaths = pathCache.get(gs, city, target);
+				if (cachedPaths != null) {
+					namoaPathsForCityMap.computeIfAbsent(city.id(), id -> new NAMOAPathsForCity(city, new HashMap<>()))
+							.pathsToTargets().put(target.id(), cachedPaths);
+				} else {
+					targetCities.add(target);
+				}
+			}
+			if (!targetCities.isEmpty()) {
+				starts.add(city);
+				targetsPerStart.add(targetCities);
 			}
-			return null;
 		}
 
-		// I compute possible paths to those target cities
-		// Print.debug(duration + "ms: Computing NAMOA* paths from city " + city.id() +
-		// " to "
-		// + targetCities.stream().map(c -> Integer.toString(c.id()))
-		// .collect(java.util.stream.Collectors.joining(", ")));
+		int cacheSize = pathCache.size();
+		int cacheHits = pathCache.hits;
+		int cacheMisses = pathCache.misses;
+		Print.debug(Print.Category.SEARCH, () -> "Path cache: " + cacheSize + " entries, " + cacheHits + " hits, "
+				+ cacheMisses + " misses so far");
+		if (starts.isEmpty()) {
+			long duration = context.time.roundDuration();
+			Print.debug(Print.Category.SEARCH,
+					() -> duration + "ms: Not computing NAMOA* paths - no target cities to search");
+			return namoaPathsForCityMap;
+		}
 
-		Map<Integer, List<NAMOAPath>> possiblePathsMap = NAMOAStar.findPaths(gs, city, targetCities);
+		List<Map<Integer, List<NAMOAPath>>> possiblePaths = NAMOAStar.findPathsForAll(context, gs, starts,
+				targetsPerStart, gs.round() == 1);
 
-		if (GET_TOP_PATHS_COUNT > 0) {
-			// Print.debug(
-			// "Filtering to keep only the top " + GET_TOP_PATHS_COUNT + " paths per target
-			// city");
-			// filter out similar paths to keep only the non-dominated ones
+		for (int i = 0; i < starts.size(); i++) {
+			City start = starts.get(i);
+			Map<Integer, List<NAMOAPath>> possiblePathsMap = possiblePaths.get(i);
 			for (Entry<Integer, List<NAMOAPath>> entry : possiblePathsMap.entrySet()) {
-				Integer targetCityId = entry.getKey();
-				// I take the first path as is
-				List<NAMOAPath> possibleTopPaths = entry.getValue();
-				int nbTopPaths = Math.min(GET_TOP_PATHS_COUNT, possibleTopPaths.size());
-				possiblePathsMap.put(targetCityId, possibleTopPaths.subList(0, nbTopPaths));
+				if (topPathsCount() > 0) {
+					// filter out similar paths to keep only the non-dominated ones
+					// I take the first path as is
+					List<NAMOAPath> possibleTopPaths = entry.getValue();
+					int nbTopPaths = Math.min(topPathsCount(), possibleTopPaths.size());
+					entry.setValue(possibleTopPaths.subList(0, nbTopPaths));
+				}
+				pathCache.put(gs, start, cities[entry.getKey()], entry.getValue());
+			}
+			// I store them for later use
+			NAMOAPathsForCity cached = namoaPathsForCityMap.get(start.id());
+			if (cached != null) {
+				cached.pathsToTargets().putAll(possiblePathsMap);
+			} else {
+				namoaPathsForCityMap.put(start.id(), new NAMOAPathsForCity(start, possiblePathsMap));
 			}
 		}
-
-		// I store them for later use
-		return new NAMOAPathsForCity(city, possiblePathsMap);
+		return namoaPathsForCityMap;
 	}
 
 	class HeatMap {
@@ -1451,6 +5010,57 @@ class SimpleAI implements AI {
 		}
 	}
 
+	// Sets and lists of the rail placement, reused from one turn to the next: the
+	// cells and regions built this turn are generation stamps instead of hash sets
+	static class PlacementScratch {
+		final List<Coord> buildCoords = new ArrayList<>();
+		final List<Coord> missingCells = new ArrayList<>();
+		private int[] completed = new int[16];
+		private int[] builtGeneration = new int[0]; // by cell
+		private int[] regionGeneration = new int[0]; // by region
+		private int width;
+		private int generation;
+		private int regionsGeneration;
+
+		void reset(GameState gs) {
+			MapDefinition map = gs.map();
+			width = map.width();
+			if (builtGeneration.length < map.width() * map.height()) {
+				builtGeneration = new int[map.width() * map.height()];
+			}
+			if (regionGeneration.length < map.regions().length) {
+				regionGeneration = new int[map.regions().length];
+			}
+			generation++;
+			regionsGeneration++;
+		}
+
+		boolean isBuilt(Coord coord) {
+			return builtGeneration[coord.y() * width + coord.x()] == generation;
+		}
+
+		boolean isBuiltInRegion(int regionId) {
+			return regionGeneration[regionId] == regionsGeneration;
+		}
+
+		void markBuilt(Coord coord, int regionId) {
+			builtGeneration[coord.y() * width + coord.x()] = generation;
+			regionGeneration[regionId] = regionsGeneration;
+		}
+
+		// Forgets the regions built so far, not the cells
+		void clearRegions() {
+			regionsGeneration++;
+		}
+
+		int[] completedCounts(int count) {
+			if (completed.length < count) {
+				completed = new int[Math.max(count, completed.length * 2)];
+			}
+			return completed;
+		}
+	}
+
 	public GameState considerDisruptedRegionsWithInstability(GameState gs, int instabilityThreshold) {
 		GameState newGs = gs;
 		for (Region region : gs.map().regions()) {
@@ -1460,36 +5070,31 @@ class SimpleAI implements AI {
 			if (region.instability() >= instabilityThreshold) {
 				newGs = newGs.increaseInstability(region.id(),
 						MatchConstants.INSTABILITY_THRESHOLD);
-				Print.debug("Considering region " + region.id() + " as disrupted due to instability instable:" +
-						newGs.map().regions()[region.id()].isInstable());
+				boolean instable = newGs.map().regions()[region.id()].isInstable();
+				Print.debug(Print.Category.DISRUPT, () -> "Considering region " + region.id()
+						+ " as disrupted due to instability instable:" + instable);
 			}
 		}
 		return newGs;
 	}
 
 	public List<Action> computeBuildRailActions(GameState gs, boolean filterConnectedCities) {
-		Map<Integer, NAMOAPathsForCity> namoaPathsForCityMap = new HashMap<>();
-
 		gs = considerDisruptedRegionsWithInstability(gs, 2);
 
-		for (City city : gs.map().citiesById()) {
-			NAMOAPathsForCity namoaPathsForCity = findNAMOAPathsForCity(city, gs, filterConnectedCities);
-			if (namoaPathsForCity != null) {
-				// I store them for later use
-				namoaPathsForCityMap.put(city.id(), namoaPathsForCity);
-			}
-		}
+		Map<Integer, NAMOAPathsForCity> namoaPathsForCityMap = findNAMOAPathsForCities(gs, filterConnectedCities);
 
 		List<NAMOAPath> cheapestPaths = findSortedCheapestPaths(gs, namoaPathsForCityMap);
 
 		List<Action> railActions = new ArrayList<>();
 		if (cheapestPaths != null && !cheapestPaths.isEmpty()) {
+			long start = System.nanoTime();
 			railActions = buildRailsAlongPath(gs, cheapestPaths);
+			context.telemetry.record(Telemetry.Phase.RAIL_SELECTION, System.nanoTime() - start);
 			if (railActions.size() > 0) {
-				Player.nbBuild += railActions.size();
-				Print.debug("Built " + railActions.size() + " rails this turn");
+				int built = railActions.size();
+				Print.debug(Print.Category.BUILD, () -> "Built " + built + " rails this turn");
 			}
-			Time.debugDuration("Finished building rails along path");
+			context.time.debug("Finished building rails along path");
 		}
 
 		return railActions;
@@ -1498,16 +5103,26 @@ class SimpleAI implements AI {
 	@Override
 	public List<Action> compute(GameState gs) {
 		List<Action> result = new ArrayList<Action>();
+		turnActions = result;
 
-		Time.debugDuration("Starting SimpleAI compute");
+		context.time.debug("Starting SimpleAI compute");
 
+		network.update(gs, pendingChanges);
+		if (pendingChanges != null) {
+			pathCache.invalidate(pendingChanges, gs);
+			pendingChanges = null;
+		}
+
+		long disruptStart = System.nanoTime();
 		Action disruptAction = getDisruptAction(gs);
+		context.telemetry.record(Telemetry.Phase.DISRUPT, System.nanoTime() - disruptStart);
 		if (disruptAction != null) {
 			result.add(disruptAction);
 			gs = gs.increaseInstability(disruptAction.id(), 1);
+			context.publishAnswer(result);
 		}
 
-		Time.debugDuration("Starting NAMOA");
+		context.time.debug("Starting NAMOA");
 
 		boolean noBuildDetected = false;
 		List<Action> buildRailActions = computeBuildRailActions(gs, true);
@@ -1524,19 +5139,168 @@ class SimpleAI implements AI {
 		}
 
 		if (noBuildDetected) {
-			Player.nbNoBuild++;
 			Print.debug("No rails built this turn");
 		}
 
-		Time.debugDuration("Finished NAMOA");
+		context.time.debug("Finished NAMOA");
 
 		if (result.isEmpty()) {
 			result.add(Action.waitAction());
 		}
+		// The first turn still warms up after this
+		context.publishAnswer(result);
 
-		Time.debugDuration("Finished compute");
+		context.time.debug("Finished compute");
 
 		return result;
 	}
 
-}
\ No newline at end of file
+}
+
+/**
+ * First turn warm-up. The first answer may take 1 s and the next ones 50 ms, so
+ * the hot paths of a turn (disrupt scoring, NAMOA*, rail placement, the forward
+ * model) would run interpreted or C1-compiled during the first short turns.
+ * Plays synthetic turns from the first state instead, once the first answer
+ * is sent, with throwaway AIs sharing the search buffers of the match, until
+ * the JIT goes quiet, the budget of the first turn runs out or the input of
+ * the next turn arrives.
+ */
+class WarmUp {
+
+	// Synthetic turns played at least, then without any compilation to stop early
+	private static final int MIN_TURNS = 30;
+	private static final int QUIET_TURNS = 10;
+	// A synthetic game restarts from the first state after this many turns
+	private static final int GAME_TURNS = 40;
+
+	private final MatchContext context;
+	private final CompilationMXBean compiler; // null if compilation time isn't monitored
+	private final Random random = new Random(0);
+
+	int turns;
+	int games;
+	long durationNano;
+	long compilationMillis = -1; // JIT time during the warm-up, -1 if not monitored
+	boolean jitQuiet;
+	boolean interrupted; // by the next turn
+
+	WarmUp(MatchContext context) {
+		this.context = context;
+		CompilationMXBean bean = ManagementFactory.getCompilationMXBean();
+		this.compiler = bean != null && bean.isCompilationTimeMonitoringSupported() ? bean : null;
+	}
+
+	/**
+	 * Plays synthetic turns while a whole turn still fits in the first turn
+	 * budget, counted from the start of the current round. gs isn't modified and
+	 * the round timer is left as it was.
+	 */
+	void run(GameState gs) {
+		run(gs, () -> false);
+	}
+
+	// Same, stopping as soon as the next turn has arrived, even in the middle of
+	// a synthetic turn: its searches stop at their next time check
+	void run(GameState gs, BooleanSupplier nextTurnArrived) {
+		Time time = context.time;
+		long roundStart = time.roundStart();
+		long deadline = roundStart + Time.firstRoundBudgetNano();
+		long start = System.nanoTime();
+		long compilationStart = compilationMillis();
+		long lastCompilation = compilationStart;
+		int lastCompilationTurn = 0;
+
+		// Debug output of thousands of turns would cost more than the turns
+		Print.Level level = Print.level;
+		Print.level = Print.Level.OFF;
+		context.telemetry.paused = true;
+		// Synthetic answers aren't for the referee
+		Watchdog watchdog = context.watchdog;
+		context.watchdog = null;
+		boolean expired = time.isExpired();
+		time.interruptWhen(nextTurnArrived);
+		try {
+			SimpleAI ai = null;
+			GameState sim = null;
+			while (System.nanoTime() + Time.roundBudgetNano() < deadline) {
+				if (nextTurnArrived.getAsBoolean()) {
+					interrupted = true;
+					break;
+				}
+				if (sim == null || sim.round() > gs.round() + GAME_TURNS) {
+					ai = new SimpleAI(context);
+					// Past the first round, so that the searches get the time of a normal turn
+					sim = context.engine().apply(gs.copy(), List.of(Action.waitAction()), randomActions(gs), null);
+					games++;
+				}
+				time.startRound();
+				List<Action> mine = ai.compute(sim);
+				turns++;
+				if (time.isExpired()) {
+					interrupted = true;
+					break;
+				}
+				sim = context.engine().apply(sim, mine, randomActions(sim), null);
+
+				long compilation = compilationMillis();
+				if (compilation != lastCompilation) {
+					lastCompilation = compilation;
+					lastCompilationTurn = turns;
+				}
+				if (compiler != null && turns >= MIN_TURNS && turns - lastCompilationTurn >= QUIET_TURNS) {
+					jitQuiet = true;
+					break;
+				}
+			}
+		} finally {
+			Print.level = level;
+			context.telemetry.paused = false;
+			context.watchdog = watchdog;
+			time.interruptWhen(null);
+			time.resumeRound(roundStart);
+			if (expired) {
+				time.expire();
+			}
+		}
+		durationNano = System.nanoTime() - start;
+		if (compiler != null) {
+			compilationMillis = lastCompilation - compilationStart;
+		}
+	}
+
+	private long compilationMillis() {
+		return compiler == null ? -1 : compiler.getTotalCompilationTime();
+	}
+
+	// Opponent of the synthetic turns: a few affordable random rails, sometimes a DISRUPT
+	private List<Action> randomActions(GameState gs) {
+		List<Action> actions = new ArrayList<>();
+		MapDefinition map = gs.map();
+		int paint = MatchConstants.MAX_ACTIONS_PER_TURN;
+		for (int attempt = 0; attempt < 20 && paint > 0; attempt++) {
+			Coord coord = MatchConstants.coord(random.nextInt(map.width()), random.nextInt(map.height()));
+			int cost = map.buildCostAt(coord.x(), coord.y());
+			Action action = Action.buildRail(coord.x(), coord.y());
+			if (cost <= paint && gs.canBuildAt(coord) && !actions.contains(action)) {
+				actions.add(action);
+				paint -= cost;
+			}
+		}
+		if (random.nextInt(3) == 0) {
+			Region region = map.regions()[random.nextInt(map.regions().length)];
+			if (!region.hasCity() && !region.isInstable()) {
+				actions.add(Action.disruptRegion(region.id()));
+			}
+		}
+		return actions.isEmpty() ? List.of(Action.waitAction()) : actions;
+	}
+
+	@Override
+	public String toString() {
+		return "Warm-up: " + turns + " turns over " + games + " games in " + durationNano / 1_000_000 + " ms, JIT "
+				+ (compilationMillis < 0 ? "not monitored" : compilationMillis + " ms")
+				+ (jitQuiet ? ", stopped once quiet"
+						: interrupted ? ", stopped by the next turn" : ", stopped by the turn budget");
+	}
+}
@@ -0,0 +1,83 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Minimal micro-benchmark harness for the tests tagged "benchmark": runs the
+ * body a number of times to let the JIT settle, then measures each iteration
+ * and reports median / p90 / p99 / max. Debug output on stderr is muted while
+ * measuring as it would otherwise dominate the timings.
+ */
+public class Bench {
+
+	public record Result(String name, long[] sortedNanos) {
+
+		long percentile(double p) {
+			int index = (int) Math.ceil(p / 100.0 * sortedNanos.length) - 1;
+			return sortedNanos[Math.max(0, Math.min(sortedNanos.length - 1, index))];
+		}
+
+		long median() {
+			return percentile(50);
+		}
+
+		// Lower end of the 95% confidence interval of a percentile, from the order
+		// statistics (normal approximation of the binomial rank): above a threshold,
+		// the percentile is above it for real and not by noise
+		long percentileLowerBound(double p) {
+			int n = sortedNanos.length;
+			double q = p / 100.0;
+			int index = (int) Math.floor(n * q - 1.96 * Math.sqrt(n * q * (1 - q))) - 1;
+			return sortedNanos[Math.max(0, Math.min(n - 1, index))];
+		}
+
+		double opsPerSecond() {
+			return 1_000_000_000.0 / Math.max(1, median());
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-45s median %9.1f us  p90 %9.1f us  p99 %9.1f us  max %9.1f us  (%,.0f ops/s)",
+					name, median() / 1000.0, percentile(90) / 1000.0, percentile(99) / 1000.0,
+					sortedNanos[sortedNanos.length - 1] / 1000.0, opsPerSecond());
+		}
+	}
+
+	// Warm-up by time rather than by iterations: C2 needs about a second of a
+	// fast body, a few hundred iterations of it are still interpreted or in C1
+	public static Result runAfterWarmup(String name, long warmupMillis, int measuredIterations, Runnable body) {
+		PrintStream err = System.err;
+		System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+		try {
+			long end = System.nanoTime() + warmupMillis * 1_000_000;
+			while (System.nanoTime() < end) {
+				body.run();
+			}
+		} finally {
+			System.setErr(err);
+		}
+		return run(name, 0, measuredIterations, body);
+	}
+
+	public static Result run(String name, int warmupIterations, int measuredIterations, Runnable body) {
+		PrintStream err = System.err;
+		System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+		long[] nanos = new long[measuredIterations];
+		try {
+			for (int i = 0; i < warmupIterations; i++) {
+				body.run();
+			}
+			for (int i = 0; i < measuredIterations; i++) {
+				long start = System.nanoTime();
+				body.run();
+				nanos[i] = System.nanoTime() - start;
+			}
+		} finally {
+			System.setErr(err);
+		}
+		Arrays.sort(nanos);
+		Result result = new Result(name, nanos);
+		System.out.println(result);
+		return result;
+	}
+}
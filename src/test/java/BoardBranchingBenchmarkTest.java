@@ -0,0 +1,82 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Nodes per second of a fixed-depth placement search, branching with
+ * GameState.withRails (one board copy per node) versus in-place
+ * applyRail / undo through a MoveLog.
+ */
+@Tag("benchmark")
+public class BoardBranchingBenchmarkTest {
+
+	private static final int DEPTH = 4;
+	private static final int BRANCHING = 8;
+
+	@Test
+	public void benchmarkPlacementSearch() {
+		MatchConstants.width = 30;
+		MatchConstants.height = 20;
+		MatchConstants.initCoords(30, 20);
+		Map<Integer, City> cities = new HashMap<>();
+		cities.put(0, new City(0, 2, 2, 0, List.of(1)));
+		cities.put(1, new City(1, 27, 17, 0, List.of()));
+		GameState gs = NAMOAStarTest.createGameStateWithCitiesAndTerrain(cities, Map.of(), TerrainType.PLAIN);
+
+		List<Coord> candidates = new ArrayList<>();
+		for (int i = 0; i < BRANCHING; i++) {
+			candidates.add(MatchConstants.coord(3 + i, 2));
+		}
+
+		long[] copyNodes = new long[1];
+		Bench.Result copy = Bench.run("withRails copy per node, depth " + DEPTH, 20, 50,
+				() -> copyNodes[0] = searchWithCopies(gs, candidates, DEPTH));
+
+		GameState simulation = gs.copy();
+		MoveLog log = new MoveLog();
+		long[] undoNodes = new long[1];
+		Bench.Result undo = Bench.run("applyRail/undo per node, depth " + DEPTH, 20, 50,
+				() -> undoNodes[0] = searchWithUndo(simulation, log, candidates, DEPTH));
+
+		assertEquals(copyNodes[0], undoNodes[0]);
+		System.out.printf("nodes per search: %d, copy: %,.0f nodes/s, undo: %,.0f nodes/s%n", copyNodes[0],
+				copyNodes[0] * copy.opsPerSecond(), undoNodes[0] * undo.opsPerSecond());
+	}
+
+	private long searchWithCopies(GameState gs, List<Coord> candidates, int depth) {
+		if (depth == 0) {
+			return 1;
+		}
+		long nodes = 1;
+		for (Coord c : candidates) {
+			if (gs.rails().hasRail(c.x(), c.y())) {
+				continue;
+			}
+			nodes += searchWithCopies(gs.withRails(List.of(c), RailOwner.ME), candidates, depth - 1);
+		}
+		return nodes;
+	}
+
+	private long searchWithUndo(GameState gs, MoveLog log, List<Coord> candidates, int depth) {
+		if (depth == 0) {
+			return 1;
+		}
+		long nodes = 1;
+		for (Coord c : candidates) {
+			if (gs.rails().hasRail(c.x(), c.y())) {
+				continue;
+			}
+			int mark = log.mark();
+			gs.applyRail(c.x(), c.y(), RailOwner.ME, log);
+			nodes += searchWithUndo(gs, log, candidates, depth - 1);
+			gs.undo(log, mark);
+		}
+		return nodes;
+	}
+}
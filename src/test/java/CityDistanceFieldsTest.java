@@ -0,0 +1,176 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CityDistanceFieldsTest {
+
+	@BeforeEach
+	public void setUp() {
+		MatchConstants.width = 30;
+		MatchConstants.height = 20;
+		MatchConstants.initCoords(30, 20);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		MatchConstants.distanceFields = null;
+	}
+
+	@Test
+	public void testFieldsMatchReferenceOnRandomMaps() {
+		Random random = new Random(11);
+		for (int round = 0; round < 10; round++) {
+			GameState gs = NAMOASearchContextTest.randomGameState(random, 30, 20, 8);
+			assertSameAsReference(gs, new CityDistanceFields(gs), "random map #" + round);
+		}
+	}
+
+	@Test
+	public void testNewRailsLowerTheCostsIncrementally() {
+		Random random = new Random(12);
+		GameState gs = NAMOASearchContextTest.randomGameState(random, 30, 20, 8);
+		CityDistanceFields fields = new CityDistanceFields(gs);
+		for (int turn = 0; turn < 5; turn++) {
+			RailBoard rails = gs.rails().copy();
+			for (int i = 0; i < 12; i++) {
+				int x = random.nextInt(30);
+				int y = random.nextInt(20);
+				if (gs.map().cityAt(x, y) == null && !rails.hasRail(x, y)) {
+					rails.put(x, y, RailOwner.OPPONENT);
+				}
+			}
+			gs = new GameState(gs.round(), gs.map(), rails, 0, 0, gs.cachedConnections());
+
+			assertFalse(fields.update(gs));
+			assertSameAsReference(gs, fields, "turn #" + turn);
+		}
+	}
+
+	@Test
+	public void testCollapsedRegionIsRecomputed() {
+		Map<Integer, City> cities = Map.of(
+				0, new City(0, 0, 0, 0, List.of(1)),
+				1, new City(1, 4, 0, 0, List.of()));
+		TerrainType[][] terrain = new TerrainType[5][3];
+		for (TerrainType[] column : terrain) {
+			java.util.Arrays.fill(column, TerrainType.PLAIN);
+		}
+		GameState gs = NAMOAStarTest.createGameStateWithCitiesAndTerrain(cities, Map.of(), terrain);
+		CityDistanceFields fields = new CityDistanceFields(gs);
+		assertEquals(4, fields.hopsTo(1, 0));
+		assertEquals(3, fields.buildCostTo(1, 0));
+
+		gs = gs.increaseInstability(0, MatchConstants.INSTABILITY_THRESHOLD);
+
+		assertTrue(fields.update(gs));
+		assertEquals(CityDistanceFields.UNREACHABLE, fields.hopsTo(1, 0));
+		assertEquals(CityDistanceFields.UNREACHABLE, fields.buildCostTo(1, 2));
+		assertEquals(0, fields.hopsTo(1, 4));
+	}
+
+	@Test
+	public void testSearchWithFieldsFindsShortestAndCheapestPath() {
+		Random random = new Random(13);
+		for (int round = 0; round < 20; round++) {
+			GameState gs = NAMOASearchContextTest.randomGameState(random, 30, 20, 8);
+			MatchConstants.distanceFields = new CityDistanceFields(gs);
+			City start = gs.map().cityById(0);
+			City target = gs.map().cityById(7);
+
+			List<NAMOAPath> paths = NAMOAStar.findPaths(gs, start, List.of(target)).get(target.id());
+
+			// The heuristic is consistent: the first path found minimizes distance + build cost
+			assertFalse(paths.isEmpty());
+			int best = paths.stream().mapToInt(p -> p.cost().distance() + p.cost().buildCost()).min().getAsInt();
+			assertEquals(referenceField(gs, target, 1, 1)[start.y() * 30 + start.x()], best, "random map #" + round);
+		}
+	}
+
+	@Test
+	public void testSearchOnStateWithMoreRailsFallsBackToManhattan() {
+		Random random = new Random(14);
+		for (int round = 0; round < 20; round++) {
+			GameState gs = NAMOASearchContextTest.randomGameState(random, 30, 20, 8);
+			CityDistanceFields fields = new CityDistanceFields(gs);
+			MatchConstants.distanceFields = fields;
+			City start = gs.map().cityById(0);
+			City target = gs.map().cityById(7);
+			// Rails the fields don't know of, as in a simulated state
+			RailBoard rails = gs.rails().copy();
+			for (int i = 0; i < 150; i++) {
+				int x = random.nextInt(30);
+				int y = random.nextInt(20);
+				if (gs.map().cityAt(x, y) == null && !rails.hasRail(x, y)) {
+					rails.put(x, y, RailOwner.OPPONENT);
+				}
+			}
+			GameState simulated = new GameState(gs.round(), gs.map(), rails, 0, 0, gs.cachedConnections());
+			assertTrue(fields.covers(gs));
+			assertFalse(fields.covers(simulated));
+
+			List<NAMOAPath> paths = NAMOAStar.findPaths(simulated, start, List.of(target)).get(target.id());
+
+			// The fields would overestimate along the new rails: same search as without them
+			MatchConstants.distanceFields = null;
+			List<NAMOAPath> manhattan = NAMOAStar.findPaths(simulated, start, List.of(target)).get(target.id());
+			assertEquals(costs(manhattan), costs(paths), "random map #" + round);
+		}
+	}
+
+	private static List<String> costs(List<NAMOAPath> paths) {
+		return paths.stream().map(p -> p.cost().distance() + "/" + p.cost().buildCost()).toList();
+	}
+
+	private static void assertSameAsReference(GameState gs, CityDistanceFields fields, String message) {
+		int width = gs.map().width();
+		for (City city : gs.map().citiesById()) {
+			int[] hops = referenceField(gs, city, 1, 0);
+			int[] costs = referenceField(gs, city, 0, 1);
+			for (int cell = 0; cell < width * gs.map().height(); cell++) {
+				assertEquals(hops[cell], fields.hopsTo(city.id(), cell), message + " hops to " + city.id());
+				assertEquals(costs[cell], fields.buildCostTo(city.id(), cell), message + " cost to " + city.id());
+			}
+		}
+	}
+
+	// Bellman-Ford over the whole grid, independent from the propagation under
+	// test. Each step weighs hopWeight + costWeight * cost to enter the cell.
+	private static int[] referenceField(GameState gs, City city, int hopWeight, int costWeight) {
+		int width = gs.map().width();
+		int height = gs.map().height();
+		int[] field = new int[width * height];
+		java.util.Arrays.fill(field, CityDistanceFields.UNREACHABLE);
+		field[city.y() * width + city.x()] = 0;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int cell = 0; cell < width * height; cell++) {
+				int x = cell % width;
+				int y = cell / width;
+				if (!gs.canTraverse(x, y)) {
+					continue;
+				}
+				int[][] neighbors = { { x, y - 1 }, { x + 1, y }, { x, y + 1 }, { x - 1, y } };
+				for (int[] n : neighbors) {
+					if (n[0] < 0 || n[0] >= width || n[1] < 0 || n[1] >= height) {
+						continue;
+					}
+					int next = n[1] * width + n[0];
+					int enterCost = gs.rails().hasRail(n[0], n[1]) || gs.map().cityAt(n[0], n[1]) != null ? 0
+							: gs.map().buildCostAt(n[0], n[1]);
+					if (field[next] + hopWeight + costWeight * enterCost < field[cell]) {
+						field[cell] = field[next] + hopWeight + costWeight * enterCost;
+						changed = true;
+					}
+				}
+			}
+		}
+		return field;
+	}
+}
@@ -0,0 +1,107 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ConnectionSetTest {
+
+	@BeforeEach
+	public void setUp() {
+		MatchConstants.initConnections(12);
+	}
+
+	@Test
+	public void testIdsAreDenseAndIndependentOfOrder() {
+		Set<Integer> ids = new HashSet<>();
+		for (int b = 1; b < 12; b++) {
+			for (int a = 0; a < b; a++) {
+				assertEquals(Connection.id(a, b), Connection.id(b, a));
+				ids.add(Connection.id(a, b));
+				assertEquals(new Connection(b, a), MatchConstants.connectionById(Connection.id(a, b)));
+			}
+		}
+		assertEquals(Connection.idCount(12), ids.size());
+		assertEquals(Connection.idCount(12) - 1, ids.stream().mapToInt(Integer::intValue).max().getAsInt());
+		assertNull(MatchConstants.connection(3, 3));
+		assertNull(MatchConstants.connection(3, 12));
+	}
+
+	@Test
+	public void testConnectionsBeyondTheMatchAreDecoded() {
+		MatchConstants.initConnections(2);
+		for (int b = 1; b < 40; b++) {
+			for (int a = 0; a < b; a++) {
+				Connection connection = MatchConstants.connectionById(Connection.id(a, b));
+				assertEquals(a, connection.fromId());
+				assertEquals(b, connection.toId());
+			}
+		}
+	}
+
+	@Test
+	public void testEqualityIsUnordered() {
+		assertEquals(new Connection(1, 2), new Connection(2, 1));
+		assertEquals(new Connection(1, 2).hashCode(), new Connection(2, 1).hashCode());
+		assertNotEquals(new Connection(0, 0), new Connection(0, 1));
+		assertEquals(0, new Connection(2, 1).compareTo(new Connection(1, 2)));
+	}
+
+	@Test
+	public void testSetOperations() {
+		ConnectionSet set = new ConnectionSet(List.of(new Connection(0, 1), new Connection(5, 11), new Connection(2, 3)));
+		ConnectionSet other = new ConnectionSet(List.of(new Connection(1, 0), new Connection(10, 11)));
+
+		assertEquals(3, set.size());
+		assertTrue(set.contains(new Connection(11, 5)));
+		assertFalse(set.contains(new Connection(10, 11)));
+		assertFalse(set.contains("0-1"));
+
+		ConnectionSet union = new ConnectionSet(set);
+		assertTrue(union.addAll(other));
+		assertEquals(4, union.size());
+		assertTrue(union.containsAll(set));
+		assertTrue(union.containsAll(other));
+
+		ConnectionSet difference = new ConnectionSet(set);
+		assertTrue(difference.removeAll(other));
+		assertEquals(Set.of(new Connection(5, 11), new Connection(2, 3)), difference);
+
+		ConnectionSet intersection = new ConnectionSet(set);
+		assertTrue(intersection.retainAll(other));
+		assertEquals(Set.of(new Connection(0, 1)), intersection);
+		assertFalse(intersection.addAll(Set.of(new Connection(0, 1))));
+	}
+
+	@Test
+	public void testEqualsAndHashCodeMatchOtherSets() {
+		Set<Connection> hashSet = new HashSet<>(List.of(new Connection(3, 4), new Connection(0, 7)));
+		ConnectionSet set = new ConnectionSet(hashSet);
+
+		assertEquals(hashSet, set);
+		assertEquals(set, hashSet);
+		assertEquals(hashSet.hashCode(), set.hashCode());
+		assertEquals(new ConnectionSet(hashSet), set);
+	}
+
+	@Test
+	public void testIterationInIdOrderWithRemoval() {
+		ConnectionSet set = new ConnectionSet(List.of(new Connection(10, 11), new Connection(0, 1), new Connection(0, 2)));
+
+		Iterator<Connection> iterator = set.iterator();
+		assertEquals(new Connection(0, 1), iterator.next());
+		iterator.remove();
+		assertEquals(new Connection(0, 2), iterator.next());
+		assertEquals(new Connection(10, 11), iterator.next());
+		assertFalse(iterator.hasNext());
+
+		assertEquals(2, set.size());
+		assertEquals(Connection.id(0, 2), set.nextId(0));
+		assertEquals(Connection.id(10, 11), set.nextId(Connection.id(0, 2) + 1));
+		assertEquals(-1, set.nextId(Connection.id(10, 11) + 1));
+	}
+}
@@ -0,0 +1,33 @@
+import java.io.ByteArrayInputStream;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Disrupt scoring with the per-turn DisruptIndex, compared with the former
+ * connections x rails scans (LegacyDisrupt).
+ */
+@Tag("benchmark")
+public class DisruptBenchmarkTest {
+
+	private static final int WARMUP = 2000;
+	private static final int MEASURED = 2000;
+
+	@Test
+	public void benchmarkManyActiveConnections() {
+		// 12 towns, half of the cells railed, each rail on 3 of the 66 possible connections
+		String input = MatchInputs.initInput(0, 30, 20, 12, 42L) + MatchInputs.turnInput(30, 20, 12, 0.5, 3, 43L);
+		InputReader in = new InputReader(new ByteArrayInputStream(input.getBytes()));
+		Player.initMatch(in);
+		GameState gs = Player.initRound(in);
+		System.out.println(gs.cachedConnections().size() + " active connections");
+
+		SimpleAI ai = new SimpleAI();
+		Bench.run("legacy disrupt scoring", WARMUP, MEASURED, () -> LegacyDisrupt.getDisruptAction(gs));
+		Bench.run("indexed disrupt scoring", WARMUP, MEASURED, () -> ai.getDisruptAction(gs));
+		Bench.run("indexed disrupt scoring incl. index build", WARMUP, MEASURED, () -> {
+			MatchContext.STATIC.buildDisruptIndex(gs);
+			ai.getDisruptAction(gs);
+		});
+	}
+}
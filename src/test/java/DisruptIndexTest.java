@@ -0,0 +1,91 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class DisruptIndexTest {
+
+	private static GameState parsedState(int townCount, double railRatio, int connectionsPerRail, long seed) {
+		String input = MatchInputs.initInput(0, 30, 20, townCount, seed)
+				+ MatchInputs.turnInput(30, 20, townCount, railRatio, connectionsPerRail, seed + 1);
+		InputReader in = new InputReader(new ByteArrayInputStream(input.getBytes()));
+		Player.initMatch(in);
+		return Player.initRound(in);
+	}
+
+	@Test
+	public void testSameDisruptAsLegacyScoring() {
+		for (long seed = 0; seed < 30; seed++) {
+			GameState gs = parsedState(4 + (int) (seed % 9), 0.1 + (seed % 5) * 0.1, 1 + (int) (seed % 3), seed);
+
+			assertEquals(LegacyDisrupt.getDisruptAction(gs), new SimpleAI().getDisruptAction(gs), "seed " + seed);
+		}
+	}
+
+	@Test
+	public void testIndexCountsOwnersPerConnectionAndRegion() {
+		GameState gs = parsedState(6, 0.5, 2, 3L);
+		DisruptIndex index = MatchContext.STATIC.disruptIndex(gs);
+
+		for (Connection connection : gs.cachedConnections()) {
+			int worth = 0;
+			for (int cell = 0; cell < gs.rails().cellCount(); cell++) {
+				if (gs.rails().connectionsAt(cell).contains(connection)) {
+					RailOwner owner = gs.rails().ownerAt(cell);
+					worth += owner == RailOwner.ME ? 1 : owner == RailOwner.OPPONENT ? -1 : 0;
+				}
+			}
+			assertEquals(worth, index.connectionWorth(connection));
+		}
+		for (Region region : gs.map().regions()) {
+			int balance = 0;
+			for (Tile tile : region.cells()) {
+				RailOwner owner = gs.rails().ownerAt(tile.x(), tile.y());
+				balance += owner == RailOwner.ME ? 1 : owner == RailOwner.OPPONENT ? -1 : 0;
+			}
+			assertEquals(balance, index.regionBalance(region.id()));
+		}
+	}
+
+	@Test
+	public void testIndexIsRebuiltWhenTheBoardChanges() {
+		GameState gs = parsedState(6, 0.2, 1, 4L);
+		DisruptIndex parsed = MatchContext.STATIC.disruptIndex(gs);
+		assertSame(parsed, MatchContext.STATIC.disruptIndex(gs));
+
+		int cell = 0;
+		while (gs.rails().hasRail(cell) || gs.map().cityAt(gs.rails().xOf(cell), gs.rails().yOf(cell)) != null) {
+			cell++;
+		}
+		int regionId = gs.map().regionIdAt(gs.rails().xOf(cell), gs.rails().yOf(cell));
+		int balance = parsed.regionBalance(regionId);
+		gs.applyRail(gs.rails().xOf(cell), gs.rails().yOf(cell), RailOwner.OPPONENT, new MoveLog());
+
+		DisruptIndex rebuilt = MatchContext.STATIC.disruptIndex(gs);
+		assertNotSame(parsed, rebuilt);
+		assertEquals(balance - 1, rebuilt.regionBalance(regionId));
+		assertEquals(balance - 1, MatchContext.STATIC.disruptIndex(gs.withRails(List.of(), RailOwner.ME)).regionBalance(regionId));
+	}
+
+	@Test
+	public void testEachMatchKeepsTheIndexOfItsOwnBoard() {
+		MatchContext[] contexts = new MatchContext[2];
+		GameState[] states = new GameState[2];
+		for (int match = 0; match < 2; match++) {
+			String input = MatchInputs.initInput(0, 30, 20, 6, match)
+					+ MatchInputs.turnInput(30, 20, 6, 0.3, 2, match + 10);
+			InputReader in = new InputReader(new ByteArrayInputStream(input.getBytes()));
+			contexts[match] = new MatchContext();
+			contexts[match].initMatch(in);
+			states[match] = contexts[match].initRound(in);
+		}
+
+		DisruptIndex first = contexts[0].disruptIndex(states[0]);
+		contexts[1].disruptIndex(states[1]);
+		assertSame(first, contexts[0].disruptIndex(states[0]));
+		assertEquals(new SimpleAI(contexts[0]).getDisruptAction(states[0]),
+				LegacyDisrupt.getDisruptAction(states[0]));
+	}
+}
@@ -156,7 +156,7 @@ public class DisruptLogicTest {
         for (RailSpec spec : railSpecs) {
             Rail rail = new Rail(spec.x(), spec.y(), spec.owner());
             if (!spec.connections().isEmpty()) {
-                rail.partOfActiveConnections = new ArrayList<>(spec.connections());
+                rail.partOfActiveConnections = new HashSet<>(spec.connections());
             }
             rails.put(MatchConstants.coord(spec.x(), spec.y()), rail);
         }
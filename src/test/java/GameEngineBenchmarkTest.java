@@ -0,0 +1,68 @@
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Turn applications per second of the forward model on a mid-game 24x12
+ * board: in place with undo through a MoveLog, versus on a copy per turn.
+ */
+@Tag("benchmark")
+public class GameEngineBenchmarkTest {
+
+	private static final int TURNS = 1000;
+
+	@Test
+	public void benchmarkApply() {
+		RailReferee referee = new RailReferee(MatchInputs.initInput(0, 24, 12, 8, 3));
+		Player.initMatch(RailReferee.reader(referee.getInitInputForPlayer(0)));
+		GameEngine engine = new GameEngine();
+
+		// Mid-game: some connections built by both sides
+		GameState gs = referee.getStateForPlayer(0).copy();
+		City[] cities = gs.map().citiesById();
+		for (int turn = 0; turn < 12; turn++) {
+			City from = cities[turn % cities.length];
+			City to = cities[from.desiredCityIds().isEmpty() ? (turn + 1) % cities.length : from.desiredCityIds().get(0)];
+			City other = cities[(turn + 3) % cities.length];
+			gs = engine.apply(gs, List.of(Action.autoPlace(from.x(), from.y(), to.x(), to.y())),
+					List.of(Action.autoPlace(other.x(), other.y(), to.x(), to.y())), null);
+		}
+		assertTrue(!gs.cachedConnections().isEmpty());
+
+		// Random turns of placements and disrupts
+		Random random = new Random(1);
+		List<List<Action>> turns = new ArrayList<>();
+		for (int i = 0; i < 2 * TURNS; i++) {
+			List<Action> actions = new ArrayList<>();
+			for (int j = 0; j < 3; j++) {
+				actions.add(Action.buildRail(random.nextInt(24), random.nextInt(12)));
+			}
+			if (random.nextInt(3) == 0) {
+				actions.add(Action.disruptRegion(random.nextInt(gs.map().regions().length)));
+			}
+			turns.add(actions);
+		}
+
+		GameState start = gs;
+		MoveLog log = new MoveLog();
+		Bench.Result inPlace = Bench.run("apply + undo", 50, 200, () -> {
+			for (int i = 0; i < TURNS; i++) {
+				int mark = log.mark();
+				engine.apply(start, turns.get(2 * i), turns.get(2 * i + 1), log);
+				start.undo(log, mark);
+			}
+		});
+		Bench.Result copy = Bench.run("copy + apply", 50, 200, () -> {
+			for (int i = 0; i < TURNS; i++) {
+				engine.apply(start.copy(), turns.get(2 * i), turns.get(2 * i + 1), null);
+			}
+		});
+		System.out.printf("applications/s in place: %,.0f, on a copy: %,.0f%n", TURNS * inPlace.opsPerSecond(),
+				TURNS * copy.opsPerSecond());
+	}
+}
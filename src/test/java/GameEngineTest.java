@@ -0,0 +1,182 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class GameEngineTest {
+
+	private final GameEngine engine = new GameEngine();
+
+	@Test
+	public void testPlacementsContestsAndScores() {
+		GameState gs = new RailReferee(RailReferee.LINE_MAP).initialState();
+
+		gs = engine.apply(gs, RailReferee.parseOutput("PLACE_TRACKS 1 0"),
+				RailReferee.parseOutput("PLACE_TRACKS 1 0;PLACE_TRACKS 2 0"), null);
+
+		assertEquals(RailOwner.CONTESTED, gs.ownerAt(new Coord(1, 0)));
+		assertEquals(RailOwner.OPPONENT, gs.ownerAt(new Coord(2, 0)));
+		assertTrue(engine.completed.isEmpty());
+
+		gs = engine.apply(gs, RailReferee.parseOutput("PLACE_TRACKS 3 0"), List.of(), null);
+		assertEquals(RailOwner.ME, gs.ownerAt(new Coord(3, 0)));
+		Connection connection = MatchConstants.connection(0, 1);
+		assertEquals(List.of(connection), List.copyOf(engine.completed));
+		assertTrue(gs.rails().connectionsAt(1).contains(connection));
+		assertEquals(1, gs.myScore());
+		assertEquals(1, gs.opponentScore());
+
+		gs = engine.apply(gs, List.of(Action.disruptRegion(2)), List.of(), null);
+		assertTrue(engine.completed.isEmpty());
+		assertEquals(2, gs.myScore());
+	}
+
+	@Test
+	public void testInkingWipesTheRegionAndBreaksTheConnection() {
+		GameState gs = new RailReferee(RailReferee.LINE_MAP).initialState();
+		gs = engine.apply(gs, RailReferee.parseOutput("AUTOPLACE 0 0 4 0"), List.of(), null);
+		gs = engine.apply(gs, RailReferee.parseOutput("AUTOPLACE 0 0 4 0"), List.of(), null);
+		assertEquals(1, gs.cachedConnections().size());
+
+		for (int i = 0; i < MatchConstants.INSTABILITY_THRESHOLD / 2; i++) {
+			gs = engine.apply(gs, List.of(Action.disruptRegion(1), Action.disruptRegion(1)),
+					List.of(Action.disruptRegion(1)), null);
+		}
+
+		assertTrue(gs.map().regions()[1].isInstable());
+		assertFalse(gs.rails().hasRail(1, 0));
+		assertFalse(gs.rails().hasRail(2, 0));
+		assertTrue(gs.cachedConnections().isEmpty());
+		assertEquals(List.of(MatchConstants.connection(0, 1)), List.copyOf(engine.lost));
+		assertTrue(gs.rails().connectionsAt(3).isEmpty());
+	}
+
+	@Test
+	public void testMatchesTheRefereeOnRandomTurns() {
+		for (long seed = 1; seed <= 5; seed++) {
+			RailReferee referee = new RailReferee(MatchInputs.initInput(0, 16, 8, 6, seed));
+			GameState gs = referee.initialState();
+			Random random = new Random(seed);
+			for (int turn = 0; turn < 60; turn++) {
+				List<Action> mine = randomActions(referee, gs, random);
+				List<Action> opponent = randomActions(referee, gs, random);
+				referee.updateGame(mine, opponent);
+				gs = engine.apply(gs, mine, opponent, null);
+
+				assertSameState(referee, gs);
+			}
+		}
+	}
+
+	@Test
+	public void testOnlyTheFirstAutoplaceIsPlayedAsByTheReferee() {
+		RailReferee referee = new RailReferee(RailReferee.LINE_MAP);
+		GameState gs = referee.initialState();
+		// The second one could be paid with the paint left
+		List<Action> mine = RailReferee.parseOutput("AUTOPLACE 0 0 1 0;AUTOPLACE 1 0 2 0;DISRUPT 3 0");
+		referee.updateGame(mine, List.of());
+		gs = engine.apply(gs, mine, List.of(), null);
+
+		assertSameState(referee, gs);
+		assertEquals(RailOwner.ME, gs.ownerAt(new Coord(1, 0)));
+		assertEquals(RailOwner.NONE, gs.ownerAt(new Coord(2, 0)));
+		assertEquals(1, gs.map().regions()[2].instability());
+	}
+
+	@Test
+	public void testUndoRestoresTheState() {
+		RailReferee referee = new RailReferee(MatchInputs.initInput(0, 16, 8, 6, 7));
+		GameState gs = referee.initialState();
+		Random random = new Random(7);
+		MoveLog log = new MoveLog();
+		List<GameState> states = new ArrayList<>();
+		List<String> snapshots = new ArrayList<>();
+		List<Integer> marks = new ArrayList<>();
+		for (int turn = 0; turn < 40; turn++) {
+			states.add(gs);
+			snapshots.add(snapshot(gs));
+			marks.add(log.mark());
+			gs = engine.apply(gs, randomActions(referee, gs, random), randomActions(referee, gs, random), log);
+		}
+		for (int turn = states.size() - 1; turn >= 0; turn--) {
+			gs.undo(log, marks.get(turn));
+			assertEquals(snapshots.get(turn), snapshot(states.get(turn)), "turn " + turn);
+		}
+	}
+
+	@Test
+	public void testCopyModeLeavesTheStateIntact() {
+		RailReferee referee = new RailReferee(RailReferee.LINE_MAP);
+		GameState gs = referee.initialState();
+		String before = snapshot(gs);
+
+		GameState next = GameEngine.applyActionWithCopy(gs, RailReferee.parseOutput("AUTOPLACE 0 0 4 0;DISRUPT 1"),
+				List.of(Action.disruptRegion(1)));
+
+		assertEquals(before, snapshot(gs));
+		assertEquals(gs.round() + 1, next.round());
+		assertTrue(next.rails().hasRail(1, 0));
+		assertEquals(2, next.map().regions()[1].instability());
+	}
+
+	private static List<Action> randomActions(RailReferee referee, GameState gs, Random random) {
+		List<Action> actions = new ArrayList<>();
+		City[] cities = gs.map().citiesById();
+		if (random.nextInt(3) == 0) {
+			City from = cities[random.nextInt(cities.length)];
+			City to = cities[random.nextInt(cities.length)];
+			actions.add(Action.autoPlace(from.x(), from.y(), to.x(), to.y()));
+		}
+		if (random.nextInt(5) == 0) {
+			// Ignored after the first one
+			City from = cities[random.nextInt(cities.length)];
+			actions.add(Action.autoPlace(from.x(), from.y(), random.nextInt(referee.width),
+					random.nextInt(referee.height)));
+		}
+		for (int i = random.nextInt(4); i > 0; i--) {
+			actions.add(new Action(ActionType.PLACE_TRACKS,
+					new Coord(random.nextInt(referee.width), random.nextInt(referee.height)), null, -1));
+		}
+		if (random.nextInt(4) == 0) {
+			actions.add(Action.disruptRegion(random.nextInt(gs.map().regions().length)));
+		} else if (random.nextInt(4) == 0) {
+			actions.add(RailReferee.parseOutput("DISRUPT " + random.nextInt(referee.width) + " "
+					+ random.nextInt(referee.height)).get(0));
+		}
+		return actions;
+	}
+
+	private static void assertSameState(RailReferee referee, GameState gs) {
+		for (int y = 0; y < referee.height; y++) {
+			for (int x = 0; x < referee.width; x++) {
+				int owner = referee.ownerAt(x, y);
+				RailOwner expected = owner < 0 ? RailOwner.NONE
+						: owner == RailReferee.NEUTRAL ? RailOwner.CONTESTED : owner == 0 ? RailOwner.ME : RailOwner.OPPONENT;
+				assertEquals(expected, gs.rails().ownerAt(x, y), x + " " + y);
+				assertEquals(referee.connectionsAt(x, y), gs.rails().connectionsAt(gs.rails().index(x, y)));
+			}
+		}
+		for (Region region : gs.map().regions()) {
+			assertEquals(referee.isInked(region.id()), region.isInstable());
+			assertEquals(referee.instabilityOf(region.id()), region.instability());
+		}
+		assertEquals(referee.activeConnections(), gs.cachedConnections());
+		assertEquals(referee.getScore(0), gs.myScore());
+		assertEquals(referee.getScore(1), gs.opponentScore());
+	}
+
+	private static String snapshot(GameState gs) {
+		StringBuilder sb = new StringBuilder();
+		RailBoard rails = gs.rails();
+		for (int cell = 0; cell < rails.cellCount(); cell++) {
+			sb.append(rails.ownerAt(cell)).append(rails.connectionsAt(cell)).append(' ');
+		}
+		for (Region region : gs.map().regions()) {
+			sb.append(region.instability()).append(' ');
+		}
+		return sb.append(gs.cachedConnections()).append(gs.rails().size()).toString();
+	}
+}
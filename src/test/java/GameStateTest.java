@@ -42,4 +42,107 @@ public class GameStateTest {
         Coord free = MatchConstants.coord(1, 1);
         assertTrue(gs.canBuildAt(free), "canBuildAt should still allow building on empty coords in stable regions");
     }
+
+    @Test
+    void withRailsCopiesTheBoardAndResolvesConflicts() {
+        MatchConstants.width = 3;
+        MatchConstants.height = 2;
+        MatchConstants.initCoords(3, 2);
+        GameState gs = GameState.createInitial(3, 2);
+
+        GameState mine = gs.withRails(List.of(MatchConstants.coord(1, 0), MatchConstants.coord(2, 1)), RailOwner.ME);
+        GameState both = mine.withRails(List.of(MatchConstants.coord(1, 0)), RailOwner.OPPONENT);
+
+        assertTrue(gs.rails().isEmpty(), "Original board must stay untouched");
+        assertEquals(2, mine.rails().size());
+        assertEquals(RailOwner.ME, mine.ownerAt(MatchConstants.coord(1, 0)));
+        assertEquals(RailOwner.CONTESTED, both.ownerAt(MatchConstants.coord(1, 0)));
+        assertEquals(RailOwner.ME, both.ownerAt(MatchConstants.coord(2, 1)));
+        assertEquals(2, both.rails().size());
+    }
+
+    @Test
+    void railBoardFromMapKeepsOwnersAndConnections() {
+        Connection connection = new Connection(0, 1);
+        Rail rail = new Rail(2, 1, RailOwner.OPPONENT);
+        rail.partOfActiveConnections = Set.of(connection);
+
+        RailBoard board = RailBoard.fromMap(3, 2, Map.of(new Coord(2, 1), rail));
+
+        assertEquals(1, board.size());
+        assertTrue(board.containsKey(new Coord(2, 1)));
+        assertFalse(board.containsKey(new Coord(5, 5)));
+        int index = board.index(2, 1);
+        assertEquals(2, board.xOf(index));
+        assertEquals(1, board.yOf(index));
+        assertEquals(RailOwner.OPPONENT, board.ownerAt(index));
+        assertEquals(Set.of(connection), board.connectionsAt(index));
+        assertTrue(board.connectionsAt(board.index(0, 0)).isEmpty());
+    }
+
+    @Test
+    void applyAndUndoRestoresRailsRegionsAndConnections() {
+        Connection connection = new Connection(0, 1);
+        MatchConstants.width = 2;
+        MatchConstants.height = 1;
+        MatchConstants.initCoords(2, 1);
+        TerrainType[][] terrain = { { TerrainType.PLAIN }, { TerrainType.PLAIN } };
+        int[][] regionIds = { { 0 }, { 1 } };
+        int[][] cityIds = { { -1 }, { -1 } };
+        Region[] regions = {
+                new Region(0, MatchConstants.INSTABILITY_THRESHOLD - 1,
+                        List.of(new Tile(0, 0, 0, TerrainType.PLAIN, null)), new HashSet<>(Set.of(connection)), false),
+                new Region(1, 0, List.of(new Tile(1, 0, 1, TerrainType.PLAIN, null)), new HashSet<>(), false) };
+        MapDefinition map = new MapDefinition(2, 1, terrain, regionIds, cityIds, new City[0], regions);
+        Rail rail = new Rail(0, 0, RailOwner.OPPONENT);
+        rail.partOfActiveConnections = Set.of(connection);
+        GameState turnState = new GameState(1, map, Map.of(MatchConstants.coord(0, 0), rail), 0, 0,
+                new TreeSet<>(Set.of(connection)));
+
+        GameState gs = turnState.copy();
+        MoveLog log = new MoveLog();
+        int mark = log.mark();
+        gs.applyRail(1, 0, RailOwner.ME, log);
+        gs.applyInstability(0, 1, log);
+
+        assertEquals(RailOwner.ME, gs.ownerAt(MatchConstants.coord(1, 0)));
+        assertTrue(gs.map().regions()[0].isInstable());
+        assertFalse(gs.rails().containsKey(MatchConstants.coord(0, 0)));
+        assertFalse(gs.cachedConnections().contains(connection));
+        assertFalse(turnState.map().regions()[0].isInstable(), "copy() must not share the regions of the turn");
+        assertEquals(1, turnState.rails().size(), "copy() must not share the rails of the turn");
+
+        gs.undo(log, mark);
+
+        assertEquals(1, gs.rails().size());
+        assertEquals(RailOwner.OPPONENT, gs.ownerAt(MatchConstants.coord(0, 0)));
+        assertEquals(Set.of(connection), gs.rails().connectionsAt(gs.rails().index(0, 0)));
+        assertEquals(RailOwner.NONE, gs.ownerAt(MatchConstants.coord(1, 0)));
+        assertSame(regions[0], gs.map().regions()[0]);
+        assertTrue(gs.cachedConnections().contains(connection));
+    }
+
+    @Test
+    void increaseInstabilityDoesNotAlterTheOriginalState() {
+        Connection connection = new Connection(0, 1);
+        MatchConstants.width = 1;
+        MatchConstants.height = 1;
+        MatchConstants.initCoords(1, 1);
+        Region[] regions = { new Region(0, MatchConstants.INSTABILITY_THRESHOLD - 1,
+                List.of(new Tile(0, 0, 0, TerrainType.PLAIN, null)), new HashSet<>(), false) };
+        MapDefinition map = new MapDefinition(1, 1, new TerrainType[][] { { TerrainType.PLAIN } },
+                new int[][] { { 0 } }, new int[][] { { -1 } }, new City[0], regions);
+        Rail rail = new Rail(0, 0, RailOwner.ME);
+        rail.partOfActiveConnections = Set.of(connection);
+        GameState gs = new GameState(1, map, Map.of(MatchConstants.coord(0, 0), rail), 0, 0,
+                new TreeSet<>(Set.of(connection)));
+
+        GameState after = gs.increaseInstability(0);
+
+        assertTrue(after.map().regions()[0].isInstable());
+        assertTrue(after.rails().isEmpty());
+        assertFalse(gs.map().regions()[0].isInstable());
+        assertEquals(1, gs.rails().size());
+        assertTrue(gs.cachedConnections().contains(connection));
+    }
 }
@@ -0,0 +1,22 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class GcMonitorTest {
+
+	@Test
+	public void testCollectionsAreCountedPerTurnAndSinceTheFirstTurn() {
+		GcMonitor monitor = new GcMonitor();
+		monitor.startTurn();
+		monitor.endTurn(1);
+		assertEquals(0, monitor.collectionsAfterFirstTurn);
+
+		monitor.startTurn();
+		System.gc();
+		monitor.endTurn(2);
+
+		assertTrue(monitor.turnCollections >= 1, monitor.toString());
+		assertTrue(monitor.collectionsAfterFirstTurn >= monitor.turnCollections, monitor.toString());
+		assertTrue(monitor.turnMillis >= 0);
+	}
+}
@@ -0,0 +1,62 @@
+import java.io.ByteArrayInputStream;
+import java.util.Scanner;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Per-turn parse time of Player.initRound, compared with the former
+ * Scanner + String.split tokenization of the same stream.
+ */
+@Tag("benchmark")
+public class InputParsingBenchmarkTest {
+
+	private static final int WARMUP_TURNS = 2000;
+	private static final int MEASURED_TURNS = 2000;
+
+	@Test
+	public void benchmarkArenaSizedMap() {
+		// 30x20 mid-game: a third of the cells hold rails, part of 1 connection
+		benchmark("30x20, 8 towns, 33% rails", 30, 20, 8, 0.33, 1);
+	}
+
+	@Test
+	public void benchmarkWorstCaseMap() {
+		// Largest arena map, max towns, every cell railed and crossed by many connections
+		benchmark("30x20, 12 towns, 100% rails x6 connections", 30, 20, 12, 1.0, 6);
+	}
+
+	private void benchmark(String name, int width, int height, int townCount, double railRatio,
+			int connectionsPerRail) {
+		String init = MatchInputs.initInput(0, width, height, townCount, 42L);
+		String turn = MatchInputs.turnInput(width, height, townCount, railRatio, connectionsPerRail, 43L);
+		String turns = turn.repeat(WARMUP_TURNS + MEASURED_TURNS);
+
+		InputReader reader = new InputReader(new ByteArrayInputStream((init + turns).getBytes()));
+		Player.initMatch(reader);
+		Bench.run("initRound " + name, WARMUP_TURNS, MEASURED_TURNS, () -> Player.initRound(reader));
+
+		Scanner scanner = new Scanner(turns);
+		Bench.run("Scanner tokenization " + name, WARMUP_TURNS, MEASURED_TURNS,
+				() -> scannerTokenization(scanner, width, height));
+	}
+
+	// Former tokenization of initRound, without building the game state
+	private static int scannerTokenization(Scanner in, int width, int height) {
+		int checksum = in.nextInt() + in.nextInt();
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				checksum += in.nextInt();
+				checksum += in.nextInt();
+				in.nextInt();
+				String partOfActiveConnectionStr = in.next();
+				if (partOfActiveConnectionStr.charAt(0) != 'x') {
+					for (String conn : partOfActiveConnectionStr.split(",")) {
+						checksum += Integer.parseInt(conn.split("-")[0]) + Integer.parseInt(conn.split("-")[1]);
+					}
+				}
+			}
+		}
+		return checksum;
+	}
+}
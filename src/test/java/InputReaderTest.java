@@ -0,0 +1,109 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.NoSuchElementException;
+
+import org.junit.jupiter.api.Test;
+
+public class InputReaderTest {
+
+	private InputReader reader(String input) {
+		return new InputReader(new ByteArrayInputStream(input.getBytes()));
+	}
+
+	@Test
+	public void testNextIntHandlesNegativeValuesAndLineBreaks() {
+		InputReader in = reader("-1 0\n42\r\n  7");
+		assertEquals(-1, in.nextInt());
+		assertEquals(0, in.nextInt());
+		assertEquals(42, in.nextInt());
+		assertEquals(7, in.nextInt());
+		assertThrows(NoSuchElementException.class, in::nextInt);
+	}
+
+	@Test
+	public void testBufferedInput() {
+		InputReader in = reader("1 2");
+		assertTrue(in.hasBufferedInput());
+		in.nextInt();
+		assertTrue(in.hasBufferedInput());
+		in.nextInt();
+		assertFalse(in.hasBufferedInput());
+	}
+
+	@Test
+	public void testNextIntList() {
+		InputReader in = reader("0,1,12 x 3");
+		assertEquals(3, in.nextIntList());
+		assertEquals(0, in.intListValue(0));
+		assertEquals(1, in.intListValue(1));
+		assertEquals(12, in.intListValue(2));
+		assertEquals(0, in.nextIntList());
+		assertEquals(1, in.nextIntList());
+		assertEquals(3, in.intListValue(0));
+	}
+
+	@Test
+	public void testNextConnectionList() {
+		InputReader in = reader("x 1-2,1-3,4-11\n5");
+		assertEquals(0, in.nextConnectionList());
+		assertEquals(3, in.nextConnectionList());
+		assertEquals(1, in.connectionFrom(0));
+		assertEquals(2, in.connectionTo(0));
+		assertEquals(1, in.connectionFrom(1));
+		assertEquals(3, in.connectionTo(1));
+		assertEquals(4, in.connectionFrom(2));
+		assertEquals(11, in.connectionTo(2));
+		assertEquals(5, in.nextInt());
+	}
+
+	@Test
+	public void testLongConnectionListGrowsBuffer() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			sb.append(i == 0 ? "" : ",").append(i).append('-').append(i + 1);
+		}
+		InputReader in = reader(sb.toString());
+		assertEquals(100, in.nextConnectionList());
+		assertEquals(99, in.connectionFrom(99));
+		assertEquals(100, in.connectionTo(99));
+	}
+
+	@Test
+	public void testInitMatchAndInitRound() {
+		String init = "1\n"
+				+ "3 1\n"
+				+ "0 0\n0 1\n1 0\n"
+				+ "2\n"
+				+ "0 0 0 1\n"
+				+ "1 2 0 x\n";
+		String turn = "5 3\n"
+				+ "-1 0 0 x\n"
+				+ "1 2 0 0-1\n"
+				+ "-1 1 0 x\n";
+		InputReader in = reader(init + turn);
+		Player.initMatch(in);
+
+		assertEquals(3, MatchConstants.width);
+		assertEquals(1, MatchConstants.height);
+		assertEquals(2, MatchConstants.cityCount);
+		assertEquals(2, MatchConstants.regionsCount);
+
+		GameState gs = Player.initRound(in);
+
+		assertEquals(5, gs.myScore());
+		assertEquals(3, gs.opponentScore());
+		assertEquals(java.util.List.of(1), gs.map().cityById(0).desiredCityIds());
+		assertTrue(gs.map().cityById(1).desiredCityIds().isEmpty());
+		assertEquals(TerrainType.RIVER, gs.map().terrainAt(MatchConstants.coord(1, 0)));
+
+		Coord railCoord = MatchConstants.coord(1, 0);
+		assertEquals(RailOwner.ME, gs.ownerAt(railCoord));
+		assertEquals(RailOwner.NONE, gs.ownerAt(MatchConstants.coord(0, 0)));
+		Connection connection = MatchConstants.connection(0, 1);
+		assertTrue(gs.cachedConnections().contains(connection));
+		assertTrue(gs.map().regions()[0].connections().contains(connection));
+		assertEquals(2, gs.map().regions()[0].instability());
+		assertEquals(1, gs.map().regions()[1].instability());
+	}
+}
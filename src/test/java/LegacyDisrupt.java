@@ -0,0 +1,108 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Disrupt scoring as it was before DisruptIndex (connections x rails scans),
+// kept as the reference for equivalence tests and benchmarks.
+class LegacyDisrupt {
+
+	static Action getDisruptAction(GameState gs) {
+		Action result = null;
+		Map<Connection, Integer> connectionWorthMap = new HashMap<>();
+
+		Time.debugDuration("Disrupt action computation start");
+		RailBoard rails = gs.rails();
+		for (Connection conn : gs.cachedConnections()) {
+			for (int index = 0; index < rails.cellCount(); index++) {
+				if (rails.hasRail(index) && rails.connectionsAt(index).contains(conn)) {
+					if (rails.ownerAt(index) == RailOwner.ME) {
+						connectionWorthMap.put(conn, connectionWorthMap.getOrDefault(conn, 0) + 1);
+					} else if (rails.ownerAt(index) == RailOwner.OPPONENT) {
+						connectionWorthMap.put(conn, connectionWorthMap.getOrDefault(conn, 0) - 1);
+					}
+				}
+			}
+			// Print.debug("Connection from " + conn.fromId() + " to " + conn.toId() + " has
+			// worth: "
+			// + connectionWorthMap.getOrDefault(conn, 0));
+		}
+
+		double worstRegionValue = 0;
+		List<Region> regionCandidateToDisrupt = new ArrayList<Region>();
+		for (Region region : gs.map().regions()) {
+			if (region.isInstable() || region.hasCity()) {
+				continue;
+			}
+			double regionValue = 0;
+			int rawRegionValue = 0;
+			for (Connection conn : region.connections()) {
+				regionValue += connectionWorthMap.getOrDefault(conn, 0);
+			}
+			rawRegionValue = (int) regionValue;
+			regionValue /= MatchConstants.INSTABILITY_THRESHOLD - region.instability();
+
+			if (regionValue < worstRegionValue) {
+				worstRegionValue = regionValue;
+				regionCandidateToDisrupt.clear();
+				regionCandidateToDisrupt.add(region);
+			} else if (regionValue == worstRegionValue) {
+				regionCandidateToDisrupt.add(region);
+			}
+			if (regionValue != 0) {
+				Print.debug(
+						"Region " + region.id() + " has raw value: " + rawRegionValue + " and value: " + regionValue);
+			}
+		}
+		if (regionCandidateToDisrupt.isEmpty()) {
+			Print.debug("Nothing to disrupt, sorry mate");
+		} else if (regionCandidateToDisrupt.size() == 1) {
+			Print.debug("Single region to disrupt, just do it");
+			result = Action.disruptRegion(regionCandidateToDisrupt.get(0).id());
+		} else {
+			Print.debug(regionCandidateToDisrupt.size()
+					+ " regions candidate to disrupt, going to kill based on max balance of rails");
+
+			Region regionToKill = null;
+			double bestBalance = 100;
+			if (worstRegionValue == 0) {
+				bestBalance = 0;
+			}
+			for (Region region : regionCandidateToDisrupt) {
+
+				double balance = 0;
+				for (Tile cell : region.cells()) {
+					RailOwner owner = rails.ownerAt(cell.x(), cell.y());
+					if (owner == RailOwner.OPPONENT) {
+						balance--;
+					} else if (owner == RailOwner.ME) {
+						balance++;
+					}
+				}
+
+				// Print.debug("Region " + region.id() + " has a raw rail balance of: " +
+				// balance);
+
+				balance = balance / (MatchConstants.INSTABILITY_THRESHOLD - region.instability());
+				// Print.debug("Region " + region.id() + " has a modulated rail balance of: " +
+				// balance);
+
+				if (balance <= bestBalance) {
+					bestBalance = balance;
+					regionToKill = region;
+				}
+
+			}
+
+			if (regionToKill != null) {
+				Print.debug("Going to kill " + bestBalance + " balanced rails from region " + regionToKill.id());
+				result = Action.disruptRegion(regionToKill.id());
+			} else {
+				Print.debug("I guess there's a bug");
+			}
+
+		}
+		Time.debugDuration("Disrupt action computation end");
+		return result;
+	}
+}
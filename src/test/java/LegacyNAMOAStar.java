@@ -0,0 +1,237 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Object based NAMOA* as it was before NAMOASearchContext, kept as the
+// reference for equivalence tests and benchmarks.
+
+record LegacyNAMOANode(Coord coord, PathCost cost, PathCost heuristic, LegacyNAMOANode parent, long insertionOrder)
+		implements Comparable<LegacyNAMOANode> {
+	PathCost totalCost() {
+		return new PathCost(cost.distance() + heuristic.distance(), cost.buildCost() + heuristic.buildCost(),
+				cost.instability() + heuristic.instability());
+	}
+
+	@Override
+	public int compareTo(LegacyNAMOANode other) {
+		int comparison = this.totalCost().compareTo(other.totalCost());
+		if (comparison != 0) {
+			return comparison;
+		}
+		return Long.compare(this.insertionOrder, other.insertionOrder);
+	}
+}
+
+class LegacyNAMOAStar {
+
+	/**
+	 * Finds non-dominated paths from a start city to multiple target cities using *
+	 * NAMOA*. Returns a map from target city ID to a list of non-dominated paths.
+	 * Optimized version with early termination and visited tracking.
+	 */
+	static Map<Integer, List<NAMOAPath>> findPaths(GameState gs, City start, List<City> targets) {
+		Map<Integer, List<NAMOAPath>> results = new HashMap<>();
+		for (City target : targets) {
+			results.put(target.id(), new ArrayList<>());
+		}
+
+		Set<Integer> targetIds = targets.stream().map(City::id).collect(java.util.stream.Collectors.toSet());
+		Set<Integer> foundTargets = new HashSet<>();
+		Coord startCoord = MatchConstants.coord(start.x(), start.y());
+
+		// Open list (priority queue)
+		java.util.PriorityQueue<LegacyNAMOANode> open = new java.util.PriorityQueue<>();
+
+		// Non-dominated archive per coordinate - limit size for performance
+		Map<Coord, List<PathCost>> archive = new HashMap<>();
+
+		// Closed set to avoid reprocessing
+		Set<Coord> closed = new HashSet<>();
+
+		// Initial node
+		PathCost initialCost = new PathCost(0, 0, 0);
+		PathCost initialHeuristic = computeHeuristic(gs, startCoord, targets);
+		long insertionCounter = 0;
+		LegacyNAMOANode startNode = new LegacyNAMOANode(startCoord, initialCost, initialHeuristic, null, insertionCounter++);
+		open.add(startNode);
+
+		int nodesExpanded = 0;
+		final int MAX_NODES = 5000; // Limit search space for performance
+
+		while (!open.isEmpty() && nodesExpanded < MAX_NODES) {
+			LegacyNAMOANode current = open.poll();
+			nodesExpanded++;
+
+			// Skip if already processed
+			if (closed.contains(current.coord())) {
+				continue;
+			}
+			closed.add(current.coord());
+
+			// Check if dominated by archive
+			if (isDominated(current.cost(), archive.get(current.coord()))) {
+				continue;
+			}
+
+			// Check if we reached a target
+			City reachedCity = gs.map().cityAt(current.coord().x(), current.coord().y());
+			if (reachedCity != null && targetIds.contains(reachedCity.id())) {
+				List<Coord> path = reconstructPath(current);
+				NAMOAPath solution = new NAMOAPath(start, reachedCity, path, current.cost());
+				addNonDominatedSolution(results.get(reachedCity.id()), solution);
+				foundTargets.add(reachedCity.id());
+
+				// Early termination if we found all targets with at least one path
+				if (foundTargets.size() == targetIds.size()) {
+					break;
+				}
+			}
+
+			// Expand neighbors
+			for (Coord neighbor : getNeighbors(gs, current.coord())) {
+				if (closed.contains(neighbor)) {
+					continue;
+				}
+
+				int edgeDistance = 1;
+				int edgeCost = getMovementCost(gs, neighbor);
+				int edgeInstability = getInstabilityCost(gs, neighbor);
+
+				PathCost newCost = current.cost().add(edgeDistance, edgeCost, edgeInstability);
+
+				// Check if dominated by archive at neighbor
+				List<PathCost> neighborArchive = archive.get(neighbor);
+				if (!isDominated(newCost, neighborArchive)) {
+					PathCost newHeuristic = computeHeuristic(gs, neighbor, targets);
+					LegacyNAMOANode newNode = new LegacyNAMOANode(neighbor, newCost, newHeuristic, current, insertionCounter++);
+					open.add(newNode);
+
+					// Update archive with size limit
+					addToArchiveLimited(archive, neighbor, newCost, 3); // Max 3 non-dominated paths per cell
+				}
+			}
+		}
+
+		return results;
+	}
+
+	private static int getInstabilityCost(GameState gs, Coord neighbor) {
+		int regionId = gs.regionIdAt(neighbor);
+		Region region = gs.map().regions()[regionId];
+		return region.instability();
+	}
+
+	private static PathCost computeHeuristic(GameState gs, Coord from, List<City> targets) {
+		int minDistance = Integer.MAX_VALUE;
+		int minCost = 0;
+		int minInstability = 0;
+
+		for (City target : targets) {
+			int dist = Math.abs(from.x() - target.x()) + Math.abs(from.y() - target.y());
+			if (dist < minDistance) {
+				minDistance = dist;
+				// Estimate cost (assuming average terrain)
+				minCost = dist;
+			}
+		}
+
+		return new PathCost(minDistance, minCost, minInstability);
+	}
+
+	private static boolean isDominated(PathCost cost, List<PathCost> archive) {
+		if (archive == null || archive.isEmpty()) {
+			return false;
+		}
+
+		for (PathCost archiveCost : archive) {
+			if (archiveCost.dominates(cost)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	static void addToArchiveLimited(Map<Coord, List<PathCost>> archive, Coord coord, PathCost newCost,
+			int maxSize) {
+		List<PathCost> costs = archive.computeIfAbsent(coord, k -> new ArrayList<>());
+
+		// Remove dominated costs
+		costs.removeIf(existingCost -> newCost.dominates(existingCost));
+
+		// Add if not dominated and under size limit
+		if (!isDominated(newCost, costs)) {
+			costs.add(newCost);
+			// Keep only best paths if exceeding limit
+			if (costs.size() > maxSize) {
+				costs.sort(PathCost::compareTo);
+				while (costs.size() > maxSize) {
+					costs.remove(costs.size() - 1);
+				}
+			}
+		}
+	}
+
+	private static void addNonDominatedSolution(List<NAMOAPath> solutions, NAMOAPath newSolution) {
+		// Remove solutions dominated by the new one
+		solutions.removeIf(existing -> newSolution.cost().dominates(existing.cost()));
+
+		// Add if not dominated
+		boolean dominated = false;
+		for (NAMOAPath existing : solutions) {
+			if (existing.cost().dominates(newSolution.cost())) {
+				dominated = true;
+				break;
+			}
+		}
+
+		if (!dominated) {
+			solutions.add(newSolution);
+		}
+	}
+
+	private static List<Coord> getNeighbors(GameState gs, Coord coord) {
+		List<Coord> neighbors = new ArrayList<>();
+		// NORTH, EAST, SOUTH, WEST
+		int[][] directions = { { 0, -1 }, { 1, 0 }, { 0, 1 }, { -1, 0 } };
+
+		for (int[] dir : directions) {
+			int nx = coord.x() + dir[0];
+			int ny = coord.y() + dir[1];
+
+			if (MatchConstants.isValid(nx, ny)) {
+				Coord neighbor = MatchConstants.coord(nx, ny);
+				if (gs.canTraverse(nx, ny)) {
+					neighbors.add(neighbor);
+				}
+			}
+		}
+
+		return neighbors;
+	}
+
+	private static int getMovementCost(GameState gs, Coord coord) {
+		// If there's already a rail, no cost to use it
+		if (gs.rails().hasRail(coord.x(), coord.y())) {
+			return 0;
+		}
+		// If it's a city, no cost
+		if (gs.map().cityAt(coord.x(), coord.y()) != null) {
+			return 0;
+		}
+		// Otherwise, terrain build cost
+		return gs.map().terrainType()[coord.x()][coord.y()].buildCost();
+	}
+
+	private static List<Coord> reconstructPath(LegacyNAMOANode node) {
+		List<Coord> path = new ArrayList<>();
+		LegacyNAMOANode current = node;
+		while (current != null) {
+			path.add(0, current.coord());
+			current = current.parent();
+		}
+		return path;
+	}
+}
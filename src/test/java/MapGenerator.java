@@ -0,0 +1,227 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Seeded maps shaped like the arena's, at any size: contiguous regions grown
+ * from random seeds, river bands crossing the map, mountain clusters, scattered
+ * POIs and spaced cities wishing for some of their nearest neighbors. A
+ * mid-game snapshot is a number of turns played by the referee, both sides
+ * building towards the wishes of their cities and disrupting now and then.
+ */
+public class MapGenerator {
+
+	private static final int[] DX = { 0, 1, 0, -1 };
+	private static final int[] DY = { -1, 0, 1, 0 };
+
+	/** A played map: the inputs of player 0 and the referee to keep playing it */
+	public record Scenario(String[] initLines, String[] turnLines, RailReferee referee) {
+
+		/** Parses the scenario in the static match, as the bot would */
+		GameState load() {
+			Player.initMatch(RailReferee.reader(initLines));
+			return Player.initRound(RailReferee.reader(turnLines));
+		}
+
+		GameState load(MatchContext context) {
+			context.initMatch(RailReferee.reader(initLines));
+			return context.initRound(RailReferee.reader(turnLines));
+		}
+	}
+
+	private final int width;
+	private final int height;
+	private final long seed;
+	int cityCount;
+	int regionSize = 10; // mean cells per region
+	int riverCount;
+	int mountainClusters;
+	int poiCount;
+	double disruptRate = 0.3; // per player and turn of a mid-game
+
+	MapGenerator(int width, int height, long seed) {
+		this.width = width;
+		this.height = height;
+		this.seed = seed;
+		// Densities of the arena maps, whatever the size
+		int cells = width * height;
+		this.cityCount = Math.max(2, Math.min(cells / 40, 60));
+		this.riverCount = Math.max(1, (width + height) / 30);
+		this.mountainClusters = Math.max(1, cells / 60);
+		this.poiCount = Math.max(1, cells / 100);
+	}
+
+	/** The init input of the map, for player myId */
+	String initInput(int myId) {
+		Random random = new Random(seed);
+		int[] regions = regions(random);
+		int[] terrain = terrain(random);
+		int[][] cities = cities(random, terrain);
+		StringBuilder sb = new StringBuilder();
+		sb.append(myId).append('\n');
+		sb.append(width).append(' ').append(height).append('\n');
+		for (int cell = 0; cell < width * height; cell++) {
+			sb.append(regions[cell]).append(' ').append(terrain[cell]).append('\n');
+		}
+		sb.append(cities.length).append('\n');
+		for (int id = 0; id < cities.length; id++) {
+			sb.append(id).append(' ').append(cities[id][0]).append(' ').append(cities[id][1]).append(' ');
+			List<Integer> desired = desired(random, cities, id);
+			sb.append(desired.isEmpty() ? "x" : String.join(",", desired.stream().map(String::valueOf).toList()));
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	/** The map after turns played by the referee, from the point of view of player 0 */
+	Scenario midGame(int turns) {
+		RailReferee referee = new RailReferee(initInput(0));
+		String[] initLines = referee.getInitInputForPlayer(0);
+		GameState start = referee.getStateForPlayer(0);
+		City[] cities = start.map().citiesById();
+		int regionCount = start.map().regions().length;
+		Random random = new Random(seed + 1);
+		for (int turn = 0; turn < turns; turn++) {
+			referee.updateGame(actions(random, cities, regionCount, turn),
+					actions(random, cities, regionCount, turn + cities.length / 2));
+		}
+		return new Scenario(initLines, referee.getInputForPlayer(0), referee);
+	}
+
+	// Towards one wish of a city taken in turn, sometimes a DISRUPT
+	private List<Action> actions(Random random, City[] cities, int regionCount, int turn) {
+		List<Action> actions = new ArrayList<>();
+		for (int i = 0; i < cities.length; i++) {
+			City from = cities[(turn + i) % cities.length];
+			if (!from.desiredCityIds().isEmpty()) {
+				City to = cities[from.desiredCityIds().get(turn % from.desiredCityIds().size())];
+				actions.add(new Action(ActionType.AUTOPLACE, new Coord(from.x(), from.y()), new Coord(to.x(), to.y()), -1));
+				break;
+			}
+		}
+		if (random.nextDouble() < disruptRate) {
+			actions.add(new Action(ActionType.DISRUPT, null, null, random.nextInt(regionCount)));
+		}
+		return actions;
+	}
+
+	// Region ids grown from random seeds in random order: contiguous by construction
+	private int[] regions(Random random) {
+		int cells = width * height;
+		int[] region = new int[cells];
+		Arrays.fill(region, -1);
+		int regionCount = Math.max(1, cells / regionSize);
+		int[] frontier = new int[cells];
+		int frontierSize = 0;
+		int seeded = 0;
+		while (seeded < regionCount) {
+			int cell = random.nextInt(cells);
+			if (region[cell] < 0) {
+				region[cell] = seeded++;
+				frontier[frontierSize++] = cell;
+			}
+		}
+		while (frontierSize > 0) {
+			int i = random.nextInt(frontierSize);
+			int cell = frontier[i];
+			int free = -1;
+			for (int dir = 0, start = random.nextInt(4); dir < 4; dir++) {
+				int next = neighbor(cell, (start + dir) % 4);
+				if (next >= 0 && region[next] < 0) {
+					free = next;
+					break;
+				}
+			}
+			if (free < 0) {
+				frontier[i] = frontier[--frontierSize];
+				continue;
+			}
+			region[free] = region[cell];
+			frontier[frontierSize++] = free;
+		}
+		return region;
+	}
+
+	// Plains crossed by river bands, with mountain clusters and single POIs
+	private int[] terrain(Random random) {
+		int[] terrain = new int[width * height];
+		for (int river = 0; river < riverCount; river++) {
+			boolean horizontal = random.nextBoolean();
+			int along = horizontal ? width : height;
+			int across = random.nextInt(horizontal ? height : width);
+			int limit = horizontal ? height : width;
+			for (int i = 0; i < along; i++) {
+				across = Math.max(0, Math.min(limit - 1, across + random.nextInt(3) - 1));
+				int cell = horizontal ? across * width + i : i * width + across;
+				terrain[cell] = TerrainType.RIVER.ordinal();
+			}
+		}
+		for (int cluster = 0; cluster < mountainClusters; cluster++) {
+			int cell = random.nextInt(width * height);
+			for (int i = 3 + random.nextInt(6); i > 0; i--) {
+				terrain[cell] = TerrainType.MOUNTAIN.ordinal();
+				int next = neighbor(cell, random.nextInt(4));
+				cell = next >= 0 ? next : cell;
+			}
+		}
+		for (int poi = 0; poi < poiCount; poi++) {
+			terrain[random.nextInt(width * height)] = TerrainType.POI.ordinal();
+		}
+		return terrain;
+	}
+
+	// Cities {x, y} on plains, spread out: as far apart as the map allows
+	private int[][] cities(Random random, int[] terrain) {
+		int[][] cities = new int[cityCount][];
+		int spacing = Math.max(2, (int) Math.sqrt((double) width * height / cityCount) / 2);
+		int placed = 0;
+		for (int attempt = 0; placed < cityCount; attempt++) {
+			if (attempt > 0 && attempt % 1000 == 0 && spacing > 1) {
+				spacing--;
+			}
+			int x = random.nextInt(width);
+			int y = random.nextInt(height);
+			boolean free = true;
+			for (int i = 0; i < placed && free; i++) {
+				free = Math.abs(cities[i][0] - x) + Math.abs(cities[i][1] - y) >= spacing;
+			}
+			if (free) {
+				terrain[y * width + x] = TerrainType.PLAIN.ordinal();
+				cities[placed++] = new int[] { x, y };
+			}
+		}
+		return cities;
+	}
+
+	// One to three of the four nearest cities, one city in four wishing for none
+	private List<Integer> desired(Random random, int[][] cities, int id) {
+		List<Integer> desired = new ArrayList<>();
+		if (random.nextInt(4) == 0) {
+			return desired;
+		}
+		Integer[] byDistance = new Integer[cities.length];
+		for (int i = 0; i < cities.length; i++) {
+			byDistance[i] = i;
+		}
+		Arrays.sort(byDistance, (a, b) -> Integer.compare(distance(cities, id, a), distance(cities, id, b)));
+		int count = 1 + random.nextInt(3);
+		for (int i = 1; i < Math.min(cities.length, 5) && desired.size() < count; i++) {
+			if (random.nextBoolean() || desired.isEmpty()) {
+				desired.add(byDistance[i]);
+			}
+		}
+		desired.sort(null);
+		return desired;
+	}
+
+	private static int distance(int[][] cities, int a, int b) {
+		return Math.abs(cities[a][0] - cities[b][0]) + Math.abs(cities[a][1] - cities[b][1]);
+	}
+
+	private int neighbor(int cell, int dir) {
+		int x = cell % width + DX[dir];
+		int y = cell / width + DY[dir];
+		return x < 0 || x >= width || y < 0 || y >= height ? -1 : y * width + x;
+	}
+}
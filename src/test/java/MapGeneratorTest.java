@@ -0,0 +1,75 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class MapGeneratorTest {
+
+	@Test
+	public void testSameSeedSameMap() {
+		assertEquals(new MapGenerator(30, 20, 5).initInput(0), new MapGenerator(30, 20, 5).initInput(0));
+		assertNotEquals(new MapGenerator(30, 20, 5).initInput(0), new MapGenerator(30, 20, 6).initInput(0));
+		assertArrayEquals(new MapGenerator(30, 20, 5).midGame(10).turnLines(),
+				new MapGenerator(30, 20, 5).midGame(10).turnLines());
+	}
+
+	@Test
+	public void testRegionsAreContiguousAndEveryTerrainIsThere() {
+		for (int[] size : new int[][] { { 20, 10 }, { 30, 20 }, { 120, 60 } }) {
+			GameState gs = new MapGenerator(size[0], size[1], 3).midGame(0).load();
+			MapDefinition map = gs.map();
+
+			int[] terrainCounts = new int[TerrainType.values().length];
+			for (int x = 0; x < map.width(); x++) {
+				for (int y = 0; y < map.height(); y++) {
+					terrainCounts[map.terrainAt(new Coord(x, y)).ordinal()]++;
+				}
+			}
+			assertTrue(Arrays.stream(terrainCounts).allMatch(count -> count > 0), Arrays.toString(terrainCounts));
+
+			for (Region region : map.regions()) {
+				assertFalse(region.cells().isEmpty());
+				assertEquals(region.cells().size(), reachableInRegion(map, region), "region " + region.id());
+			}
+			for (City city : map.citiesById()) {
+				assertEquals(TerrainType.PLAIN, map.terrainAt(new Coord(city.x(), city.y())));
+				assertFalse(city.desiredCityIds().contains(city.id()));
+			}
+		}
+	}
+
+	@Test
+	public void testMidGameHasRailsConnectionsAndInstability() {
+		GameState gs = new MapGenerator(40, 20, 7).midGame(30).load();
+
+		assertTrue(gs.rails().size() > 30, "rails " + gs.rails().size());
+		assertFalse(gs.cachedConnections().isEmpty());
+		assertTrue(Arrays.stream(gs.map().regions()).anyMatch(region -> region.instability() > 0));
+		assertTrue(gs.myScore() + gs.opponentScore() > 0);
+	}
+
+	private static int reachableInRegion(MapDefinition map, Region region) {
+		Tile start = region.cells().get(0);
+		boolean[][] seen = new boolean[map.width()][map.height()];
+		ArrayDeque<int[]> queue = new ArrayDeque<>();
+		queue.add(new int[] { start.x(), start.y() });
+		seen[start.x()][start.y()] = true;
+		int count = 0;
+		while (!queue.isEmpty()) {
+			int[] cell = queue.poll();
+			count++;
+			for (int[] d : new int[][] { { 0, -1 }, { 1, 0 }, { 0, 1 }, { -1, 0 } }) {
+				int x = cell[0] + d[0];
+				int y = cell[1] + d[1];
+				if (x >= 0 && x < map.width() && y >= 0 && y < map.height() && !seen[x][y]
+						&& map.regionIdAt(x, y) == region.id()) {
+					seen[x][y] = true;
+					queue.add(new int[] { x, y });
+				}
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,69 @@
+import java.util.Random;
+
+/**
+ * Builds referee-formatted input (init section + turn sections) for synthetic
+ * maps, so parsing can be exercised without a real match.
+ */
+public class MatchInputs {
+
+	public static String initInput(int myId, int width, int height, int townCount, long seed) {
+		Random random = new Random(seed);
+		StringBuilder sb = new StringBuilder();
+		sb.append(myId).append('\n');
+		sb.append(width).append(' ').append(height).append('\n');
+		int regionWidth = 3;
+		int regionHeight = 3;
+		int regionsPerRow = (width + regionWidth - 1) / regionWidth;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int regionId = (y / regionHeight) * regionsPerRow + x / regionWidth;
+				sb.append(regionId).append(' ').append(random.nextInt(3)).append('\n');
+			}
+		}
+		sb.append(townCount).append('\n');
+		for (int i = 0; i < townCount; i++) {
+			// One town per column band so they never share a cell
+			int x = (i * width) / townCount;
+			int y = random.nextInt(height);
+			sb.append(i).append(' ').append(x).append(' ').append(y).append(' ');
+			StringBuilder desired = new StringBuilder();
+			for (int j = 0; j < townCount; j++) {
+				if (j != i && random.nextInt(3) == 0) {
+					desired.append(desired.length() == 0 ? "" : ",").append(j);
+				}
+			}
+			sb.append(desired.length() == 0 ? "x" : desired).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * A turn where railRatio of the cells hold a rail, each being part of
+	 * connectionsPerRail active connections.
+	 */
+	public static String turnInput(int width, int height, int townCount, double railRatio, int connectionsPerRail,
+			long seed) {
+		Random random = new Random(seed);
+		StringBuilder sb = new StringBuilder();
+		sb.append(random.nextInt(500)).append('\n').append(random.nextInt(500)).append('\n');
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				boolean hasRail = random.nextDouble() < railRatio;
+				int owner = hasRail ? random.nextInt(3) : -1;
+				int instability = random.nextInt(3);
+				sb.append(owner).append(' ').append(instability).append(" 0 ");
+				if (!hasRail || connectionsPerRail == 0) {
+					sb.append('x');
+				} else {
+					for (int c = 0; c < connectionsPerRail; c++) {
+						int from = random.nextInt(townCount);
+						int to = (from + 1 + random.nextInt(townCount - 1)) % townCount;
+						sb.append(c == 0 ? "" : ",").append(from).append('-').append(to);
+					}
+				}
+				sb.append('\n');
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,241 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class NAMOASearchContextTest {
+
+	@BeforeEach
+	public void setUp() {
+		MatchConstants.width = 30;
+		MatchConstants.height = 20;
+		MatchConstants.initCoords(30, 20);
+	}
+
+	@Test
+	public void testSamePathsAsLegacyImplementationOnRandomMaps() {
+		Random random = new Random(7);
+		for (int round = 0; round < 50; round++) {
+			GameState gs = randomGameState(random, 30, 20, 8);
+			City[] cities = gs.map().citiesById();
+			City start = cities[random.nextInt(cities.length)];
+			List<City> targets = new ArrayList<>();
+			for (City city : cities) {
+				if (city != start && random.nextBoolean()) {
+					targets.add(city);
+				}
+			}
+
+			Map<Integer, List<NAMOAPath>> expected = LegacyNAMOAStar.findPaths(gs, start, targets);
+			Map<Integer, List<NAMOAPath>> actual = NAMOAStar.findPaths(gs, start, targets);
+
+			assertEquals(expected, actual, "Different paths on random map #" + round);
+		}
+	}
+
+	// Archives past their size are trimmed from a possibly unsorted state: costs
+	// with sums [5, 3, 4] and then 2 must keep {2, 3, 4}, as the legacy sort
+	@Test
+	public void testArchiveIsTrimmedAsTheLegacyOne() {
+		int[] distances = new int[NAMOAStar.MAX_ARCHIVE_SIZE + 1];
+		int[] buildCosts = new int[distances.length];
+		int[] instabilities = new int[distances.length];
+		int count = 0;
+		int[][] costs = { { 1, 4, 0 }, { 3, 0, 1 }, { 2, 2, 2 }, { 2, 0, 3 } };
+		for (int[] cost : costs) {
+			count = NAMOASearchContext.addToArchive(distances, buildCosts, instabilities, 0, count, cost[0], cost[1],
+					cost[2]);
+		}
+		assertEquals(3, count);
+		assertArrayEquals(new int[] { 2, 3, 2 }, Arrays.copyOf(distances, count));
+		assertArrayEquals(new int[] { 0, 0, 2 }, Arrays.copyOf(buildCosts, count));
+
+		Random random = new Random(13);
+		for (int round = 0; round < 2000; round++) {
+			Map<Coord, List<PathCost>> legacy = new HashMap<>();
+			Coord coord = new Coord(0, 0);
+			count = 0;
+			for (int i = 0; i < 8; i++) {
+				PathCost cost = new PathCost(random.nextInt(6), random.nextInt(6), random.nextInt(6));
+				LegacyNAMOAStar.addToArchiveLimited(legacy, coord, cost, NAMOAStar.MAX_ARCHIVE_SIZE);
+				count = NAMOASearchContext.addToArchive(distances, buildCosts, instabilities, 0, count,
+						cost.distance(), cost.buildCost(), cost.instability());
+
+				List<PathCost> archive = new ArrayList<>();
+				for (int slot = 0; slot < count; slot++) {
+					archive.add(new PathCost(distances[slot], buildCosts[slot], instabilities[slot]));
+				}
+				assertEquals(legacy.get(coord), archive, "Round " + round);
+			}
+		}
+	}
+
+	@Test
+	public void testReusingTheContextGivesTheSameResults() {
+		GameState gs = randomGameState(new Random(3), 30, 20, 6);
+		City[] cities = gs.map().citiesById();
+		List<City> targets = List.of(cities[1], cities[2], cities[3]);
+
+		Map<Integer, List<NAMOAPath>> first = NAMOAStar.findPaths(gs, cities[0], targets);
+		NAMOAStar.findPaths(gs, cities[4], List.of(cities[5]));
+		Map<Integer, List<NAMOAPath>> second = NAMOAStar.findPaths(gs, cities[0], targets);
+
+		assertEquals(first, second);
+	}
+
+	@Test
+	public void testSinglePassGivesTheSamePathsAsOneSearchPerCity() {
+		Random random = new Random(11);
+		for (int round = 0; round < 20; round++) {
+			GameState gs = randomGameState(random, 30, 20, 10);
+			City[] cities = gs.map().citiesById();
+			List<City> starts = new ArrayList<>();
+			List<List<City>> targetsPerStart = new ArrayList<>();
+			for (City start : cities) {
+				List<City> targets = new ArrayList<>();
+				for (City city : cities) {
+					if (city != start && random.nextInt(3) == 0) {
+						targets.add(city);
+					}
+				}
+				starts.add(start);
+				targetsPerStart.add(targets);
+			}
+
+			boolean previous = Time.noTimeLimit;
+			Time.noTimeLimit = true;
+			List<Map<Integer, List<NAMOAPath>>> batch;
+			try {
+				batch = NAMOAStar.findPathsForAll(gs, starts, targetsPerStart, false);
+			} finally {
+				Time.noTimeLimit = previous;
+			}
+
+			for (int i = 0; i < starts.size(); i++) {
+				assertEquals(NAMOAStar.findPaths(gs, starts.get(i), targetsPerStart.get(i)), batch.get(i),
+						"Different paths from city " + starts.get(i).id() + " on random map #" + round);
+			}
+		}
+	}
+
+	@Test
+	public void testEachStartCityReportsWhyItsSearchEnded() {
+		Random random = new Random(5);
+		MatchContext context = new MatchContext();
+		for (int round = 0; round < 20; round++) {
+			GameState gs = randomGameState(random, 30, 20, 8);
+			City[] cities = gs.map().citiesById();
+			List<City> starts = List.of(cities[0], cities[3], cities[6]);
+			List<List<City>> targetsPerStart = List.of(List.of(cities[1], cities[7]), List.of(), List.of(cities[2]));
+
+			List<Map<Integer, List<NAMOAPath>>> results = context.searchContext().findPaths(gs, starts,
+					targetsPerStart, false, false);
+
+			for (int slot = 0; slot < starts.size(); slot++) {
+				boolean allFound = results.get(slot).values().stream().noneMatch(List::isEmpty);
+				NAMOASearchContext.Termination termination = context.searchContext().termination(slot);
+				assertEquals(allFound ? NAMOASearchContext.Termination.GOAL : NAMOASearchContext.Termination.EXHAUSTED,
+						termination, "Start " + slot + " on random map #" + round);
+			}
+		}
+	}
+
+	@Test
+	public void testTimedSearchReportsItsBudgetUnlessTheLastExpansionReachedTheGoal() {
+		GameState gs = randomGameState(new Random(11), 30, 20, 8);
+		City[] cities = gs.map().citiesById();
+		List<City> starts = List.of(cities[0]);
+		List<List<City>> targets = List.of(List.of(cities[7]));
+		MatchContext context = new MatchContext();
+		NAMOASearchContext search = context.searchContext();
+		search.findPaths(gs, starts, targets, false, false);
+		assertEquals(NAMOASearchContext.Termination.GOAL, search.termination(0));
+		int expansions = (int) context.telemetry.nodesExpanded;
+
+		boolean previous = Time.noTimeLimit;
+		try {
+			Time.noTimeLimit = false;
+			context.time.startRound();
+			search.findPaths(gs, starts, targets, expansions - 1, true, false);
+			assertEquals(NAMOASearchContext.Termination.BUDGET, search.termination(0));
+
+			// The goal is reached by the last expansion allowed
+			List<Map<Integer, List<NAMOAPath>>> results = search.findPaths(gs, starts, targets, expansions, true,
+					false);
+			assertEquals(NAMOASearchContext.Termination.GOAL, search.termination(0));
+			assertFalse(results.get(0).get(cities[7].id()).isEmpty());
+		} finally {
+			Time.noTimeLimit = previous;
+		}
+	}
+
+	@Test
+	public void testExpiredRoundStopsEvenTheSearchesWithoutTimeLimit() {
+		GameState gs = randomGameState(new Random(9), 30, 20, 8);
+		City[] cities = gs.map().citiesById();
+		MatchContext context = new MatchContext();
+		context.time.startRound();
+		context.time.expire();
+
+		List<Map<Integer, List<NAMOAPath>>> results = context.searchContext().findPaths(gs, List.of(cities[0]),
+				List.of(List.of(cities[7])), false, false);
+
+		assertEquals(NAMOASearchContext.Termination.TIME, context.searchContext().termination(0));
+		assertTrue(results.get(0).get(cities[7].id()).isEmpty());
+	}
+
+	@Test
+	public void testNodeBudgetFollowsTheTimeLeftAndTheStartCount() {
+		MatchContext context = new MatchContext();
+		NAMOASearchContext search = context.searchContext();
+		boolean previous = Time.noTimeLimit;
+		try {
+			Time.noTimeLimit = false;
+			context.time.startRound();
+			int one = search.nodeBudget(1, false);
+			int eight = search.nodeBudget(8, false);
+			assertTrue(one >= eight, one + " < " + eight);
+			assertTrue(one <= NAMOAStar.MAX_SCHEDULED_NODES);
+			assertTrue(eight >= NAMOAStar.MIN_SCHEDULED_NODES);
+			assertTrue(search.nodeBudget(8, true) >= eight);
+
+			context.time.expire();
+			assertEquals(NAMOAStar.MIN_SCHEDULED_NODES, search.nodeBudget(1, false));
+
+			// Reproducible without time limit
+			Time.noTimeLimit = true;
+			assertEquals(NAMOAStar.MAX_NODES, search.nodeBudget(1, false));
+		} finally {
+			Time.noTimeLimit = previous;
+		}
+	}
+
+	static GameState randomGameState(Random random, int width, int height, int cityCount) {
+		TerrainType[][] terrain = new TerrainType[width][height];
+		TerrainType[] choices = { TerrainType.PLAIN, TerrainType.PLAIN, TerrainType.RIVER, TerrainType.MOUNTAIN };
+		for (int x = 0; x < width; x++) {
+			for (int y = 0; y < height; y++) {
+				terrain[x][y] = choices[random.nextInt(choices.length)];
+			}
+		}
+		Map<Integer, City> cities = new HashMap<>();
+		for (int i = 0; i < cityCount; i++) {
+			// One city per column band so that they never overlap
+			cities.put(i, new City(i, i * width / cityCount, random.nextInt(height), 0, List.of()));
+		}
+		Map<Coord, Rail> rails = new HashMap<>();
+		for (int i = 0; i < width * height / 10; i++) {
+			int x = random.nextInt(width);
+			int y = random.nextInt(height);
+			rails.put(MatchConstants.coord(x, y), new Rail(x, y, RailOwner.values()[random.nextInt(3)]));
+		}
+		return NAMOAStarTest.createGameStateWithCitiesAndTerrain(cities, rails, terrain);
+	}
+}
@@ -0,0 +1,62 @@
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * NAMOAStar.findPaths (array based search context) against the former object
+ * based implementation, on the maps of NAMOAStarTest.
+ */
+@Tag("benchmark")
+public class NAMOAStarBenchmarkTest {
+
+	@Test
+	public void benchmarkRealGameConstraintsMap() {
+		MatchConstants.width = 30;
+		MatchConstants.height = 20;
+		MatchConstants.initCoords(30, 20);
+
+		// Same map as NAMOAStarTest.testPerformance_RealGameConstraints
+		Map<Integer, City> cities = new HashMap<>();
+		int[][] positions = { { 2, 2 }, { 27, 2 }, { 2, 17 }, { 27, 17 }, { 15, 10 }, { 8, 5 }, { 22, 5 },
+				{ 8, 15 }, { 22, 15 }, { 5, 10 }, { 25, 10 }, { 15, 2 } };
+		for (int i = 0; i < positions.length; i++) {
+			cities.put(i, new City(i, positions[i][0], positions[i][1], 0, List.of()));
+		}
+		TerrainType[][] terrain = new TerrainType[30][20];
+		for (int x = 0; x < 30; x++) {
+			for (int y = 0; y < 20; y++) {
+				terrain[x][y] = (x + y) % 3 == 0 ? TerrainType.RIVER
+						: (x * y) % 5 == 0 ? TerrainType.MOUNTAIN : TerrainType.PLAIN;
+			}
+		}
+		GameState gs = NAMOAStarTest.createGameStateWithCitiesAndTerrain(cities, Map.of(), terrain);
+		City start = cities.get(0);
+		List<City> targets = List.of(cities.get(1), cities.get(2), cities.get(3));
+
+		Bench.run("LegacyNAMOAStar 30x20, 3 targets", 500, 500,
+				() -> LegacyNAMOAStar.findPaths(gs, start, targets));
+		Bench.run("NAMOAStar 30x20, 3 targets", 500, 500, () -> NAMOAStar.findPaths(gs, start, targets));
+	}
+
+	@Test
+	public void benchmarkPlainMap() {
+		MatchConstants.width = 30;
+		MatchConstants.height = 20;
+		MatchConstants.initCoords(30, 20);
+
+		Map<Integer, City> cities = new HashMap<>();
+		cities.put(0, new City(0, 0, 0, 0, List.of()));
+		cities.put(1, new City(1, 29, 19, 0, List.of()));
+		GameState gs = NAMOAStarTest.createGameStateWithCitiesAndTerrain(cities, Map.of(), TerrainType.PLAIN);
+		City start = cities.get(0);
+		List<City> targets = List.of(cities.get(1));
+
+		Bench.run("LegacyNAMOAStar 30x20 plain, corner to corner", 500, 500,
+				() -> LegacyNAMOAStar.findPaths(gs, start, targets));
+		Bench.run("NAMOAStar 30x20 plain, corner to corner", 500, 500,
+				() -> NAMOAStar.findPaths(gs, start, targets));
+	}
+}
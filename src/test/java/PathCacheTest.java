@@ -0,0 +1,124 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PathCacheTest {
+
+	private SimpleAI ai;
+	private GameState gameState;
+
+	@BeforeEach
+	public void setUp() {
+		MatchConstants.width = 30;
+		MatchConstants.height = 20;
+		MatchConstants.initCoords(30, 20);
+
+		ai = new SimpleAI();
+		Map<Integer, City> cities = new HashMap<>();
+		cities.put(0, new City(0, 0, 0, 0, List.of(1)));
+		cities.put(1, new City(1, 6, 0, 0, List.of()));
+		gameState = NAMOAStarTest.createGameStateWithCitiesAndTerrain(cities, Map.of(), TerrainType.PLAIN);
+	}
+
+	private List<NAMOAPath> pathsFrom0To1(GameState gs) {
+		return ai.findNAMOAPathsForCities(gs, true).get(0).pathsToTargets().get(1);
+	}
+
+	private static TurnChanges changes(GameState gs) {
+		return new TurnChanges(gs.round(), gs.rails().cellCount(), gs.map().regions().length, false);
+	}
+
+	@Test
+	public void testEvaluateMatchesSearchCosts() {
+		Random random = new Random(5);
+		for (int round = 0; round < 20; round++) {
+			GameState gs = NAMOASearchContextTest.randomGameState(random, 30, 20, 6);
+			City[] cities = gs.map().citiesById();
+			Map<Integer, List<NAMOAPath>> paths = NAMOAStar.findPaths(gs, cities[0],
+					List.of(cities[3], cities[5]));
+			for (List<NAMOAPath> targetPaths : paths.values()) {
+				for (NAMOAPath path : targetPaths) {
+					assertEquals(path.cost(), PathCache.evaluate(gs, path.path()));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testUntouchedPathsAreReused() {
+		List<NAMOAPath> first = pathsFrom0To1(gameState);
+		List<NAMOAPath> second = pathsFrom0To1(gameState);
+
+		assertEquals(first, second);
+		assertEquals(1, ai.pathCache.hits);
+		assertEquals(1, ai.pathCache.misses);
+	}
+
+	@Test
+	public void testOwnRailsOnPathKeepTheEntryWithLowerCost() {
+		NAMOAPath path = pathsFrom0To1(gameState).get(0);
+		Coord built = path.path().get(1);
+		GameState gs = gameState.withRails(List.of(built), RailOwner.ME);
+		TurnChanges changes = changes(gs);
+		changes.recordCell(built.y() * 30 + built.x(), TurnChanges.RAIL_ADDED, RailOwner.NONE);
+
+		ai.pathCache.invalidate(changes, gs);
+		NAMOAPath reused = pathsFrom0To1(gs).get(0);
+
+		assertEquals(1, ai.pathCache.hits);
+		assertEquals(path.path(), reused.path());
+		assertEquals(path.buildCost() - 1, reused.buildCost());
+	}
+
+	@Test
+	public void testOpponentRailOnPathInvalidatesTheEntry() {
+		NAMOAPath path = pathsFrom0To1(gameState).get(0);
+		Coord built = path.path().get(2);
+		GameState gs = gameState.withRails(List.of(built), RailOwner.OPPONENT);
+		TurnChanges changes = changes(gs);
+		changes.recordCell(built.y() * 30 + built.x(), TurnChanges.RAIL_ADDED, RailOwner.NONE);
+
+		ai.pathCache.invalidate(changes, gs);
+
+		assertEquals(0, ai.pathCache.size());
+		pathsFrom0To1(gs);
+		assertEquals(0, ai.pathCache.hits);
+	}
+
+	@Test
+	public void testInstabilityChangeOnCrossedRegionInvalidatesTheEntry() {
+		pathsFrom0To1(gameState);
+		GameState gs = gameState.increaseInstability(0);
+		TurnChanges changes = changes(gs);
+		changes.recordInstability(0, 0);
+
+		ai.pathCache.invalidate(changes, gs);
+
+		assertEquals(0, ai.pathCache.size());
+	}
+
+	@Test
+	public void testSpeculativeInstabilityIsNotServedFromCache() {
+		pathsFrom0To1(gameState);
+
+		// Same turn, but the region got disrupted by the AI itself
+		pathsFrom0To1(gameState.increaseInstability(0));
+
+		assertEquals(0, ai.pathCache.hits);
+	}
+
+	@Test
+	public void testFullRefreshClearsTheCache() {
+		pathsFrom0To1(gameState);
+
+		ai.pathCache.invalidate(new TurnChanges(1, gameState.rails().cellCount(), 1, true), gameState);
+
+		assertEquals(0, ai.pathCache.size());
+	}
+}
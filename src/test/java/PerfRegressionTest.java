@@ -0,0 +1,219 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Performance tier, run with mvn test -Pperf (or ./gradlew perfTest): the hot
+ * paths measured on generated mid-games after warm-up, in FORKS fresh JVMs as
+ * the JIT compiles each one its own way, their median and p99 compared with
+ * the baseline checked in src/test/resources, which holds the median of the
+ * forks. A scenario fails when the percentile of every fork is above the
+ * baseline plus the tolerance of the file (a ratio, but at least the floor in
+ * us). Without regression a fork is above the median of the baseline forks
+ * half of the time, so all of them are by noise 1 time in 2^FORKS: the
+ * tolerance only covers the drift of the machine and a slowdown of a few tens
+ * of percent shows. SimpleAI.compute also fails when the p99 of every fork
+ * leaves no room in the turn budget (Time.roundBudgetNano).
+ *
+ * The baseline depends on the machine: after a deliberate change, or on a new
+ * machine, rewrite it with -Dperf.updateBaseline=true and commit it.
+ */
+@Tag("perf")
+public class PerfRegressionTest {
+
+	private static final Path BASELINE = Path.of("src/test/resources/perf-baseline.properties");
+	private static final long WARMUP_MILLIS = 3000; // JIT compilations and their GCs settle
+	private static final int MEASURED = 1000;
+	private static final int FORKS = 5;
+	private static final String MEASURE = "MEASURE "; // results printed by a fork: scenario, median, p99 in ns
+
+	private static final Properties baseline = new Properties();
+	private final List<String> regressions = new ArrayList<>();
+	private static boolean update;
+
+	@BeforeAll
+	public static void loadBaseline() throws IOException {
+		update = Boolean.getBoolean("perf.updateBaseline");
+		if (Files.exists(BASELINE)) {
+			try (Reader reader = Files.newBufferedReader(BASELINE)) {
+				baseline.load(reader);
+			}
+		}
+	}
+
+	@AfterAll
+	public static void saveBaseline() throws IOException {
+		if (update) {
+			// Sorted and without date, for readable diffs
+			try (Writer writer = Files.newBufferedWriter(BASELINE)) {
+				writer.write("# Perf regression baseline in us, rewrite with -Dperf.updateBaseline=true\n");
+				for (String key : new TreeSet<>(baseline.stringPropertyNames())) {
+					writer.write(key + "=" + baseline.getProperty(key) + "\n");
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSimpleAICompute() throws IOException, InterruptedException {
+		Map<String, long[]> forks = fork("simpleAI.compute");
+		for (String scenario : List.of("simpleAI.compute.20x10", "simpleAI.compute.30x20")) {
+			check(scenario, forks);
+			long fastest = forks.get(scenario + ".p99")[0];
+			assertTrue(fastest < Time.roundBudgetNano(),
+					String.format("SimpleAI.compute p99 %.1f ms over the turn budget", fastest / 1e6));
+		}
+		assertNoRegression();
+	}
+
+	@Test
+	public void testNAMOAStarFindPaths() throws IOException, InterruptedException {
+		Map<String, long[]> forks = fork("namoaStar.findPaths");
+		for (String scenario : List.of("namoaStar.findPaths.20x10", "namoaStar.findPaths.30x20")) {
+			check(scenario, forks);
+		}
+		assertNoRegression();
+	}
+
+	// Measures of a fork, printed for the test which started it
+	public static void main(String[] args) {
+		Time.noTimeLimit = true; // measure the whole work, not the cut-off
+		for (int[] map : new int[][] { { 20, 10 }, { 30, 20 } }) {
+			GameState gs = new MapGenerator(map[0], map[1], 11).midGame(10).load();
+			String size = map[0] + "x" + map[1];
+			Bench.Result result = switch (args[0]) {
+				// A new AI each time: no path cached, as on a turn where everything changed
+				case "simpleAI.compute" -> Bench.runAfterWarmup("SimpleAI.compute " + size, WARMUP_MILLIS, MEASURED,
+						() -> new SimpleAI().compute(gs));
+				case "namoaStar.findPaths" -> measureFindPaths(gs, size);
+				default -> throw new IllegalArgumentException(args[0]);
+			};
+			System.out.println(MEASURE + args[0] + "." + size + " " + result.percentile(50) + " "
+					+ result.percentile(99));
+		}
+	}
+
+	private static Bench.Result measureFindPaths(GameState gs, String size) {
+		City[] cities = gs.map().citiesById();
+		List<City> starts = new ArrayList<>();
+		List<List<City>> targets = new ArrayList<>();
+		for (City city : cities) {
+			if (!city.desiredCityIds().isEmpty()) {
+				starts.add(city);
+				targets.add(city.desiredCityIds().stream().map(id -> cities[id]).toList());
+			}
+		}
+		return Bench.runAfterWarmup("NAMOAStar.findPaths " + size, WARMUP_MILLIS, MEASURED, () -> {
+			for (int i = 0; i < starts.size(); i++) {
+				NAMOAStar.findPaths(gs, starts.get(i), targets.get(i));
+			}
+		});
+	}
+
+	// Percentiles of the scenarios of a group over FORKS JVMs with the options of
+	// this one, sorted (keys: scenario.median, scenario.p99)
+	private static Map<String, long[]> fork(String group) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<>();
+		command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+		for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+			if (!argument.startsWith("-agentlib:jdwp")) {
+				command.add(argument);
+			}
+		}
+		command.addAll(List.of("-cp", classPath(), PerfRegressionTest.class.getName(), group));
+
+		Map<String, List<Long>> values = new TreeMap<>();
+		for (int fork = 1; fork <= FORKS; fork++) {
+			// The bot logs on stderr
+			Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+			try (BufferedReader reader = process.inputReader()) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.startsWith(MEASURE)) {
+						String[] words = line.substring(MEASURE.length()).split(" ");
+						values.computeIfAbsent(words[0] + ".median", key -> new ArrayList<>()).add(Long.parseLong(words[1]));
+						values.computeIfAbsent(words[0] + ".p99", key -> new ArrayList<>()).add(Long.parseLong(words[2]));
+					} else {
+						System.out.println("fork " + fork + ": " + line);
+					}
+				}
+			}
+			assertEquals(0, process.waitFor(), "Fork " + fork + " of " + group);
+		}
+		Map<String, long[]> sorted = new TreeMap<>();
+		values.forEach((key, list) -> sorted.put(key, list.stream().mapToLong(Long::longValue).sorted().toArray()));
+		return sorted;
+	}
+
+	// Surefire loads the tests in its own class loader, on top of a bare class path
+	private static String classPath() {
+		if (PerfRegressionTest.class.getClassLoader() instanceof URLClassLoader loader) {
+			List<String> entries = new ArrayList<>();
+			for (URL url : loader.getURLs()) {
+				try {
+					entries.add(Path.of(url.toURI()).toString());
+				} catch (URISyntaxException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			return String.join(File.pathSeparator, entries);
+		}
+		return System.getProperty("java.class.path");
+	}
+
+	// Compares (or records) the median and p99 of a scenario
+	private void check(String scenario, Map<String, long[]> forks) {
+		check(scenario, "median", forks.get(scenario + ".median"));
+		check(scenario, "p99", forks.get(scenario + ".p99"));
+	}
+
+	private void check(String scenario, String name, long[] values) {
+		String key = scenario + "." + name;
+		if (update) {
+			baseline.setProperty(key, String.format(Locale.ROOT, "%.1f", values[values.length / 2] / 1000.0));
+			return;
+		}
+		String expected = baseline.getProperty(key);
+		if (expected == null) {
+			System.out.println("No baseline for " + key + ", run with -Dperf.updateBaseline=true");
+			return;
+		}
+		double tolerance = Double.parseDouble(baseline.getProperty("tolerance." + name, "0.1"));
+		double floor = Double.parseDouble(baseline.getProperty("floor." + name, "0"));
+		double limit = Math.max(Double.parseDouble(expected) * (1 + tolerance), Double.parseDouble(expected) + floor);
+		double fastest = values[0] / 1000.0;
+		System.out.printf("%-40s %-6s %8.1f us (forks from %8.1f to %8.1f), baseline %s us, limit %8.1f%n", scenario,
+				name, values[values.length / 2] / 1000.0, fastest, values[values.length - 1] / 1000.0, expected, limit);
+		if (fastest > limit) {
+			regressions.add(String.format("%s %s: %.1f us in the fastest of %d forks, baseline %s us + %.0f%%",
+					scenario, name, fastest, FORKS, expected, tolerance * 100));
+		}
+	}
+
+	private void assertNoRegression() {
+		assertTrue(regressions.isEmpty(), "Performance regressions: " + regressions);
+	}
+}
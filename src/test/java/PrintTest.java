@@ -0,0 +1,86 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PrintTest {
+
+	private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+	private PrintStream systemErr;
+	private Print.Level level;
+
+	@BeforeEach
+	public void setUp() {
+		Print.flush();
+		systemErr = System.err;
+		level = Print.level;
+		System.setErr(new PrintStream(err, true));
+	}
+
+	@AfterEach
+	public void tearDown() {
+		Print.flush();
+		System.setErr(systemErr);
+		Print.level = level;
+		for (Print.Category category : Print.Category.values()) {
+			Print.setCategoryEnabled(category, true);
+		}
+	}
+
+	@Test
+	public void testMessagesAreWrittenOnlyByFlushInOrder() {
+		Print.debug("first");
+		Print.debug(Print.Category.SEARCH, () -> "second");
+
+		assertEquals("", err.toString());
+		Print.flush();
+		assertEquals("first\nsecond\n", err.toString());
+		Print.flush();
+		assertEquals("first\nsecond\n", err.toString());
+	}
+
+	@Test
+	public void testDisabledMessagesAreNeverFormatted() {
+		Print.level = Print.Level.DEBUG;
+		Print.setCategoryEnabled(Print.Category.BUILD, false);
+		Print.trace(Print.Category.SEARCH, () -> fail("trace under the debug level"));
+		Print.debug(Print.Category.BUILD, () -> fail("disabled category"));
+		Print.debug(Print.Category.SEARCH, () -> "kept");
+		assertFalse(Print.isOn(Print.Level.DEBUG, Print.Category.BUILD));
+
+		Print.level = Print.Level.OFF;
+		Print.debug("dropped");
+
+		Print.flush();
+		assertEquals("kept\n", err.toString());
+	}
+
+	@Test
+	public void testSuppliersAreFormattedAtFlush() {
+		int[] calls = { 0 };
+		Print.debug(Print.Category.GENERAL, () -> "call " + ++calls[0]);
+
+		assertEquals(0, calls[0]);
+		Print.flush();
+		assertEquals(1, calls[0]);
+		assertEquals("call 1\n", err.toString());
+	}
+
+	@Test
+	public void testOldestMessagesAreDroppedWhenTheBufferIsFull() {
+		for (int i = 0; i < Print.BUFFER_SIZE + 2; i++) {
+			Print.debug("m" + i);
+		}
+
+		Print.flush();
+		String[] lines = err.toString().split("\n");
+		assertEquals(Print.BUFFER_SIZE + 1, lines.length);
+		assertEquals("(2 older debug messages dropped)", lines[0]);
+		assertEquals("m2", lines[1]);
+		assertEquals("m" + (Print.BUFFER_SIZE + 1), lines[lines.length - 1]);
+	}
+}
@@ -0,0 +1,107 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class RailNetworkTest {
+
+	private final GameEngine engine = new GameEngine();
+
+	@Test
+	public void testHypotheticalPlacementsAreRolledBack() {
+		GameState gs = new RailReferee(RailReferee.LINE_MAP).initialState();
+		gs = engine.apply(gs, RailReferee.parseOutput("PLACE_TRACKS 1 0;PLACE_TRACKS 2 0"), List.of(), null);
+		RailNetwork network = new RailNetwork();
+		network.rebuild(gs);
+		City[] cities = gs.map().citiesById();
+
+		assertFalse(network.isConnected(cities[0], cities[1]));
+		assertTrue(network.wouldConnect(cities[0], cities[1], List.of(new Coord(3, 0))));
+		assertEquals(1, network.countCompletedBy(List.of(new Coord(3, 0))));
+		assertEquals(0, network.countCompletedBy(List.of()));
+		assertFalse(network.isConnected(cities[0], cities[1]));
+
+		network.addRail(3, 0);
+		assertTrue(network.isConnected(cities[0], cities[1]));
+		assertEquals(0, network.countCompletedBy(List.of(new Coord(3, 0))));
+	}
+
+	@Test
+	public void testConnectionDesiredBothWaysIsCompletedOnce() {
+		// Every pair of the 3 towns desired both ways: more desires than connection ids
+		String init = "0\n"
+				+ "5 1\n"
+				+ "0 0\n1 0\n1 0\n1 0\n2 0\n"
+				+ "3\n"
+				+ "0 0 0 1,2\n"
+				+ "1 2 0 0,2\n"
+				+ "2 4 0 0,1\n";
+		GameState gs = new RailReferee(init).initialState();
+		RailNetwork network = new RailNetwork();
+		network.rebuild(gs);
+
+		assertEquals(1, network.countCompletedBy(List.of(new Coord(1, 0))));
+		assertEquals(3, network.countCompletedBy(List.of(new Coord(1, 0), new Coord(3, 0))));
+	}
+
+	@Test
+	public void testRemovedRailsSplitTheirComponent() {
+		GameState gs = new RailReferee(RailReferee.LINE_MAP).initialState();
+		RailNetwork network = new RailNetwork();
+		network.rebuild(gs);
+		for (int x = 1; x < 4; x++) {
+			network.addRail(x, 0);
+		}
+		City[] cities = gs.map().citiesById();
+		assertTrue(network.isConnected(cities[0], cities[1]));
+
+		network.removeRails(new int[] { 2 }, 1);
+
+		assertFalse(network.isConnected(cities[0], cities[1]));
+		assertTrue(network.wouldConnect(cities[0], cities[1], List.of(new Coord(2, 0))));
+	}
+
+	@Test
+	public void testFollowsTheActiveConnectionsOnRandomTurns() {
+		for (long seed = 1; seed <= 5; seed++) {
+			RailReferee referee = new RailReferee(MatchInputs.initInput(0, 16, 8, 6, seed));
+			GameState gs = referee.initialState();
+			RailNetwork network = new RailNetwork();
+			network.update(gs, null);
+			Random random = new Random(seed);
+			City[] cities = gs.map().citiesById();
+			for (int turn = 0; turn < 60; turn++) {
+				GameState next = engine.apply(gs.copy(), randomActions(referee, cities, random),
+						randomActions(referee, cities, random), null);
+				network.update(next, TurnChanges.between(gs, next));
+				gs = next;
+
+				for (City city : cities) {
+					for (int desired : city.desiredCityIds()) {
+						assertEquals(gs.cachedConnections().contains(MatchConstants.connection(city.id(), desired)),
+								network.isConnected(city, cities[desired]), "seed " + seed + " turn " + turn);
+					}
+				}
+			}
+		}
+	}
+
+	private static List<Action> randomActions(RailReferee referee, City[] cities, Random random) {
+		List<Action> actions = new ArrayList<>();
+		if (random.nextInt(3) == 0) {
+			City from = cities[random.nextInt(cities.length)];
+			City to = cities[random.nextInt(cities.length)];
+			actions.add(Action.autoPlace(from.x(), from.y(), to.x(), to.y()));
+		}
+		for (int i = random.nextInt(4); i > 0; i--) {
+			actions.add(Action.buildRail(random.nextInt(referee.width), random.nextInt(referee.height)));
+		}
+		if (random.nextInt(3) == 0) {
+			actions.add(Action.disruptRegion(random.nextInt(referee.width * referee.height / 9)));
+		}
+		return actions;
+	}
+}
@@ -0,0 +1,589 @@
+import java.io.ByteArrayInputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * Headless referee of the 2025 rail game. It follows the hooks of the
+ * AbstractReferee framework (src/misc/java/MultiReferee.java): init and turn
+ * input per player, player output handling, game update, scores. The framework
+ * itself talks to the arena over stdio; here the two AIs are driven through
+ * method calls, each player parsing its input in its own MatchContext, so a
+ * whole match takes milliseconds and several can be played at once.
+ *
+ * Rules:
+ * - each turn a player has 3 paint: plain costs 1, river 2, mountain and POI 3;
+ * - no rail on a town, on an existing rail or in an inked region, and a
+ * placement which can't be paid is ignored;
+ * - AUTOPLACE builds the cheapest path between two cells, nothing if a path of
+ * rails already exists, and stops at the first placement which can't be made.
+ * Only the first AUTOPLACE of a player's turn is played;
+ * - a cell placed by both players in the same turn gets a neutral rail;
+ * - placements resolve before DISRUPT (one per player per turn, given a region
+ * id or a cell of the region): +1 instability on a region which is not inked
+ * yet. At MatchConstants.INSTABILITY_THRESHOLD
+ * the region is inked: its rails are removed and it can't be built anymore;
+ * - for each town and each town it desires, the shortest path over rails and
+ * towns (ties broken N, E, S, W from the requesting town) is an active
+ * connection, and every owned rail on it scores 1 point for its owner at the
+ * end of each turn;
+ * - the match ends after 100 turns, or once inked regions cut every desired
+ * connection, the highest score wins.
+ */
+public class RailReferee {
+
+	static final int PAINT_PER_TURN = 3;
+	static final int NEUTRAL = 2;
+	private static final int NO_RAIL = -1;
+	private static final int[] DX = { 0, 1, 0, -1 }; // NORTH, EAST, SOUTH, WEST
+	private static final int[] DY = { -1, 0, 1, 0 };
+	// 5x1 map, regions 0 | 1 | 1 | 2 | 3, terrain town | plain | river | mountain | town,
+	// town 0 at (0,0) wants town 1 at (4,0)
+	static final String LINE_MAP = "0\n"
+			+ "5 1\n"
+			+ "0 0\n1 0\n1 1\n2 2\n3 0\n"
+			+ "2\n"
+			+ "0 0 0 1\n"
+			+ "1 4 0 x\n";
+
+	public record MatchResult(int[] scores, int winner, int turns, long[][] turnNanos, int[] ignoredActions,
+			Telemetry[] telemetry) {
+
+		boolean isDraw() {
+			return winner < 0;
+		}
+	}
+
+	// Map
+	final int width;
+	final int height;
+	private final int[] regionOf;
+	private final TerrainType[] terrain;
+	private final int[] townAt; // town id per cell, -1 if none
+	private final City[] towns;
+	private final int regionCount;
+
+	// Game state
+	private final int[] owner; // NO_RAIL, player index or NEUTRAL
+	private final ConnectionSet[] cellConnections;
+	private final ConnectionSet activeConnections = new ConnectionSet();
+	private final int[] instability;
+	private final boolean[] inked;
+	private final int[] scores = new int[2];
+	private final int[] ignoredActions = new int[2];
+	private int turn;
+	private boolean connectionsCut; // no desired connection can be built anymore
+
+	// Expected parsed state, see getStateForPlayer
+	private final MapDefinition map;
+	private final List<List<Tile>> regionCells = new ArrayList<>();
+
+	/** Builds the match from an init input, as the arena sends it (the player id is ignored) */
+	RailReferee(String initInput) {
+		InputReader in = new InputReader(new ByteArrayInputStream(initInput.getBytes()));
+		in.nextInt();
+		this.width = in.nextInt();
+		this.height = in.nextInt();
+		int cellCount = width * height;
+		this.regionOf = new int[cellCount];
+		this.terrain = new TerrainType[cellCount];
+		int maxRegion = 0;
+		for (int cell = 0; cell < cellCount; cell++) {
+			regionOf[cell] = in.nextInt();
+			terrain[cell] = TerrainType.values()[in.nextInt()];
+			maxRegion = Math.max(maxRegion, regionOf[cell]);
+		}
+		this.regionCount = maxRegion + 1;
+		int townCount = in.nextInt();
+		this.towns = new City[townCount];
+		this.townAt = new int[cellCount];
+		Arrays.fill(townAt, -1);
+		for (int i = 0; i < townCount; i++) {
+			int id = in.nextInt();
+			int x = in.nextInt();
+			int y = in.nextInt();
+			int desiredCount = in.nextIntList();
+			List<Integer> desired = new ArrayList<>(desiredCount);
+			for (int d = 0; d < desiredCount; d++) {
+				desired.add(in.intListValue(d));
+			}
+			towns[id] = new City(id, x, y, regionOf[y * width + x], desired);
+			townAt[y * width + x] = id;
+		}
+
+		this.owner = new int[cellCount];
+		Arrays.fill(owner, NO_RAIL);
+		this.cellConnections = new ConnectionSet[cellCount];
+		for (int cell = 0; cell < cellCount; cell++) {
+			cellConnections[cell] = new ConnectionSet();
+		}
+		this.instability = new int[regionCount];
+		this.inked = new boolean[regionCount];
+
+		TerrainType[][] terrainType = new TerrainType[width][height];
+		int[][] regionIds = new int[width][height];
+		int[][] cityIds = new int[width][height];
+		for (int i = 0; i < regionCount; i++) {
+			regionCells.add(new ArrayList<>());
+		}
+		for (int cell = 0; cell < cellCount; cell++) {
+			int x = cell % width;
+			int y = cell / width;
+			terrainType[x][y] = terrain[cell];
+			regionIds[x][y] = regionOf[cell];
+			cityIds[x][y] = townAt[cell];
+			City city = townAt[cell] >= 0 ? towns[townAt[cell]] : null;
+			regionCells.get(regionOf[cell]).add(new Tile(x, y, regionOf[cell], terrain[cell], city));
+		}
+		this.map = new MapDefinition(width, height, terrainType, regionIds, cityIds, towns, regions());
+	}
+
+	/**
+	 * Plays a whole match, ai0 being player 0. Each AI is created on the context
+	 * its player parses the input with. The latency of a turn is measured from
+	 * the parsing of the input to the actions, as the arena would see it.
+	 */
+	MatchResult play(Function<MatchContext, AI> ai0, Function<MatchContext, AI> ai1) {
+		MatchContext[] contexts = { new MatchContext(), new MatchContext() };
+		AI[] ais = new AI[2];
+		for (int player = 0; player < 2; player++) {
+			contexts[player].initMatch(reader(getInitInputForPlayer(player)));
+			ais[player] = (player == 0 ? ai0 : ai1).apply(contexts[player]);
+		}
+		long[][] turnNanos = new long[2][MatchConstants.MAX_TURNS];
+		while (!gameOver()) {
+			List<List<Action>> actions = new ArrayList<>(2);
+			for (int player = 0; player < 2; player++) {
+				InputReader in = reader(getInputForPlayer(player));
+				long start = System.nanoTime();
+				GameState gs = contexts[player].initRound(in);
+				ais[player].onTurnChanges(contexts[player].turnChanges());
+				actions.add(ais[player].compute(gs));
+				turnNanos[player][turn] = System.nanoTime() - start;
+				contexts[player].finalizeRound(actions.get(player), gs);
+			}
+			updateGame(actions.get(0), actions.get(1));
+		}
+		return new MatchResult(scores.clone(), getWinner(), turn, turnNanos, ignoredActions.clone(),
+				new Telemetry[] { contexts[0].telemetry, contexts[1].telemetry });
+	}
+
+	static InputReader reader(String[] lines) {
+		return new InputReader(new ByteArrayInputStream((String.join("\n", lines) + "\n").getBytes()));
+	}
+
+	/** State of player 0 at the start of the match, parsed in the static match */
+	GameState initialState() {
+		Player.initMatch(reader(getInitInputForPlayer(0)));
+		return getStateForPlayer(0).copy();
+	}
+
+	boolean gameOver() {
+		return turn >= MatchConstants.MAX_TURNS || connectionsCut;
+	}
+
+	int getScore(int player) {
+		return scores[player];
+	}
+
+	int getTurn() {
+		return turn;
+	}
+
+	int getWinner() {
+		return scores[0] == scores[1] ? -1 : scores[0] > scores[1] ? 0 : 1;
+	}
+
+	private Region[] regions() {
+		Region[] regions = new Region[regionCount];
+		for (int i = 0; i < regionCount; i++) {
+			ConnectionSet connections = new ConnectionSet();
+			boolean hasCity = false;
+			for (Tile tile : regionCells.get(i)) {
+				connections.addAll(cellConnections[tile.y() * width + tile.x()]);
+				hasCity |= tile.hasCity();
+			}
+			int reported = inked[i] ? Math.max(instability[i], MatchConstants.INSTABILITY_THRESHOLD) : instability[i];
+			regions[i] = new Region(i, reported, regionCells.get(i), connections, hasCity);
+		}
+		return regions;
+	}
+
+	/** The state the player should parse from getInputForPlayer this turn */
+	GameState getStateForPlayer(int player) {
+		RailBoard rails = new RailBoard(width, height);
+		for (int cell = 0; cell < width * height; cell++) {
+			if (owner[cell] == NO_RAIL) {
+				continue;
+			}
+			RailOwner railOwner = owner[cell] == player ? RailOwner.ME
+					: owner[cell] == NEUTRAL ? RailOwner.CONTESTED : RailOwner.OPPONENT;
+			rails.put(cell % width, cell / width, railOwner);
+			if (!cellConnections[cell].isEmpty()) {
+				rails.setConnections(cell % width, cell / width, new ConnectionSet(cellConnections[cell]));
+			}
+		}
+		return new GameState(turn + 1, map.withRegions(regions()), rails, scores[player], scores[1 - player],
+				new ConnectionSet(activeConnections));
+	}
+
+	String[] getInitInputForPlayer(int player) {
+		List<String> lines = new ArrayList<>();
+		lines.add(String.valueOf(player));
+		lines.add(width + " " + height);
+		for (int cell = 0; cell < width * height; cell++) {
+			lines.add(regionOf[cell] + " " + terrain[cell].ordinal());
+		}
+		lines.add(String.valueOf(towns.length));
+		for (City town : towns) {
+			String desired = town.desiredCityIds().isEmpty() ? "x"
+					: String.join(",", town.desiredCityIds().stream().map(String::valueOf).toList());
+			lines.add(town.id() + " " + town.x() + " " + town.y() + " " + desired);
+		}
+		return lines.toArray(new String[0]);
+	}
+
+	String[] getInputForPlayer(int player) {
+		String[] lines = new String[2 + width * height];
+		lines[0] = String.valueOf(scores[player]);
+		lines[1] = String.valueOf(scores[1 - player]);
+		for (int cell = 0; cell < width * height; cell++) {
+			StringBuilder connections = new StringBuilder();
+			for (Connection connection : cellConnections[cell]) {
+				connections.append(connections.length() == 0 ? "" : ",").append(connection.fromId()).append('-')
+						.append(connection.toId());
+			}
+			int region = regionOf[cell];
+			lines[2 + cell] = owner[cell] + " " + instability[region] + " " + (inked[region] ? 1 : 0) + " "
+					+ (connections.length() == 0 ? "x" : connections);
+		}
+		return lines;
+	}
+
+	/** Actions of an output line: commands separated by ';' */
+	static List<Action> parseOutput(String output) {
+		List<Action> actions = new ArrayList<>();
+		for (String command : output.split(";")) {
+			String[] words = command.trim().split("\\s+");
+			switch (words[0]) {
+				case "PLACE_TRACKS" -> actions.add(new Action(ActionType.PLACE_TRACKS,
+						new Coord(Integer.parseInt(words[1]), Integer.parseInt(words[2])), null, -1));
+				case "AUTOPLACE" -> actions.add(new Action(ActionType.AUTOPLACE,
+						new Coord(Integer.parseInt(words[1]), Integer.parseInt(words[2])),
+						new Coord(Integer.parseInt(words[3]), Integer.parseInt(words[4])), -1));
+				case "DISRUPT" -> actions.add(words.length > 2
+						// Region of a cell
+						? new Action(ActionType.DISRUPT,
+								new Coord(Integer.parseInt(words[1]), Integer.parseInt(words[2])), null, -1)
+						: new Action(ActionType.DISRUPT, null, null, Integer.parseInt(words[1])));
+				case "WAIT" -> actions.add(new Action(ActionType.WAIT, null, null, -1));
+				default -> {
+					// MESSAGE and unknown commands do nothing
+				}
+			}
+		}
+		return actions;
+	}
+
+	/** Resolves one turn from the actions of both players */
+	void updateGame(List<Action> actions0, List<Action> actions1) {
+		List<List<Action>> actions = List.of(actions0, actions1);
+
+		// Placements, then contested cells
+		int[] placedBy = new int[width * height];
+		Arrays.fill(placedBy, NO_RAIL);
+		int[] disrupts = { -1, -1 };
+		for (int player = 0; player < 2; player++) {
+			boolean[] planned = new boolean[width * height];
+			int paint = PAINT_PER_TURN;
+			boolean autoPlaced = false;
+			for (Action action : actions.get(player)) {
+				switch (action.type()) {
+					case PLACE_TRACKS -> {
+						int cell = cellOf(action.coord1());
+						if (cell < 0 || !canPlace(cell, planned) || cost(cell) > paint) {
+							ignoredActions[player]++;
+							continue;
+						}
+						planned[cell] = true;
+						paint -= cost(cell);
+					}
+					case AUTOPLACE -> {
+						if (autoPlaced) {
+							ignoredActions[player]++;
+							continue;
+						}
+						autoPlaced = true;
+						paint = autoPlace(player, action.coord1(), action.coord2(), planned, paint);
+					}
+					case DISRUPT -> {
+						int cell = cellOf(action.coord1());
+						int region = action.coord1() == null ? action.id() : cell < 0 ? -1 : regionOf[cell];
+						if (disrupts[player] >= 0 || region < 0 || region >= regionCount || inked[region]) {
+							ignoredActions[player]++;
+						} else {
+							disrupts[player] = region;
+						}
+					}
+					default -> {
+					}
+				}
+			}
+			for (int cell = 0; cell < planned.length; cell++) {
+				if (planned[cell]) {
+					placedBy[cell] = placedBy[cell] == NO_RAIL ? player : NEUTRAL;
+				}
+			}
+		}
+		for (int cell = 0; cell < placedBy.length; cell++) {
+			if (placedBy[cell] != NO_RAIL) {
+				owner[cell] = placedBy[cell];
+			}
+		}
+
+		// Disruptions
+		for (int region : disrupts) {
+			if (region >= 0) {
+				instability[region]++;
+			}
+		}
+		boolean inkedThisTurn = false;
+		for (int region = 0; region < regionCount; region++) {
+			if (!inked[region] && instability[region] >= MatchConstants.INSTABILITY_THRESHOLD) {
+				inked[region] = true;
+				inkedThisTurn = true;
+				for (int cell = 0; cell < owner.length; cell++) {
+					if (regionOf[cell] == region) {
+						owner[cell] = NO_RAIL;
+					}
+				}
+			}
+		}
+
+		updateConnections();
+		if (inkedThisTurn) {
+			connectionsCut = !canConnectAnyDesiredPair();
+		}
+		for (int cell = 0; cell < owner.length; cell++) {
+			if (owner[cell] == 0 || owner[cell] == 1) {
+				scores[owner[cell]] += cellConnections[cell].size();
+			}
+		}
+		turn++;
+	}
+
+	private int cellOf(Coord coord) {
+		if (coord == null || coord.x() < 0 || coord.x() >= width || coord.y() < 0 || coord.y() >= height) {
+			return -1;
+		}
+		return coord.y() * width + coord.x();
+	}
+
+	private int cost(int cell) {
+		return terrain[cell].buildCost();
+	}
+
+	private boolean canPlace(int cell, boolean[] planned) {
+		return townAt[cell] < 0 && owner[cell] == NO_RAIL && !inked[regionOf[cell]] && !planned[cell];
+	}
+
+	private boolean isPassable(int cell) {
+		return townAt[cell] >= 0 || !inked[regionOf[cell]];
+	}
+
+	// Cheapest path from one cell to another, counting the cells without rail
+	// (nor town, nor planned this turn) at their build cost. Returns the paint left.
+	private int autoPlace(int player, Coord from, Coord to, boolean[] planned, int paint) {
+		int start = cellOf(from);
+		int end = cellOf(to);
+		if (start < 0 || end < 0 || !isPassable(start) || !isPassable(end)) {
+			ignoredActions[player]++;
+			return paint;
+		}
+		int[] distance = new int[width * height];
+		int[] parent = new int[width * height];
+		Arrays.fill(distance, Integer.MAX_VALUE);
+		distance[start] = 0;
+		parent[start] = -1;
+		// Ordered by distance, then by discovery to keep the N, E, S, W preference
+		PriorityQueue<int[]> open = new PriorityQueue<>(
+				(a, b) -> a[0] != b[0] ? Integer.compare(a[0], b[0]) : Integer.compare(a[2], b[2]));
+		int discovered = 0;
+		open.add(new int[] { 0, start, discovered++ });
+		while (!open.isEmpty()) {
+			int[] node = open.poll();
+			int cell = node[1];
+			if (node[0] > distance[cell]) {
+				continue;
+			}
+			if (cell == end) {
+				break;
+			}
+			for (int dir = 0; dir < 4; dir++) {
+				int nx = cell % width + DX[dir];
+				int ny = cell / width + DY[dir];
+				if (nx < 0 || nx >= width || ny < 0 || ny >= height) {
+					continue;
+				}
+				int next = ny * width + nx;
+				if (!isPassable(next)) {
+					continue;
+				}
+				int step = owner[next] != NO_RAIL || townAt[next] >= 0 || planned[next] ? 0 : cost(next);
+				if (distance[cell] + step < distance[next]) {
+					distance[next] = distance[cell] + step;
+					parent[next] = cell;
+					open.add(new int[] { distance[next], next, discovered++ });
+				}
+			}
+		}
+		if (distance[end] == Integer.MAX_VALUE) {
+			ignoredActions[player]++;
+			return paint;
+		}
+		// Nothing to do when a path already exists
+		List<Integer> path = new ArrayList<>();
+		for (int cell = end; cell >= 0; cell = parent[cell]) {
+			path.add(0, cell);
+		}
+		for (int cell : path) {
+			if (owner[cell] != NO_RAIL || townAt[cell] >= 0 || planned[cell]) {
+				continue;
+			}
+			if (cost(cell) > paint) {
+				// The rest of the AUTOPLACE is ignored
+				ignoredActions[player]++;
+				break;
+			}
+			planned[cell] = true;
+			paint -= cost(cell);
+		}
+		return paint;
+	}
+
+	// Shortest path over rails and towns for each desired pair, from the requesting town
+	private void updateConnections() {
+		for (ConnectionSet connections : cellConnections) {
+			connections.clear();
+		}
+		activeConnections.clear();
+		int[] parent = new int[width * height];
+		for (City town : towns) {
+			if (town.desiredCityIds().isEmpty()) {
+				continue;
+			}
+			Map<Integer, Integer> reached = breadthFirstSearch(town, parent);
+			for (int desired : town.desiredCityIds()) {
+				City target = towns[desired];
+				if (!reached.containsKey(target.id())) {
+					continue;
+				}
+				int connectionId = Connection.id(town.id(), target.id());
+				activeConnections.addId(connectionId);
+				for (int cell = parent[target.y() * width + target.x()]; cell >= 0
+						&& townAt[cell] != town.id(); cell = parent[cell]) {
+					if (owner[cell] != NO_RAIL) {
+						cellConnections[cell].addId(connectionId);
+					}
+				}
+			}
+		}
+	}
+
+	// Whether a desired pair of towns is still linked by cells which aren't inked
+	private boolean canConnectAnyDesiredPair() {
+		boolean[] reached = new boolean[width * height];
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		for (City town : towns) {
+			if (town.desiredCityIds().isEmpty()) {
+				continue;
+			}
+			Arrays.fill(reached, false);
+			int start = town.y() * width + town.x();
+			reached[start] = true;
+			queue.add(start);
+			while (!queue.isEmpty()) {
+				int cell = queue.poll();
+				for (int dir = 0; dir < 4; dir++) {
+					int nx = cell % width + DX[dir];
+					int ny = cell / width + DY[dir];
+					if (nx < 0 || nx >= width || ny < 0 || ny >= height) {
+						continue;
+					}
+					int next = ny * width + nx;
+					if (!reached[next] && isPassable(next)) {
+						reached[next] = true;
+						queue.add(next);
+					}
+				}
+			}
+			for (int desired : town.desiredCityIds()) {
+				if (reached[towns[desired].y() * width + towns[desired].x()]) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	// Towns reached (id -> cell) from a town, filling parent with the BFS tree
+	private Map<Integer, Integer> breadthFirstSearch(City town, int[] parent) {
+		Arrays.fill(parent, Integer.MIN_VALUE);
+		Map<Integer, Integer> reached = new HashMap<>();
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		int start = town.y() * width + town.x();
+		parent[start] = -1;
+		queue.add(start);
+		while (!queue.isEmpty()) {
+			int cell = queue.poll();
+			if (townAt[cell] >= 0 && cell != start) {
+				reached.put(townAt[cell], cell);
+			}
+			for (int dir = 0; dir < 4; dir++) {
+				int nx = cell % width + DX[dir];
+				int ny = cell / width + DY[dir];
+				if (nx < 0 || nx >= width || ny < 0 || ny >= height) {
+					continue;
+				}
+				int next = ny * width + nx;
+				if (parent[next] != Integer.MIN_VALUE || !isPassable(next)
+						|| owner[next] == NO_RAIL && townAt[next] < 0) {
+					continue;
+				}
+				parent[next] = cell;
+				queue.add(next);
+			}
+		}
+		return reached;
+	}
+
+	// Test access to the referee state
+	int ownerAt(int x, int y) {
+		return owner[y * width + x];
+	}
+
+	int instabilityOf(int region) {
+		return instability[region];
+	}
+
+	boolean isInked(int region) {
+		return inked[region];
+	}
+
+	int ignoredActionsOf(int player) {
+		return ignoredActions[player];
+	}
+
+	ConnectionSet connectionsAt(int x, int y) {
+		return cellConnections[y * width + x];
+	}
+
+	ConnectionSet activeConnections() {
+		return activeConnections;
+	}
+}
@@ -0,0 +1,185 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class RailRefereeTest {
+
+	private RailReferee referee;
+
+	@BeforeEach
+	public void setUp() {
+		referee = new RailReferee(RailReferee.LINE_MAP);
+		Player.initMatch(RailReferee.reader(referee.getInitInputForPlayer(0)));
+	}
+
+	private void turn(String output0, String output1) {
+		referee.updateGame(RailReferee.parseOutput(output0), RailReferee.parseOutput(output1));
+	}
+
+	@Test
+	public void testPlacementsArePaidWithThePaintOfTheTurn() {
+		turn("PLACE_TRACKS 1 0;PLACE_TRACKS 2 0;PLACE_TRACKS 3 0", "WAIT");
+
+		assertEquals(0, referee.ownerAt(1, 0));
+		assertEquals(0, referee.ownerAt(2, 0));
+		assertEquals(-1, referee.ownerAt(3, 0));
+		assertEquals(1, referee.getTurn());
+	}
+
+	@Test
+	public void testCellPlacedByBothPlayersIsNeutral() {
+		turn("PLACE_TRACKS 1 0", "PLACE_TRACKS 1 0;PLACE_TRACKS 2 0");
+
+		assertEquals(RailReferee.NEUTRAL, referee.ownerAt(1, 0));
+		assertEquals(1, referee.ownerAt(2, 0));
+	}
+
+	@Test
+	public void testNoRailOnTownsOrExistingRails() {
+		turn("PLACE_TRACKS 0 0;PLACE_TRACKS 1 0", "WAIT");
+		turn("WAIT", "PLACE_TRACKS 1 0;PLACE_TRACKS 4 0");
+
+		assertEquals(-1, referee.ownerAt(0, 0));
+		assertEquals(0, referee.ownerAt(1, 0));
+		assertEquals(-1, referee.ownerAt(4, 0));
+	}
+
+	@Test
+	public void testInkedRegionLosesItsRailsAndCantBeBuiltAnymore() {
+		turn("PLACE_TRACKS 1 0", "PLACE_TRACKS 2 0");
+		for (int i = 0; i < MatchConstants.INSTABILITY_THRESHOLD / 2; i++) {
+			// Only the first DISRUPT of a player counts
+			turn("DISRUPT 1;DISRUPT 1", "DISRUPT 1");
+		}
+
+		assertTrue(referee.isInked(1));
+		assertEquals(-1, referee.ownerAt(1, 0));
+		assertEquals(-1, referee.ownerAt(2, 0));
+
+		turn("PLACE_TRACKS 1 0;DISRUPT 1", "WAIT");
+		assertEquals(-1, referee.ownerAt(1, 0));
+		assertEquals(MatchConstants.INSTABILITY_THRESHOLD, referee.instabilityOf(1));
+	}
+
+	@Test
+	public void testPlacementsResolveBeforeDisruptions() {
+		for (int i = 0; i < MatchConstants.INSTABILITY_THRESHOLD - 1; i++) {
+			turn("DISRUPT 2", "WAIT");
+		}
+		turn("WAIT", "PLACE_TRACKS 3 0;DISRUPT 2");
+
+		assertTrue(referee.isInked(2));
+		assertEquals(-1, referee.ownerAt(3, 0));
+	}
+
+	@Test
+	public void testAutoplaceStopsWhenPaintRunsOut() {
+		turn("AUTOPLACE 0 0 4 0", "WAIT");
+
+		assertEquals(0, referee.ownerAt(1, 0));
+		assertEquals(0, referee.ownerAt(2, 0));
+		assertEquals(-1, referee.ownerAt(3, 0));
+		assertTrue(referee.activeConnections().isEmpty());
+
+		turn("AUTOPLACE 0 0 4 0", "WAIT");
+		assertEquals(0, referee.ownerAt(3, 0));
+
+		// A path exists: nothing to build, the paint is left for the other placements
+		turn("AUTOPLACE 0 0 4 0", "WAIT");
+		assertEquals(0, referee.ownerAt(3, 0));
+	}
+
+	@Test
+	public void testDisruptGivenACellTargetsItsRegion() {
+		turn("DISRUPT 2 0", "DISRUPT 3 0");
+
+		assertEquals(1, referee.instabilityOf(1));
+		assertEquals(1, referee.instabilityOf(2));
+
+		// Outside of the map
+		turn("DISRUPT 5 0", "WAIT");
+		assertEquals(1, referee.instabilityOf(1));
+		assertEquals(1, referee.ignoredActionsOf(0));
+	}
+
+	@Test
+	public void testOnlyTheFirstAutoplaceOfATurnIsPlayed() {
+		turn("AUTOPLACE 0 0 1 0;AUTOPLACE 4 0 3 0", "WAIT");
+
+		assertEquals(0, referee.ownerAt(1, 0));
+		assertEquals(-1, referee.ownerAt(3, 0));
+		assertEquals(1, referee.ignoredActionsOf(0));
+	}
+
+	@Test
+	public void testMatchEndsOnceEveryDesiredConnectionIsCut() {
+		for (int i = 0; i < MatchConstants.INSTABILITY_THRESHOLD - 1; i++) {
+			turn("DISRUPT 2", "WAIT");
+			assertFalse(referee.gameOver());
+		}
+
+		turn("DISRUPT 2", "WAIT");
+		assertTrue(referee.isInked(2));
+		assertTrue(referee.gameOver());
+		assertEquals(MatchConstants.INSTABILITY_THRESHOLD, referee.getTurn());
+	}
+
+	@Test
+	public void testEachOwnedRailOfAnActiveConnectionScoresEveryTurn() {
+		turn("PLACE_TRACKS 1 0;PLACE_TRACKS 2 0", "PLACE_TRACKS 3 0");
+
+		Connection connection = MatchConstants.connection(0, 1);
+		assertEquals(List.of(connection), List.copyOf(referee.activeConnections()));
+		assertTrue(referee.connectionsAt(3, 0).contains(connection));
+		assertEquals(2, referee.getScore(0));
+		assertEquals(1, referee.getScore(1));
+
+		turn("WAIT", "WAIT");
+		assertEquals(4, referee.getScore(0));
+		assertEquals(2, referee.getScore(1));
+		assertEquals(0, referee.getWinner());
+	}
+
+	@Test
+	public void testStateMatchesTheParsedInput() {
+		turn("PLACE_TRACKS 1 0;PLACE_TRACKS 2 0", "PLACE_TRACKS 3 0;DISRUPT 2");
+
+		String[] init = referee.getInitInputForPlayer(1);
+		String[] turn = referee.getInputForPlayer(1);
+		assertEquals(2 + 5 + 1 + 2, init.length);
+		assertEquals(2 + 5, turn.length);
+		assertEquals("1 1 0 0-1", turn[2 + 3]);
+
+		Player.initMatch(RailReferee.reader(init));
+		GameState parsed = Player.initRound(RailReferee.reader(turn));
+		GameState built = referee.getStateForPlayer(1);
+
+		for (int x = 0; x < 5; x++) {
+			assertEquals(parsed.ownerAt(MatchConstants.coord(x, 0)), built.ownerAt(MatchConstants.coord(x, 0)));
+			assertEquals(parsed.rails().connectionsAt(x), built.rails().connectionsAt(x));
+		}
+		for (int region = 0; region < 4; region++) {
+			assertEquals(parsed.map().regions()[region].instability(), built.map().regions()[region].instability());
+			assertEquals(parsed.map().regions()[region].connections(), built.map().regions()[region].connections());
+		}
+		assertEquals(parsed.cachedConnections(), built.cachedConnections());
+		assertEquals(parsed.myScore(), built.myScore());
+	}
+
+	@Test
+	public void testFullMatchIsPlayedThroughMethodCalls() {
+		RailReferee match = new RailReferee(MatchInputs.initInput(0, 24, 12, 8, 3));
+
+		// Same deterministic AI on both sides would contest every rail: play against a waiting one
+		RailReferee.MatchResult result = match.play(SimpleAI::new, context -> gs -> List.of(Action.waitAction()));
+
+		assertEquals(MatchConstants.MAX_TURNS, result.turns());
+		assertEquals(0, result.winner());
+		assertEquals(0, result.scores()[1]);
+		assertEquals(0, result.ignoredActions()[0]);
+		assertTrue(result.turnNanos()[0][MatchConstants.MAX_TURNS - 1] > 0);
+	}
+}
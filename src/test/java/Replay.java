@@ -0,0 +1,110 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Offline replay of a match recorded by InputRecorder (-Dreplay.record=...):
+ * the recorded referee input goes through the same parsing and AI as in the
+ * arena, turn by turn, without the first turn warm-up. With a turn number, the
+ * turn is then computed again and again by fresh AIs on the replayed state, a
+ * steady workload for a profiler.
+ */
+public class Replay {
+
+	private final MatchContext context = new MatchContext();
+	private final InputReader in;
+	private AI ai;
+	GameState gs;
+	String output;
+	long turnNanos;
+
+	Replay(byte[] input) {
+		in = new InputReader(new ByteArrayInputStream(input));
+	}
+
+	/** Plays the next recorded turn, false at the end of the recording */
+	boolean nextTurn() {
+		if (ai == null) {
+			context.initMatch(in);
+			ai = new SimpleAI(context);
+		}
+		if (!in.hasNext()) {
+			return false;
+		}
+		long start = System.nanoTime();
+		gs = context.initRound(in);
+		ai.onTurnChanges(context.turnChanges());
+		List<Action> actions = ai.compute(gs);
+		context.finalizeRound(actions, gs);
+		output = context.output(actions);
+		turnNanos = System.nanoTime() - start;
+		return true;
+	}
+
+	/** The raw referee input of a recording file or of a stderr log with REPLAY lines */
+	static byte[] load(Path recording) throws IOException {
+		byte[] bytes = Files.readAllBytes(recording);
+		if (bytes.length > 1 && (bytes[0] & 0xff) == 0x1f && (bytes[1] & 0xff) == 0x8b) {
+			return gunzip(bytes);
+		}
+		return decodeLog(Files.readAllLines(recording));
+	}
+
+	// The stderr log holds other debug lines between the members, which are kept in order
+	static byte[] decodeLog(List<String> lines) {
+		ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+		StringBuilder member = new StringBuilder();
+		for (String line : lines) {
+			if (line.equals(InputRecorder.MEMBER_END)) {
+				gzipped.writeBytes(Base64.getDecoder().decode(member.toString()));
+				member.setLength(0);
+			} else if (line.startsWith(InputRecorder.LINE_PREFIX)) {
+				member.append(line, InputRecorder.LINE_PREFIX.length(), line.length());
+			}
+		}
+		// A member cut by the end of the log is dropped
+		return gunzip(gzipped.toByteArray());
+	}
+
+	private static byte[] gunzip(byte[] bytes) {
+		if (bytes.length == 0) {
+			return bytes;
+		}
+		try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+			return gzip.readAllBytes();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/** Usage: Replay recording [turn [iterations]] */
+	public static void main(String[] args) throws IOException {
+		byte[] input = load(Path.of(args[0]));
+		Print.level = Print.Level.OFF;
+		int profiledTurn = args.length > 1 ? Integer.parseInt(args[1]) : -1;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+		Replay replay = new Replay(input);
+		while (replay.nextTurn()) {
+			System.out.printf("turn %3d  %7.2f ms  %s%n", replay.gs.round(), replay.turnNanos / 1e6, replay.output);
+			if (replay.gs.round() == profiledTurn) {
+				GameState turn = replay.gs;
+				Bench.runAfterWarmup("turn " + profiledTurn, 2000, iterations, () -> {
+					replay.context.time.startRound();
+					new SimpleAI(replay.context).compute(turn.copy());
+				});
+				return;
+			}
+		}
+		if (profiledTurn >= 0) {
+			System.out.println("No turn " + profiledTurn + " in the recording");
+		}
+	}
+}
@@ -0,0 +1,137 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ReplayTest {
+
+	private static final int TURNS = 30;
+
+	// Input given turn by turn, as the referee pipe does
+	private static class Feed extends InputStream {
+
+		private final Deque<byte[]> chunks = new ArrayDeque<>();
+		private byte[] chunk = new byte[0];
+		private int pos;
+
+		void add(String[] lines) {
+			chunks.add((String.join("\n", lines) + "\n").getBytes());
+		}
+
+		@Override
+		public int read() {
+			byte[] one = new byte[1];
+			return read(one, 0, 1) < 0 ? -1 : one[0];
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (pos == chunk.length) {
+				if (chunks.isEmpty()) {
+					return -1;
+				}
+				chunk = chunks.poll();
+				pos = 0;
+			}
+			int n = Math.min(len, chunk.length - pos);
+			System.arraycopy(chunk, pos, b, off, n);
+			pos += n;
+			return n;
+		}
+	}
+
+	private boolean noTimeLimit;
+
+	@BeforeEach
+	public void setUp() {
+		// Budget cuts would make the searches depend on the machine load
+		noTimeLimit = Time.noTimeLimit;
+		Time.noTimeLimit = true;
+	}
+
+	@AfterEach
+	public void tearDown() {
+		Time.noTimeLimit = noTimeLimit;
+	}
+
+	// Plays player 0 from the recorder against a waiting player, returns its outputs
+	private static List<String> recordMatch(InputRecorder recorder, Feed feed) throws IOException {
+		RailReferee referee = new RailReferee(MatchInputs.initInput(0, 24, 12, 8, 5));
+		MatchContext context = new MatchContext();
+		InputReader in = new InputReader(recorder);
+		feed.add(referee.getInitInputForPlayer(0));
+		context.initMatch(in);
+		AI ai = new SimpleAI(context);
+		List<String> outputs = new ArrayList<>();
+		for (int turn = 0; turn < TURNS; turn++) {
+			feed.add(referee.getInputForPlayer(0));
+			GameState gs = context.initRound(in);
+			ai.onTurnChanges(context.turnChanges());
+			List<Action> actions = ai.compute(gs);
+			context.finalizeRound(actions, gs);
+			outputs.add(context.output(actions));
+			recorder.endTurn();
+			referee.updateGame(actions, List.of(Action.waitAction()));
+		}
+		recorder.close();
+		return outputs;
+	}
+
+	private static List<String> replay(byte[] input) {
+		Replay replay = new Replay(input);
+		List<String> outputs = new ArrayList<>();
+		while (replay.nextTurn()) {
+			assertEquals(outputs.size() + 1, replay.gs.round());
+			outputs.add(replay.output);
+		}
+		return outputs;
+	}
+
+	@Test
+	public void testRecordedFileReplaysTheSameTurns(@TempDir Path dir) throws IOException {
+		Path file = dir.resolve("match.gz");
+		Feed feed = new Feed();
+		List<String> outputs = recordMatch(InputRecorder.open(feed, file.toString()), feed);
+
+		assertEquals(outputs, replay(Replay.load(file)));
+	}
+
+	@Test
+	public void testStderrLogReplaysTheSameTurns() throws IOException {
+		PrintStream err = System.err;
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		System.setErr(new PrintStream(log, true));
+		List<String> outputs;
+		try {
+			Feed feed = new Feed();
+			outputs = recordMatch(InputRecorder.open(feed, InputRecorder.STDERR_TARGET), feed);
+		} finally {
+			System.setErr(err);
+		}
+
+		List<String> lines = new ArrayList<>(Arrays.asList(log.toString().split("\n")));
+		// The init input goes with the first turn
+		assertEquals(TURNS, lines.stream().filter(InputRecorder.MEMBER_END::equals).count());
+		assertTrue(lines.stream().allMatch(line -> line.length() <= 2000 + InputRecorder.LINE_PREFIX.length()));
+		// Other debug output in between is ignored
+		lines.add(1, "Starting the match !");
+		assertEquals(outputs, replay(Replay.decodeLog(lines)));
+
+		// A log cut in the middle of a turn still replays the turns before
+		int lastEnd = lines.lastIndexOf(InputRecorder.MEMBER_END);
+		assertEquals(outputs.subList(0, TURNS - 1), replay(Replay.decodeLog(lines.subList(0, lastEnd))));
+	}
+}
@@ -0,0 +1,65 @@
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Bytes allocated by the bot per turn after the first one (parsing and
+ * compute, the referee left out), and the collections seen during its turns:
+ * a young collection should not happen in a match once the first turn is over.
+ */
+@Tag("benchmark")
+public class SteadyStateAllocationBenchmarkTest {
+
+	private static final long MAX_BYTES_PER_TURN = 256 * 1024;
+
+	@Test
+	public void benchmarkAllocationPerTurn() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long thread = Thread.currentThread().threadId();
+		for (int[] size : new int[][] { { 20, 10 }, { 30, 20 }, { 60, 30 } }) {
+			RailReferee referee = new RailReferee(new MapGenerator(size[0], size[1], 5).initInput(0));
+			MatchContext context = new MatchContext();
+			context.initMatch(RailReferee.reader(referee.getInitInputForPlayer(0)));
+			SimpleAI ai = new SimpleAI(context);
+			GcMonitor monitor = new GcMonitor();
+
+			long bytes = 0;
+			long maxBytes = 0;
+			long collections = 0;
+			PrintStream err = System.err;
+			System.setErr(new PrintStream(OutputStream.nullOutputStream()));
+			try {
+				while (!referee.gameOver()) {
+					InputReader in = RailReferee.reader(referee.getInputForPlayer(0));
+					monitor.startTurn();
+					long before = threads.getThreadAllocatedBytes(thread);
+					GameState gs = context.initRound(in);
+					ai.onTurnChanges(context.turnChanges());
+					List<Action> actions = ai.compute(gs);
+					context.finalizeRound(actions, gs);
+					long turnBytes = threads.getThreadAllocatedBytes(thread) - before;
+					monitor.endTurn(gs.round());
+					if (gs.round() > 1) {
+						bytes += turnBytes;
+						maxBytes = Math.max(maxBytes, turnBytes);
+						collections += monitor.turnCollections;
+					}
+					referee.updateGame(actions, List.of(Action.waitAction()));
+				}
+			} finally {
+				System.setErr(err);
+			}
+			long mean = bytes / (referee.getTurn() - 1);
+			System.out.printf("%dx%d: %d KB per turn (max %d KB), %d collections during the turns after the first%n",
+					size[0], size[1], mean / 1024, maxBytes / 1024, collections);
+			assertTrue(mean < MAX_BYTES_PER_TURN, size[0] + "x" + size[1] + ": " + mean + " bytes per turn");
+		}
+	}
+}
@@ -0,0 +1,86 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class TelemetryTest {
+
+	@Test
+	public void testBucketsCoverEveryValueWithinOneSixteenth() {
+		Random random = new Random(3);
+		for (int i = 0; i < 100_000; i++) {
+			long value = i < 1000 ? i : random.nextLong(Long.MAX_VALUE >> random.nextInt(63));
+			int bucket = Telemetry.Histogram.bucket(value);
+			long upper = Telemetry.Histogram.upperBound(bucket);
+			assertTrue(value <= upper, value + " above " + upper);
+			assertTrue(bucket == 0 || value > Telemetry.Histogram.upperBound(bucket - 1), "value " + value);
+			assertTrue(upper - value <= value / 16, value + " in a bucket up to " + upper);
+		}
+		assertEquals(31, Telemetry.Histogram.bucket(31));
+		assertEquals(Long.MAX_VALUE, Telemetry.Histogram.upperBound(Telemetry.Histogram.bucket(Long.MAX_VALUE)));
+	}
+
+	@Test
+	public void testPercentilesShowTheSlowTurns() {
+		Telemetry.Histogram histogram = new Telemetry.Histogram();
+		for (int i = 0; i < 98; i++) {
+			histogram.record(2_000_000); // 2 ms
+		}
+		histogram.record(40_000_000);
+		histogram.record(55_000_000); // a time out
+
+		assertEquals(100, histogram.count());
+		assertEquals(2_000_000, histogram.percentile(50), 2_000_000 / 16);
+		assertEquals(40_000_000, histogram.percentile(99), 40_000_000 / 16);
+		assertEquals(55_000_000, histogram.percentile(100));
+		assertEquals(55_000_000, histogram.max());
+		assertEquals(2.91e6, histogram.mean(), 1);
+	}
+
+	@Test
+	public void testMergeAndPause() {
+		Telemetry first = new Telemetry();
+		first.record(Telemetry.Phase.PARSE, 1000);
+		first.recordSearch(new int[] { 10, 20, 99 }, new NAMOASearchContext.Termination[] {
+				NAMOASearchContext.Termination.GOAL, NAMOASearchContext.Termination.BUDGET, null }, 2, 3);
+		first.paused = true;
+		first.record(Telemetry.Phase.PARSE, 5000);
+		first.recordSearch(new int[] { 10 }, new NAMOASearchContext.Termination[] { NAMOASearchContext.Termination.TIME },
+				1, 1);
+		Telemetry second = new Telemetry();
+		second.record(Telemetry.Phase.PARSE, 3000);
+
+		second.merge(first);
+
+		assertEquals(2, second.phase(Telemetry.Phase.PARSE).count());
+		assertEquals(3000, second.phase(Telemetry.Phase.PARSE).max());
+		assertEquals(1, second.searches);
+		assertEquals(30, second.nodesExpanded);
+		assertEquals(3, second.pathsFound);
+		assertEquals(2, second.nodesPerCity.count());
+		assertArrayEquals(new long[] { 1, 0, 1, 0 }, second.terminations);
+		assertTrue(second.toJson().startsWith("{\"searches\":1,\"nodesExpanded\":30,\"pathsFound\":3,"),
+				second.toJson());
+		assertTrue(second.toJson().contains("\"terminations\":{\"goal\":1,\"exhausted\":0,\"budget\":1,\"time\":0}"),
+				second.toJson());
+		assertTrue(second.toJson().contains("\"parse\":{\"count\":2,\"mean\":2000,"), second.toJson());
+		assertTrue(second.summary().contains("PARSE"));
+	}
+
+	@Test
+	public void testPhasesOfAMatchAreRecorded() {
+		RailReferee.MatchResult result = new RailReferee(MatchInputs.initInput(0, 24, 12, 8, 3))
+				.play(SimpleAI::new, SimpleAI::new);
+
+		Telemetry telemetry = result.telemetry()[0];
+		assertEquals(MatchConstants.MAX_TURNS, telemetry.phase(Telemetry.Phase.TURN).count());
+		assertEquals(MatchConstants.MAX_TURNS, telemetry.phase(Telemetry.Phase.PARSE).count());
+		assertEquals(MatchConstants.MAX_TURNS, telemetry.phase(Telemetry.Phase.DISRUPT).count());
+		assertTrue(telemetry.phase(Telemetry.Phase.NAMOA).count() > 0);
+		assertTrue(telemetry.phase(Telemetry.Phase.RAIL_SELECTION).count() > 0);
+		assertTrue(telemetry.nodesExpanded > 0);
+		assertTrue(telemetry.pathsFound > 0);
+		assertNotSame(telemetry, result.telemetry()[1]);
+	}
+}
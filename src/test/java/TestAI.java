@@ -3,10 +3,10 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.beans.Transient;
+import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
@@ -32,7 +32,7 @@ public class TestAI {
 		if (inputMatchString.length == 0) {
 			throw new IllegalArgumentException("No input match string");
 		}
-		Scanner in = new Scanner(inputMatchString[0]);
+		InputReader in = new InputReader(new ByteArrayInputStream(inputMatchString[0].getBytes()));
 		// Player.initMatch(in);
 		GameState gs = Player.initRound(in);
 		// Map<Tile, List<Zone>> map = AggressiveAI.splitZone(gs, gs.zones.get(0));
@@ -0,0 +1,191 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+/**
+ * Self-play tournament between two AI configurations on seeded maps, one
+ * virtual thread per match (at most one running match per core at a time).
+ * Each map is played twice with the sides swapped. Results are aggregated as
+ * they come: win rate, score margin and per-turn latency percentiles.
+ */
+public class Tournament {
+
+	/** An AI configuration, creating the AI of a player on its match context */
+	public record Contestant(String name, Function<MatchContext, AI> factory) {
+
+		static Contestant simpleAI(String name, int topPathsCount, boolean oneRegionPerTurn) {
+			return new Contestant(name,
+					context -> new SimpleAI(context).withSettings(topPathsCount, oneRegionPerTurn));
+		}
+	}
+
+	/** Aggregated results, from the point of view of each contestant */
+	public static class Report {
+
+		final Contestant[] contestants;
+		int matches;
+		final int[] wins = new int[2];
+		int draws;
+		private long[] margins = new long[16]; // score of contestant 0 minus contestant 1
+		private final long[][] turnNanos = { new long[1024], new long[1024] };
+		private final int[] turnCounts = new int[2];
+		final int[] ignoredActions = new int[2];
+		final Telemetry[] telemetry = { new Telemetry(), new Telemetry() };
+		long wallNanos;
+
+		Report(Contestant first, Contestant second) {
+			this.contestants = new Contestant[] { first, second };
+		}
+
+		synchronized void add(RailReferee.MatchResult result, boolean swapped) {
+			int first = swapped ? 1 : 0;
+			if (result.isDraw()) {
+				draws++;
+			} else {
+				wins[result.winner() == first ? 0 : 1]++;
+			}
+			if (matches == margins.length) {
+				margins = Arrays.copyOf(margins, matches * 2);
+			}
+			margins[matches++] = result.scores()[first] - result.scores()[1 - first];
+			for (int player = 0; player < 2; player++) {
+				int contestant = player == first ? 0 : 1;
+				ignoredActions[contestant] += result.ignoredActions()[player];
+				telemetry[contestant].merge(result.telemetry()[player]);
+				long[] nanos = result.turnNanos()[player];
+				if (turnCounts[contestant] + result.turns() > turnNanos[contestant].length) {
+					turnNanos[contestant] = Arrays.copyOf(turnNanos[contestant],
+							Math.max(turnNanos[contestant].length * 2, turnCounts[contestant] + result.turns()));
+				}
+				System.arraycopy(nanos, 0, turnNanos[contestant], turnCounts[contestant], result.turns());
+				turnCounts[contestant] += result.turns();
+			}
+		}
+
+		/** Wins plus half the draws, for the first contestant */
+		synchronized double winRate() {
+			return matches == 0 ? 0 : (wins[0] + draws / 2.0) / matches;
+		}
+
+		synchronized double meanMargin() {
+			return matches == 0 ? 0 : Arrays.stream(margins, 0, matches).average().getAsDouble();
+		}
+
+		synchronized long marginPercentile(double p) {
+			return percentile(Arrays.copyOf(margins, matches), p);
+		}
+
+		synchronized long latencyPercentile(int contestant, double p) {
+			return percentile(Arrays.copyOf(turnNanos[contestant], turnCounts[contestant]), p);
+		}
+
+		private static long percentile(long[] values, double p) {
+			if (values.length == 0) {
+				return 0;
+			}
+			Arrays.sort(values);
+			int index = (int) Math.ceil(p / 100.0 * values.length) - 1;
+			return values[Math.max(0, Math.min(values.length - 1, index))];
+		}
+
+		/** Phase percentiles and search counters of each contestant, for scripts */
+		synchronized String telemetryJson() {
+			StringBuilder sb = new StringBuilder("{\"matches\":").append(matches).append(",\"contestants\":[");
+			for (int c = 0; c < 2; c++) {
+				sb.append(c == 0 ? "{\"name\":\"" : ",{\"name\":\"").append(contestants[c].name())
+						.append("\",\"telemetry\":").append(telemetry[c].toJson()).append('}');
+			}
+			return sb.append("]}").toString();
+		}
+
+		@Override
+		public synchronized String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append(String.format("%s vs %s: %d matches in %.1f s, %d-%d-%d, win rate %.1f%%%n",
+					contestants[0].name(), contestants[1].name(), matches, wallNanos / 1e9, wins[0], draws, wins[1],
+					winRate() * 100));
+			sb.append(String.format("  margin mean %.1f  p10 %d  p50 %d  p90 %d%n", meanMargin(),
+					marginPercentile(10), marginPercentile(50), marginPercentile(90)));
+			for (int c = 0; c < 2; c++) {
+				sb.append(String.format("  %-20s turn p50 %7.2f ms  p90 %7.2f ms  p99 %7.2f ms  max %7.2f ms  ignored %d%n",
+						contestants[c].name(), latencyPercentile(c, 50) / 1e6, latencyPercentile(c, 90) / 1e6,
+						latencyPercentile(c, 99) / 1e6, latencyPercentile(c, 100) / 1e6, ignoredActions[c]));
+			}
+			return sb.toString();
+		}
+	}
+
+	private final Contestant first;
+	private final Contestant second;
+	int width = 24;
+	int height = 12;
+	int townCount = 8;
+	int parallelism = Runtime.getRuntime().availableProcessors();
+
+	Tournament(Contestant first, Contestant second) {
+		this.first = first;
+		this.second = second;
+	}
+
+	/** Plays maps seed, seed + 1... each one twice, sides swapped */
+	Report run(int maps, long seed) {
+		Report report = new Report(first, second);
+		// Debug output is on in the bot and would dominate the run
+		Print.Level level = Print.level;
+		Print.level = Print.Level.OFF;
+		long start = System.nanoTime();
+		Semaphore running = new Semaphore(parallelism);
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			List<Future<?>> matches = new ArrayList<>();
+			for (int i = 0; i < maps; i++) {
+				String init = MatchInputs.initInput(0, width, height, townCount, seed + i);
+				for (boolean swapped : new boolean[] { false, true }) {
+					matches.add(executor.submit(() -> {
+						running.acquireUninterruptibly();
+						try {
+							RailReferee referee = new RailReferee(init);
+							report.add(swapped ? referee.play(second.factory(), first.factory())
+									: referee.play(first.factory(), second.factory()), swapped);
+						} finally {
+							running.release();
+						}
+					}));
+				}
+			}
+			for (Future<?> match : matches) {
+				match.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Tournament interrupted", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Match failed", e.getCause());
+		} finally {
+			Print.level = level;
+		}
+		report.wallNanos = System.nanoTime() - start;
+		return report;
+	}
+
+	/** Usage: Tournament [maps] [seed] [telemetry JSON file] */
+	public static void main(String[] args) throws IOException {
+		int maps = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+		Tournament tournament = new Tournament(Contestant.simpleAI("SimpleAI top1", 1, true),
+				Contestant.simpleAI("SimpleAI top5", 5, true));
+		Report report = tournament.run(maps, seed);
+		System.out.println(report);
+		if (args.length > 2) {
+			Files.writeString(Path.of(args[2]), report.telemetryJson());
+		}
+	}
+}
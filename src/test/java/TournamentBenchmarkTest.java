@@ -0,0 +1,24 @@
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/**
+ * SimpleAI settings against each other over seeded maps, to check strength
+ * and timing before shipping a change.
+ */
+@Tag("benchmark")
+public class TournamentBenchmarkTest {
+
+	private static final int MAPS = 50;
+
+	@Test
+	public void benchmarkTopPathsCount() {
+		System.out.println(new Tournament(Tournament.Contestant.simpleAI("top paths 1", 1, true),
+				Tournament.Contestant.simpleAI("top paths 5", 5, true)).run(MAPS, 1));
+	}
+
+	@Test
+	public void benchmarkOneRegionPerTurn() {
+		System.out.println(new Tournament(Tournament.Contestant.simpleAI("one region per turn", 1, true),
+				Tournament.Contestant.simpleAI("any region", 1, false)).run(MAPS, 1));
+	}
+}
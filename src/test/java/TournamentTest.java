@@ -0,0 +1,81 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.Test;
+
+public class TournamentTest {
+
+	private static final Tournament.Contestant WAITING = new Tournament.Contestant("waiting",
+			context -> gs -> List.of(Action.waitAction()));
+
+	@Test
+	public void testEachMapIsPlayedWithBothSides() {
+		Tournament tournament = new Tournament(Tournament.Contestant.simpleAI("SimpleAI", 1, true), WAITING);
+		tournament.width = 12;
+		tournament.height = 9;
+		tournament.townCount = 4;
+
+		Tournament.Report report = tournament.run(3, 7);
+
+		assertEquals(6, report.matches);
+		assertEquals(0, report.wins[1]);
+		assertEquals(report.matches, report.wins[0] + report.draws);
+		assertTrue(report.meanMargin() >= 0);
+		assertTrue(report.latencyPercentile(0, 50) > 0);
+		assertEquals(0, report.ignoredActions[0]);
+		assertEquals(report.matches * MatchConstants.MAX_TURNS,
+				report.telemetry[0].phase(Telemetry.Phase.TURN).count());
+		assertTrue(report.telemetryJson().startsWith("{\"matches\":6,\"contestants\":[{\"name\":\"SimpleAI\","),
+				report.telemetryJson());
+	}
+
+	@Test
+	public void testEachPlayerGetsItsOwnContext() {
+		Set<MatchContext> contexts = ConcurrentHashMap.newKeySet();
+		Tournament.Contestant recording = new Tournament.Contestant("recording", context -> {
+			contexts.add(context);
+			return gs -> List.of(Action.waitAction());
+		});
+		Tournament tournament = new Tournament(recording, recording);
+		tournament.width = 6;
+		tournament.height = 6;
+		tournament.townCount = 2;
+
+		Tournament.Report report = tournament.run(2, 1);
+
+		assertEquals(8, contexts.size());
+		assertEquals(4, report.draws);
+		assertEquals(0.5, report.winRate());
+	}
+
+	@Test
+	public void testParallelMatchesPlayLikeSequentialOnes() {
+		Tournament.Contestant first = Tournament.Contestant.simpleAI("top paths 1", 1, true);
+		Tournament.Contestant second = Tournament.Contestant.simpleAI("top paths 3", 3, false);
+		Tournament sequential = new Tournament(first, second);
+		sequential.parallelism = 1;
+		Tournament parallel = new Tournament(first, second);
+		parallel.parallelism = 8;
+
+		// A search stopped by the time limit of a loaded machine would change the results
+		boolean noTimeLimit = Time.noTimeLimit;
+		Time.noTimeLimit = true;
+		Tournament.Report expected;
+		Tournament.Report actual;
+		try {
+			expected = sequential.run(6, 21);
+			actual = parallel.run(6, 21);
+		} finally {
+			Time.noTimeLimit = noTimeLimit;
+		}
+
+		assertArrayEquals(expected.wins, actual.wins);
+		assertEquals(expected.meanMargin(), actual.meanMargin());
+		for (int p = 0; p <= 100; p += 10) {
+			assertEquals(expected.marginPercentile(p), actual.marginPercentile(p));
+		}
+	}
+}
@@ -0,0 +1,102 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class TurnChangesTest {
+
+	// 4x1 map, regions 0 | 0 | 1 | 2, towns 0 at (0,0) and 1 at (3,0)
+	private static final String INIT = "0\n"
+			+ "4 1\n"
+			+ "0 0\n0 0\n1 0\n2 0\n"
+			+ "2\n"
+			+ "0 0 0 1\n"
+			+ "1 3 0 x\n";
+
+	private static InputReader reader(String... turns) {
+		return new InputReader(new ByteArrayInputStream((INIT + String.join("", turns)).getBytes()));
+	}
+
+	@Test
+	public void testFirstTurnIsAFullRefresh() {
+		InputReader in = reader("0 0\n-1 0 0 x\n0 0 0 x\n-1 1 0 x\n-1 0 0 x\n");
+		Player.initMatch(in);
+		GameState gs = Player.initRound(in);
+
+		TurnChanges changes = Player.turnChanges();
+		assertTrue(changes.isFullRefresh());
+		assertEquals(1, changes.changedCellCount());
+		assertEquals(TurnChanges.RAIL_ADDED, changes.kindsAt(1));
+		assertEquals(RailOwner.NONE, changes.previousOwnerAt(1));
+		assertTrue(changes.isInstabilityChanged(1));
+		assertEquals(0, changes.previousInstability(1));
+		assertEquals(1, gs.map().regions()[1].instability());
+	}
+
+	@Test
+	public void testOnlyChangedCellsAndRegionsArePatched() {
+		InputReader in = reader(
+				"0 0\n-1 0 0 x\n0 0 0 x\n-1 0 0 x\n-1 0 0 x\n",
+				"2 0\n-1 0 0 x\n0 0 0 0-1\n1 0 0 1-0\n-1 2 0 x\n",
+				"4 0\n-1 0 0 x\n2 0 0 x\n-1 4 1 x\n-1 2 0 x\n");
+		Player.initMatch(in);
+		GameState first = Player.initRound(in);
+		GameState second = Player.initRound(in);
+		Connection connection = MatchConstants.connection(0, 1);
+
+		TurnChanges changes = Player.turnChanges();
+		assertFalse(changes.isFullRefresh());
+		assertEquals(2, changes.changedCellCount());
+		assertEquals(TurnChanges.CONNECTIONS_CHANGED, changes.kindsAt(1));
+		assertEquals(TurnChanges.CONNECTIONS_CHANGED | TurnChanges.RAIL_ADDED, changes.kindsAt(2));
+		assertEquals(List.of(connection), changes.connectionsGained());
+		assertTrue(changes.areConnectionsChanged(0));
+		assertTrue(changes.areConnectionsChanged(1));
+		assertTrue(changes.isInstabilityChanged(2));
+		assertTrue(second.cachedConnections().contains(connection));
+		assertTrue(second.map().regions()[0].connections().contains(connection));
+		assertEquals(RailOwner.OPPONENT, second.ownerAt(MatchConstants.coord(2, 0)));
+
+		// Previous state untouched
+		assertFalse(first.rails().hasRail(2, 0));
+		assertTrue(first.cachedConnections().isEmpty());
+		assertTrue(first.map().regions()[0].connections().isEmpty());
+
+		GameState third = Player.initRound(in);
+		changes = Player.turnChanges();
+		assertEquals(TurnChanges.OWNER_CHANGED | TurnChanges.CONNECTIONS_CHANGED, changes.kindsAt(1));
+		assertEquals(RailOwner.ME, changes.previousOwnerAt(1));
+		assertEquals(TurnChanges.RAIL_REMOVED | TurnChanges.CONNECTIONS_CHANGED, changes.kindsAt(2));
+		assertEquals(List.of(connection), changes.connectionsLost());
+		assertFalse(changes.isRegionChanged(2));
+		assertSame(second.map().regions()[2], third.map().regions()[2]);
+		assertTrue(third.map().regions()[1].isInstable());
+		assertEquals(RailOwner.CONTESTED, third.ownerAt(MatchConstants.coord(1, 0)));
+		assertTrue(third.cachedConnections().isEmpty());
+	}
+
+	@Test
+	public void testInkedRegionStaysInstable() {
+		InputReader in = reader("0 0\n-1 0 0 x\n-1 0 0 x\n-1 0 1 x\n-1 0 0 x\n");
+		Player.initMatch(in);
+		GameState gs = Player.initRound(in);
+
+		assertTrue(gs.map().regions()[1].isInstable());
+		assertFalse(gs.canTraverse(2, 0));
+	}
+
+	@Test
+	public void testUnchangedTurnRecordsNothing() {
+		String turn = "0 0\n-1 0 0 x\n0 0 0 0-1\n1 0 0 0-1\n-1 0 0 x\n";
+		InputReader in = reader(turn, turn);
+		Player.initMatch(in);
+		GameState first = Player.initRound(in);
+		GameState second = Player.initRound(in);
+
+		assertTrue(Player.turnChanges().isEmpty());
+		assertSame(first.map(), second.map());
+		assertSame(first.cachedConnections(), second.cachedConnections());
+	}
+}
@@ -0,0 +1,82 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class WarmUpTest {
+
+	@Test
+	public void testWarmUpStaysInTheFirstTurnAndLeavesTheMatchAsItWas() {
+		MatchContext context = new MatchContext();
+		GameState gs = new MapGenerator(30, 20, 4).midGame(0).load(context);
+		assertEquals(1, gs.round());
+		GameState before = gs.copy();
+		long roundStart = context.time.roundStart();
+
+		WarmUp warmUp = new WarmUp(context);
+		warmUp.run(gs);
+
+		assertTrue(warmUp.turns > 0, warmUp.toString());
+		assertTrue(warmUp.games > 0);
+		assertTrue(warmUp.jitQuiet || context.time.roundDurationNano() < Time.firstRoundBudgetNano() + 50_000_000L,
+				warmUp.toString());
+		assertEquals(roundStart, context.time.roundStart());
+		for (int index = 0; index < gs.rails().cellCount(); index++) {
+			assertEquals(before.rails().ownerAt(index), gs.rails().ownerAt(index));
+		}
+		assertArrayEquals(before.map().regions(), gs.map().regions());
+		assertEquals(before.cachedConnections(), gs.cachedConnections());
+	}
+
+	@Test
+	public void testNoWarmUpWithoutTimeLeft() {
+		MatchContext context = new MatchContext();
+		GameState gs = new MapGenerator(20, 10, 4).midGame(0).load(context);
+		context.time.resumeRound(System.nanoTime() - Time.firstRoundBudgetNano());
+
+		WarmUp warmUp = new WarmUp(context);
+		warmUp.run(gs);
+
+		assertEquals(0, warmUp.turns);
+	}
+
+	@Test
+	public void testWarmUpStopsWhenTheNextTurnArrives() {
+		MatchContext context = new MatchContext();
+		GameState gs = new MapGenerator(20, 10, 4).midGame(0).load(context);
+		int[] turnStarts = { 0 };
+
+		WarmUp warmUp = new WarmUp(context);
+		// Arrived once 3 turns started, the condition being checked by the searches too
+		warmUp.run(gs, () -> isCalledDirectlyBy("WarmUp.run") && ++turnStarts[0] > 3);
+
+		assertEquals(3, warmUp.turns);
+		assertTrue(warmUp.interrupted);
+		assertTrue(warmUp.toString().contains("next turn"), warmUp.toString());
+	}
+
+	@Test
+	public void testSyntheticTurnStopsWhenTheNextTurnArrivesDuringItsSearches() {
+		MatchContext context = new MatchContext();
+		GameState gs = new MapGenerator(30, 20, 4).midGame(0).load(context);
+		boolean[] arrived = { false };
+
+		WarmUp warmUp = new WarmUp(context);
+		warmUp.run(gs, () -> arrived[0] |= isCalledBy("NAMOASearchContext.search"));
+
+		assertTrue(arrived[0]);
+		assertEquals(1, warmUp.turns);
+		assertTrue(warmUp.interrupted);
+		assertTrue(context.time.hasTimeLeft(true));
+	}
+
+	// From the condition of the warm-up, called by the method
+	private static boolean isCalledDirectlyBy(String method) {
+		return StackWalker.getInstance().walk(frames -> frames.skip(2).findFirst()
+				.map(frame -> method.equals(frame.getClassName() + "." + frame.getMethodName())).orElse(false));
+	}
+
+	private static boolean isCalledBy(String method) {
+		return StackWalker.getInstance().walk(frames -> frames
+				.anyMatch(frame -> method.equals(frame.getClassName() + "." + frame.getMethodName())));
+	}
+}
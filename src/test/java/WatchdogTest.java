@@ -0,0 +1,117 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+public class WatchdogTest {
+
+	private static final long DEADLINE_MILLIS = 20;
+	private static final long DEADLINE = DEADLINE_MILLIS * 1_000_000;
+
+	private final List<String> printed = new CopyOnWriteArrayList<>();
+	private final List<Thread> formattingThreads = new CopyOnWriteArrayList<>();
+	private final Time time = new Time();
+	private final Watchdog watchdog = new Watchdog(time, this::line, printed::add, DEADLINE, 5 * DEADLINE);
+
+	private String line(List<Action> actions) {
+		formattingThreads.add(Thread.currentThread());
+		return actions.stream().map(Action::toString).collect(Collectors.joining(";"));
+	}
+
+	@Test
+	public void testBestAnswerIsSentAtTheDeadline() throws InterruptedException {
+		time.startRound();
+		watchdog.startTurn(2);
+		List<Action> best = List.of(Action.disruptRegion(3));
+		watchdog.publish(best);
+		Thread.sleep(DEADLINE_MILLIS * 5);
+
+		assertEquals(List.of(line(best)), printed);
+		assertTrue(time.isExpired());
+		assertFalse(time.hasTimeLeft(true));
+		assertEquals(1, watchdog.lateTurns);
+		assertTrue(watchdog.sendNanos() > 0);
+		// Lines are formatted by the thread of the turn only
+		assertFalse(formattingThreads.stream().anyMatch(thread -> thread != Thread.currentThread()));
+
+		// The late answer of the turn isn't printed, and the state follows what was sent
+		List<Action> late = List.of(Action.waitAction());
+		assertEquals(best, watchdog.claim(2, late));
+		assertEquals(1, printed.size());
+
+		// The next turn starts afresh
+		time.startRound();
+		assertFalse(time.isExpired());
+		watchdog.startTurn(3);
+		assertSame(late, watchdog.claim(3, late));
+	}
+
+	@Test
+	public void testAnswerInTimeIsNeverSentAgain() throws InterruptedException {
+		time.startRound();
+		watchdog.startTurn(2);
+		watchdog.publish(List.of(Action.disruptRegion(1)));
+		List<Action> actions = List.of(Action.disruptRegion(1), Action.waitAction());
+		assertSame(actions, watchdog.claim(2, actions));
+		Thread.sleep(DEADLINE_MILLIS * 3);
+
+		assertTrue(printed.isEmpty());
+		assertFalse(time.isExpired());
+		assertEquals(0, watchdog.lateTurns);
+	}
+
+	@Test
+	public void testWaitIsSentWithoutAnyAnswerAndTheFirstTurnHasMoreTime() throws InterruptedException {
+		time.startRound();
+		watchdog.startTurn(1);
+		Thread.sleep(DEADLINE_MILLIS * 2);
+		assertTrue(printed.isEmpty());
+
+		Thread.sleep(DEADLINE_MILLIS * 6);
+		assertEquals(List.of(line(List.of(Action.waitAction()))), printed);
+	}
+
+	@Test
+	public void testWarmUpDoesNotReplaceTheAnswerOfTheFirstTurn() throws InterruptedException {
+		MatchContext context = new MatchContext();
+		GameState gs = new MapGenerator(20, 10, 4).midGame(0).load(context);
+		// Deadline in the middle of the warm-up
+		Watchdog firstTurn = new Watchdog(context.time, this::line, printed::add, DEADLINE, 3 * DEADLINE);
+		context.watchdog = firstTurn;
+		firstTurn.startTurn(gs.round());
+		List<Action> answer = new SimpleAI(context).compute(gs);
+
+		new WarmUp(context).run(gs);
+		Thread.sleep(DEADLINE_MILLIS * 3);
+
+		assertSame(firstTurn, context.watchdog);
+		assertEquals(List.of(line(answer)), printed);
+		assertEquals(answer, firstTurn.claim(gs.round(), List.of()));
+	}
+
+	@Test
+	public void testRailsArePublishedAsTheyAreChosen() {
+		MatchContext context = new MatchContext();
+		GameState gs = new MapGenerator(30, 20, 2).midGame(0).load(context);
+		List<List<Action>> published = new CopyOnWriteArrayList<>();
+		context.watchdog = new Watchdog(context.time, actions -> {
+			published.add(actions);
+			return line(actions);
+		}, printed::add, 1_000 * DEADLINE, 1_000 * DEADLINE);
+		context.watchdog.startTurn(gs.round());
+
+		List<Action> answer = new SimpleAI(context).compute(gs);
+
+		assertEquals(answer, published.get(published.size() - 1));
+		// The rails of the first path are published before the full answer
+		List<Action> firstRails = published.stream()
+				.filter(actions -> actions.stream().anyMatch(action -> action.type() == ActionType.PLACE_TRACKS))
+				.findFirst().orElseThrow();
+		assertTrue(published.indexOf(firstRails) < published.size() - 1, published.toString());
+		assertTrue(answer.containsAll(firstRails), published.toString());
+		assertTrue(printed.isEmpty());
+	}
+}